@@ -0,0 +1,229 @@
+package com.chessclub.app.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.utils.EloRatingSystem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Upgrades a database with the version 1 schema to the current version through the registered
+ * migrations, as onUpgrade does, and checks that every row survives and the derived tables
+ * and columns match the stored games. The large club is sized like the 200k-game clubs the
+ * migrations must upgrade without an ANR, and the test fails if its upgrade from version 1
+ * takes longer than UPGRADE_BUDGET_MS.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+    private static final String TAG = "MigrationTest";
+    private static final String TEST_DATABASE = "migration-test.db";
+
+    private static final int PLAYERS = 2000;
+    private static final int GAMES = 200000;
+    // For the whole upgrade of GAMES games, which runs as one transaction off the main thread.
+    // Generous for a mid-range device; an upgrade that scales badly takes far longer
+    private static final long UPGRADE_BUDGET_MS = 20000;
+
+    private Context context;
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(TEST_DATABASE);
+        db = context.openOrCreateDatabase(TEST_DATABASE, Context.MODE_PRIVATE, null);
+        createVersion1Schema();
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+        context.deleteDatabase(TEST_DATABASE);
+    }
+
+    @Test
+    public void upgradesEmptyDatabase() {
+        upgrade();
+
+        assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertEquals(0, count("players"));
+        assertEquals(0, count("games"));
+        assertEquals(0, count("rating_history"));
+        assertEquals(0, count("rating_periods"));
+        // A club upgraded without a chosen mode is rated with Elo
+        assertEquals(1, count("settings"));
+        assertEquals(DatabaseHelper.RATING_MODE_ELO, queryLong("SELECT rating_mode FROM settings"));
+    }
+
+    @Test
+    public void upgradesLargeClubKeepingEveryRow() {
+        fillVersion1Club();
+        // Names that only differ in case were allowed before version 6
+        insertPlayer("Ana Costa", 1200, 0, 0, 0);
+        insertPlayer("ANA COSTA", 1200, 0, 0, 0);
+        long players = count("players");
+
+        long start = SystemClock.elapsedRealtime();
+        upgrade();
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Upgraded " + players + " players and " + GAMES + " games from version 1 to "
+                + DatabaseHelper.DATABASE_VERSION + " in " + elapsed + " ms");
+        assertTrue("Upgrading " + GAMES + " games took " + elapsed + " ms, over the "
+                + UPGRADE_BUDGET_MS + " ms budget", elapsed <= UPGRADE_BUDGET_MS);
+
+        assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+        assertEquals(players, count("players"));
+        assertEquals(GAMES, count("games"));
+        assertEquals(2L * GAMES, count("rating_history"));
+        assertEquals(2L * GAMES, queryLong("SELECT SUM(games_played) FROM players"));
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM players"
+                + " WHERE games_played <> wins + draws + losses"));
+
+        // Each player's history ends at their stored rating
+        assertEquals(0, queryLong("SELECT COUNT(*) FROM players p WHERE games_played > 0"
+                + " AND elo <> (SELECT rating_after FROM rating_history h WHERE h.player_id = p.id"
+                + " ORDER BY h.date DESC, h.game_id DESC LIMIT 1)"));
+
+        // The duplicate name is numbered, so every name is unique ignoring case
+        assertEquals(players, queryLong("SELECT COUNT(DISTINCT name COLLATE NOCASE) FROM players"));
+        assertEquals(1, queryLong("SELECT COUNT(*) FROM players WHERE name = 'ANA COSTA (2)'"));
+
+    }
+
+    /**
+     * Upgrade inside one transaction, as SQLiteOpenHelper runs onUpgrade
+     */
+    private void upgrade() {
+        db.beginTransaction();
+        try {
+            Migrations.upgrade(db, 1, DatabaseHelper.DATABASE_VERSION);
+            db.setVersion(DatabaseHelper.DATABASE_VERSION);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * The schema as version 1 created it, spelled out so later schema changes cannot alter it
+     */
+    private void createVersion1Schema() {
+        db.execSQL("CREATE TABLE players(id INTEGER PRIMARY KEY AUTOINCREMENT,name TEXT NOT NULL,"
+                + "pin_hash TEXT NOT NULL,elo INTEGER DEFAULT 1200,wins INTEGER DEFAULT 0,"
+                + "draws INTEGER DEFAULT 0,losses INTEGER DEFAULT 0,is_admin INTEGER DEFAULT 0,"
+                + "email TEXT,phone TEXT)");
+        db.execSQL("CREATE TABLE games(id INTEGER PRIMARY KEY AUTOINCREMENT,white_player_id INTEGER,"
+                + "black_player_id INTEGER,result INTEGER,date INTEGER,white_elo_change INTEGER,"
+                + "black_elo_change INTEGER,FOREIGN KEY(white_player_id) REFERENCES players(id),"
+                + "FOREIGN KEY(black_player_id) REFERENCES players(id))");
+        db.setVersion(1);
+    }
+
+    /**
+     * Fill the version 1 tables with a club whose ratings and records match its games, rated
+     * with the app's Elo system as version 1 recorded them
+     */
+    private void fillVersion1Club() {
+        Random random = new Random(42);
+        EloRatingSystem elo = new EloRatingSystem();
+        // Indexed by player id; the admin is player 1 and plays no games
+        int[] ratings = new int[PLAYERS + 2];
+        int[] wins = new int[PLAYERS + 2];
+        int[] draws = new int[PLAYERS + 2];
+        int[] losses = new int[PLAYERS + 2];
+        Arrays.fill(ratings, 1200);
+
+        db.beginTransaction();
+        SQLiteStatement insertGame = db.compileStatement("INSERT INTO games(white_player_id,"
+                + "black_player_id,result,date,white_elo_change,black_elo_change) VALUES (?, ?, ?, ?, ?, ?)");
+        try {
+            long date = 1420135200000L;
+            for (int i = 0; i < GAMES; i++) {
+                int white = 2 + random.nextInt(PLAYERS);
+                int black = 2 + random.nextInt(PLAYERS - 1);
+                if (black >= white) {
+                    black++;
+                }
+                int result = random.nextInt(3);
+                int[] changes = elo.rateGame(ratings[white], ratings[black], result);
+                ratings[white] += changes[0];
+                ratings[black] += changes[1];
+                if (result == Game.WHITE_WINS) {
+                    wins[white]++;
+                    losses[black]++;
+                } else if (result == Game.BLACK_WINS) {
+                    losses[white]++;
+                    wins[black]++;
+                } else {
+                    draws[white]++;
+                    draws[black]++;
+                }
+                date += random.nextInt(60 * 60 * 1000);
+
+                insertGame.bindLong(1, white);
+                insertGame.bindLong(2, black);
+                insertGame.bindLong(3, result);
+                insertGame.bindLong(4, date);
+                insertGame.bindLong(5, changes[0]);
+                insertGame.bindLong(6, changes[1]);
+                insertGame.executeInsert();
+            }
+
+            insertPlayer("Admin", 1200, 0, 0, 0);
+            for (int id = 2; id < ratings.length; id++) {
+                insertPlayer("Player " + id, ratings[id], wins[id], draws[id], losses[id]);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            insertGame.close();
+            db.endTransaction();
+        }
+    }
+
+    private void insertPlayer(String name, int rating, int wins, int draws, int losses) {
+        SQLiteStatement insert = db.compileStatement("INSERT INTO players(name, pin_hash, elo,"
+                + " wins, draws, losses) VALUES (?, 'hash', ?, ?, ?, ?)");
+        try {
+            insert.bindString(1, name);
+            insert.bindLong(2, rating);
+            insert.bindLong(3, wins);
+            insert.bindLong(4, draws);
+            insert.bindLong(5, losses);
+            insert.executeInsert();
+        } finally {
+            insert.close();
+        }
+    }
+
+    private long count(String table) {
+        return queryLong("SELECT COUNT(*) FROM " + table);
+    }
+
+    private long queryLong(String query) {
+        Cursor cursor = db.rawQuery(query, null);
+        try {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        } finally {
+            cursor.close();
+        }
+    }
+}
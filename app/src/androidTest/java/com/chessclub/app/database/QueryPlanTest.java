@@ -0,0 +1,113 @@
+package com.chessclub.app.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Checks with EXPLAIN QUERY PLAN, on the device's own SQLite, that the hot game history and
+ * leaderboard queries read through the indexes: no full scan of the games table, and no
+ * sort in a temporary b-tree, so their cost does not grow with the size of the club.
+ */
+@RunWith(AndroidJUnit4.class)
+public class QueryPlanTest {
+    // Older SQLite versions say "SCAN TABLE games", newer ones "SCAN games"
+    private static final Pattern SCAN_GAMES = Pattern.compile("\\bSCAN (TABLE )?" + DatabaseHelper.TABLE_GAMES + "\\b");
+    private static final String TEMP_SORT = "USE TEMP B-TREE";
+
+    private static final int PLAYER_ID = 2;
+    private static final long DATE = 1420135200000L;
+    private static final int GAME_ID = 100;
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        // The current schema as onCreate builds it; the plans need no rows
+        db = SQLiteDatabase.create(null);
+        db.execSQL(DatabaseHelper.CREATE_PLAYER_TABLE);
+        DatabaseHelper.createPlayerIndexes(db);
+        db.execSQL(DatabaseHelper.CREATE_GAME_TABLE);
+        DatabaseHelper.createGameIndexes(db);
+        DatabaseHelper.createRatingHistoryTable(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void playerGamesMergeBothColourIndexes() {
+        String id = String.valueOf(PLAYER_ID);
+        assertUsesIndexes(DatabaseHelper.playerGamesQuery(), new String[]{id, id, id});
+    }
+
+    @Test
+    public void gamePagesSeekTheDateIndexes() {
+        for (int playerId : new int[]{-1, PLAYER_ID}) {
+            String query = DatabaseHelper.gamesWithPlayersQuery(DatabaseHelper.pagedGamesSource(playerId), "50");
+            // The first page and one deep in the history
+            assertUsesIndexes(query, DatabaseHelper.gamesPageArgs(playerId, Long.MAX_VALUE, Integer.MAX_VALUE));
+            assertUsesIndexes(query, DatabaseHelper.gamesPageArgs(playerId, DATE, GAME_ID));
+        }
+    }
+
+    @Test
+    public void pageKeysAndCountsReadOnlyTheDateIndexes() {
+        for (int playerId : new int[]{-1, PLAYER_ID}) {
+            assertUsesIndexes(DatabaseHelper.gamePageKeysQuery(playerId, 500),
+                    DatabaseHelper.gamesPageArgs(playerId, Long.MAX_VALUE, Integer.MAX_VALUE));
+            assertUsesIndexes(DatabaseHelper.countGamesFromQuery(playerId),
+                    DatabaseHelper.gamesPageArgs(playerId, DATE, GAME_ID));
+        }
+    }
+
+    @Test
+    public void leaderboardSortsWalkThePlayerIndexes() {
+        String[] sortKeys = {DatabaseHelper.COLUMN_PLAYER_ELO, DatabaseHelper.COLUMN_PLAYER_NAME,
+                DatabaseHelper.COLUMN_PLAYER_GAMES_PLAYED, DatabaseHelper.COLUMN_PLAYER_WINS,
+                DatabaseHelper.COLUMN_PLAYER_WIN_RATE};
+        for (String sortKey : sortKeys) {
+            assertUsesIndexes(DatabaseHelper.leaderboardQuery(sortKey + " DESC"), null);
+            assertUsesIndexes(DatabaseHelper.leaderboardQuery(sortKey + " ASC"), null);
+        }
+    }
+
+    private void assertUsesIndexes(String query, String[] args) {
+        List<String> plan = explain(query, args);
+        for (String step : plan) {
+            assertFalse("Full scan of games in " + plan + " for " + query, SCAN_GAMES.matcher(step).find());
+            assertFalse("Sort in " + plan + " for " + query, step.contains(TEMP_SORT));
+        }
+    }
+
+    /**
+     * Get the detail of each step of a query's plan
+     */
+    private List<String> explain(String query, String[] args) {
+        List<String> plan = new ArrayList<>();
+        Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + query, args);
+        try {
+            int detail = cursor.getColumnIndexOrThrow("detail");
+            while (cursor.moveToNext()) {
+                plan.add(cursor.getString(detail));
+            }
+        } finally {
+            cursor.close();
+        }
+        return plan;
+    }
+}
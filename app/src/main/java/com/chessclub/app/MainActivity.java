@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.chessclub.app.ui.admin.AdminActivity;
 import com.chessclub.app.ui.game.SubmitGameActivity;
@@ -31,6 +32,10 @@ public class MainActivity extends AppCompatActivity {
         // Get isAdmin from intent
         isAdmin = getIntent().getBooleanExtra("isAdmin", false);
         
+        // Share the logged in player with the tab fragments through the ViewModel
+        MainViewModel viewModel = new ViewModelProvider(this).get(MainViewModel.class);
+        viewModel.setCurrentPlayerId(getIntent().getIntExtra("playerId", -1));
+        
         // Set up toolbar
         Toolbar toolbar = findViewById(R.id.toolbar);
         setSupportActionBar(toolbar);
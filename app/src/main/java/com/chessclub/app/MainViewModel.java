@@ -0,0 +1,235 @@
+package com.chessclub.app;
+
+import android.app.Application;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+
+import com.chessclub.app.database.LeaderboardIndex;
+import com.chessclub.app.database.PagedGameList;
+import com.chessclub.app.model.LeaderboardSnapshot;
+import com.chessclub.app.model.Player;
+import com.chessclub.app.model.PlayerRank;
+import com.chessclub.app.model.RankMove;
+import com.chessclub.app.repository.ClubRepository;
+
+import java.util.List;
+
+/**
+ * Activity-scoped state for the bottom navigation screens.
+ * Holds the leaderboard, the current player, their rank, the players ranked around them and
+ * paged game history, so switching tabs redraws from memory; each result is re-queried only
+ * after a write to its tables.
+ */
+public class MainViewModel extends AndroidViewModel {
+    // Places shown above and below the current player
+    private static final int PLACES_AROUND = 2;
+
+    private final ClubRepository repository;
+
+    private final CachedResult<LeaderboardSnapshot> leaderboardSnapshot;
+    private final MediatorLiveData<List<Player>> leaderboard = new MediatorLiveData<>();
+    private final CachedResult<Player> currentPlayer;
+    private final CachedResult<PlayerRank> currentPlayerRank;
+    private final CachedResult<List<Player>> playersAroundCurrentPlayer;
+    private final MutableLiveData<RankMove> currentPlayerRankMove = new MutableLiveData<>();
+    private PagedGameList playerGames;
+
+    private int leaderboardSortKey = -1;
+    private boolean leaderboardAscending;
+    // Snapshot and order the shown leaderboard was sorted from
+    private LeaderboardSnapshot shownSnapshot;
+    private int shownSortKey = -1;
+    private boolean shownAscending;
+    // Also read by the rank observer, on the writer thread
+    private volatile int currentPlayerId = -1;
+
+    private final LeaderboardIndex.RankObserver rankObserver = new LeaderboardIndex.RankObserver() {
+        @Override
+        public void onRankChanged(int playerId, int oldRank, int newRank) {
+            if (playerId == currentPlayerId) {
+                currentPlayerRankMove.postValue(new RankMove(playerId, oldRank, newRank));
+            }
+        }
+
+        @Override
+        public void onRanksReset() {
+            // After a bulk change the last move no longer tells where the player stands
+            currentPlayerRankMove.postValue(null);
+        }
+    };
+
+    public MainViewModel(@NonNull Application application) {
+        super(application);
+        repository = ClubRepository.getInstance(application);
+
+        leaderboardSnapshot = new CachedResult<LeaderboardSnapshot>() {
+            @Override
+            LiveData<LeaderboardSnapshot> load() {
+                return repository.getLeaderboardSnapshot();
+            }
+        };
+        leaderboard.addSource(leaderboardSnapshot, new Observer<LeaderboardSnapshot>() {
+            @Override
+            public void onChanged(LeaderboardSnapshot snapshot) {
+                showLeaderboard();
+            }
+        });
+        currentPlayer = new CachedResult<Player>() {
+            @Override
+            LiveData<Player> load() {
+                return currentPlayerId == -1 ? null : repository.getPlayer(currentPlayerId);
+            }
+        };
+        currentPlayerRank = new CachedResult<PlayerRank>() {
+            @Override
+            LiveData<PlayerRank> load() {
+                return currentPlayerId == -1 ? null : repository.getPlayerRank(currentPlayerId);
+            }
+        };
+        playersAroundCurrentPlayer = new CachedResult<List<Player>>() {
+            @Override
+            LiveData<List<Player>> load() {
+                return currentPlayerId == -1 ? null
+                        : repository.getPlayersAroundRank(currentPlayerId, PLACES_AROUND);
+            }
+        };
+        // Registered for the ViewModel's lifetime, so moves made from another screen are kept
+        repository.addRankObserver(rankObserver);
+    }
+
+    /**
+     * Set the logged in player whose stats and history are shown
+     */
+    public void setCurrentPlayerId(int playerId) {
+        if (playerId != currentPlayerId) {
+            currentPlayerId = playerId;
+            currentPlayer.reload();
+            currentPlayerRank.reload();
+            playersAroundCurrentPlayer.reload();
+            currentPlayerRankMove.setValue(null);
+            if (playerGames != null) {
+                playerGames.close();
+            }
+            playerGames = repository.getPlayerGames(playerId);
+        }
+    }
+
+    public int getCurrentPlayerId() {
+        return currentPlayerId;
+    }
+
+    /**
+     * Set the leaderboard sort order, one of the LeaderboardSnapshot sort keys.
+     * The snapshot is loaded on first use; later changes of order are sorted in memory.
+     */
+    public void setLeaderboardOrder(int sortKey, boolean ascending) {
+        boolean firstOrder = leaderboardSortKey == -1;
+        leaderboardSortKey = sortKey;
+        leaderboardAscending = ascending;
+        if (firstOrder) {
+            leaderboardSnapshot.reload();
+        } else {
+            showLeaderboard();
+        }
+    }
+
+    /**
+     * Force the leaderboard to be queried again
+     */
+    public void refreshLeaderboard() {
+        leaderboardSnapshot.reload();
+    }
+
+    public LiveData<List<Player>> getLeaderboard() {
+        return leaderboard;
+    }
+
+    public LiveData<Player> getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    public LiveData<PlayerRank> getCurrentPlayerRank() {
+        return currentPlayerRank;
+    }
+
+    /**
+     * Get the players ranked just above and below the current player, best first
+     */
+    public LiveData<List<Player>> getPlayersAroundCurrentPlayer() {
+        return playersAroundCurrentPlayer;
+    }
+
+    /**
+     * Get the current player's latest move on the leaderboard after a recorded game, or null
+     * if none since the player was set or since ranks last changed in bulk
+     */
+    public LiveData<RankMove> getCurrentPlayerRankMove() {
+        return currentPlayerRankMove;
+    }
+
+    /**
+     * Get the current player's game history, or null before a player is set
+     */
+    public PagedGameList getPlayerGames() {
+        return playerGames;
+    }
+
+    /**
+     * Show the current snapshot in the current order, unless that is already shown
+     */
+    private void showLeaderboard() {
+        LeaderboardSnapshot snapshot = leaderboardSnapshot.getValue();
+        if (snapshot == null || leaderboardSortKey == -1) {
+            return;
+        }
+        if (snapshot == shownSnapshot && leaderboardSortKey == shownSortKey
+                && leaderboardAscending == shownAscending) {
+            return;
+        }
+        shownSnapshot = snapshot;
+        shownSortKey = leaderboardSortKey;
+        shownAscending = leaderboardAscending;
+        leaderboard.setValue(snapshot.sorted(leaderboardSortKey, leaderboardAscending));
+    }
+
+    @Override
+    protected void onCleared() {
+        repository.removeRankObserver(rankObserver);
+        if (playerGames != null) {
+            playerGames.close();
+        }
+    }
+
+    /**
+     * A query result kept in memory. The source query is swapped when its parameters change;
+     * invalidation after writes is left to the observable source itself.
+     */
+    private abstract class CachedResult<T> extends MediatorLiveData<T> {
+        private LiveData<T> source;
+
+        /**
+         * Start the query for the current parameters, or return null if there is nothing to load
+         */
+        abstract LiveData<T> load();
+
+        void reload() {
+            if (source != null) {
+                removeSource(source);
+            }
+            source = load();
+            if (source != null) {
+                addSource(source, new Observer<T>() {
+                    @Override
+                    public void onChanged(T value) {
+                        setValue(value);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -5,46 +5,247 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
 
 import com.chessclub.app.model.Game;
+import com.chessclub.app.model.GameWithPlayers;
+import com.chessclub.app.model.LeaderboardSnapshot;
 import com.chessclub.app.model.Player;
+import com.chessclub.app.model.PlayerRank;
+import com.chessclub.app.model.RatingHistoryEntry;
+import com.chessclub.app.utils.EloRatingSystem;
+import com.chessclub.app.utils.Glicko2;
 import com.chessclub.app.utils.PinHasher;
+import com.chessclub.app.utils.PlayerNames;
+import com.chessclub.app.utils.RatingSystem;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
     
-    private static final String DATABASE_NAME = "chessclub.db";
-    private static final int DATABASE_VERSION = 1;
+    static final String DATABASE_NAME = "chessclub.db";
+    static final int DATABASE_VERSION = 8;
     
     // Player table
-    private static final String TABLE_PLAYERS = "players";
-    private static final String COL_PLAYER_ID = "id";
-    private static final String COL_PLAYER_NAME = "name";
-    private static final String COL_PLAYER_PIN_HASH = "pin_hash";
-    private static final String COL_PLAYER_ELO = "elo";
-    private static final String COL_PLAYER_WINS = "wins";
-    private static final String COL_PLAYER_DRAWS = "draws";
-    private static final String COL_PLAYER_LOSSES = "losses";
-    private static final String COL_PLAYER_IS_ADMIN = "is_admin";
-    private static final String COL_PLAYER_EMAIL = "email";
-    private static final String COL_PLAYER_PHONE = "phone";
+    static final String TABLE_PLAYERS = "players";
+    static final String COL_PLAYER_ID = "id";
+    static final String COL_PLAYER_NAME = "name";
+    static final String COL_PLAYER_PIN_HASH = "pin_hash";
+    static final String COL_PLAYER_ELO = "elo";
+    static final String COL_PLAYER_WINS = "wins";
+    static final String COL_PLAYER_DRAWS = "draws";
+    static final String COL_PLAYER_LOSSES = "losses";
+    static final String COL_PLAYER_IS_ADMIN = "is_admin";
+    static final String COL_PLAYER_EMAIL = "email";
+    static final String COL_PLAYER_PHONE = "phone";
+    static final String COL_PLAYER_RATING_DEVIATION = "rating_deviation";
+    static final String COL_PLAYER_VOLATILITY = "volatility";
+    // Derived from wins, draws and losses, stored so leaderboard sorts can use an index
+    static final String COL_PLAYER_GAMES_PLAYED = "games_played";
+    static final String COL_PLAYER_WIN_RATE = "win_rate";
+    
+    // Leaderboard sort keys for getLeaderboard, each backed by an index on the players table
+    public static final String COLUMN_PLAYER_ELO = COL_PLAYER_ELO;
+    public static final String COLUMN_PLAYER_NAME = COL_PLAYER_NAME + " COLLATE NOCASE";
+    public static final String COLUMN_PLAYER_GAMES_PLAYED = COL_PLAYER_GAMES_PLAYED;
+    public static final String COLUMN_PLAYER_WINS = COL_PLAYER_WINS;
+    public static final String COLUMN_PLAYER_WIN_RATE = COL_PLAYER_WIN_RATE;
     
     // Game table
-    private static final String TABLE_GAMES = "games";
-    private static final String COL_GAME_ID = "id";
-    private static final String COL_GAME_WHITE_ID = "white_player_id";
-    private static final String COL_GAME_BLACK_ID = "black_player_id";
-    private static final String COL_GAME_RESULT = "result";
-    private static final String COL_GAME_DATE = "date";
-    private static final String COL_GAME_WHITE_ELO_CHANGE = "white_elo_change";
-    private static final String COL_GAME_BLACK_ELO_CHANGE = "black_elo_change";
+    static final String TABLE_GAMES = "games";
+    static final String COL_GAME_ID = "id";
+    static final String COL_GAME_WHITE_ID = "white_player_id";
+    static final String COL_GAME_BLACK_ID = "black_player_id";
+    static final String COL_GAME_RESULT = "result";
+    static final String COL_GAME_DATE = "date";
+    static final String COL_GAME_WHITE_ELO_CHANGE = "white_elo_change";
+    static final String COL_GAME_BLACK_ELO_CHANGE = "black_elo_change";
+    
+    // Rating history table: one row per player per game
+    static final String TABLE_RATING_HISTORY = "rating_history";
+    static final String COL_HISTORY_ID = "id";
+    static final String COL_HISTORY_PLAYER_ID = "player_id";
+    static final String COL_HISTORY_GAME_ID = "game_id";
+    static final String COL_HISTORY_DATE = "date";
+    static final String COL_HISTORY_RATING_BEFORE = "rating_before";
+    static final String COL_HISTORY_RATING_AFTER = "rating_after";
+    
+    // Glicko-2 checkpoints: a player's deviation and volatility after each rating period they played
+    static final String TABLE_RATING_PERIODS = "rating_periods";
+    static final String COL_PERIOD_PLAYER_ID = "player_id";
+    static final String COL_PERIOD_PERIOD = "period";
+    static final String COL_PERIOD_DEVIATION = "deviation";
+    static final String COL_PERIOD_VOLATILITY = "volatility";
+    
+    // Club settings: a single row, so the rating mode commits with the re-rating it causes
+    static final String TABLE_SETTINGS = "settings";
+    static final String COL_SETTINGS_ID = "id";
+    static final String COL_SETTINGS_RATING_MODE = "rating_mode";
+    private static final int SETTINGS_ROW_ID = 1;
+    
+    // Projections for lean player lists
+    static final String[] LEADERBOARD_COLUMNS = {COL_PLAYER_ID, COL_PLAYER_NAME, COL_PLAYER_ELO,
+            COL_PLAYER_WINS, COL_PLAYER_DRAWS, COL_PLAYER_LOSSES, COL_PLAYER_WIN_RATE};
+    static final String[] NAME_COLUMNS = {COL_PLAYER_ID, COL_PLAYER_NAME};
+    private static final String[] SEARCH_COLUMNS = {COL_PLAYER_ID, COL_PLAYER_NAME, COL_PLAYER_ELO};
+    
+    // Column aliases for games joined with players
+    private static final String ALIAS_WHITE_NAME = "white_name";
+    private static final String ALIAS_WHITE_ELO = "white_elo";
+    private static final String ALIAS_BLACK_NAME = "black_name";
+    private static final String ALIAS_BLACK_ELO = "black_elo";
+    
+    // Player indexes, one per leaderboard sort key; names are also unique, ignoring case
+    private static final String INDEX_PLAYERS_ELO = "idx_players_elo";
+    private static final String INDEX_PLAYERS_NAME = "idx_players_name";
+    private static final String INDEX_PLAYERS_GAMES_PLAYED = "idx_players_games_played";
+    private static final String INDEX_PLAYERS_WINS = "idx_players_wins";
+    private static final String INDEX_PLAYERS_WIN_RATE = "idx_players_win_rate";
+    
+    // Game indexes
+    private static final String INDEX_GAMES_WHITE_DATE = "idx_games_white_date";
+    private static final String INDEX_GAMES_BLACK_DATE = "idx_games_black_date";
+    private static final String INDEX_GAMES_DATE = "idx_games_date";
+    
+    // Rating history indexes
+    private static final String INDEX_HISTORY_PLAYER_DATE = "idx_rating_history_player_date";
+    private static final String INDEX_HISTORY_GAME = "idx_rating_history_game";
+    
+    // Rating period index, for dropping the checkpoints of re-rated periods
+    private static final String INDEX_RATING_PERIODS_PERIOD = "idx_rating_periods_period";
+    
+    // Schema, shared with tools that build a database file off the device
+    static final String CREATE_PLAYER_TABLE = "CREATE TABLE " + TABLE_PLAYERS + "("
+            + COL_PLAYER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COL_PLAYER_NAME + " TEXT NOT NULL,"
+            + COL_PLAYER_PIN_HASH + " TEXT NOT NULL,"
+            + COL_PLAYER_ELO + " INTEGER DEFAULT 1200,"
+            + COL_PLAYER_WINS + " INTEGER DEFAULT 0,"
+            + COL_PLAYER_DRAWS + " INTEGER DEFAULT 0,"
+            + COL_PLAYER_LOSSES + " INTEGER DEFAULT 0,"
+            + COL_PLAYER_IS_ADMIN + " INTEGER DEFAULT 0,"
+            + COL_PLAYER_EMAIL + " TEXT,"
+            + COL_PLAYER_PHONE + " TEXT,"
+            + COL_PLAYER_RATING_DEVIATION + " REAL DEFAULT " + Glicko2.DEFAULT_DEVIATION + ","
+            + COL_PLAYER_VOLATILITY + " REAL DEFAULT " + Glicko2.DEFAULT_VOLATILITY + ","
+            + COL_PLAYER_GAMES_PLAYED + " INTEGER DEFAULT 0,"
+            + COL_PLAYER_WIN_RATE + " INTEGER DEFAULT 0"
+            + ")";
+    static final String[] PLAYER_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS " + INDEX_PLAYERS_ELO + " ON " + TABLE_PLAYERS
+                    + "(" + COL_PLAYER_ELO + ")",
+            "CREATE UNIQUE INDEX IF NOT EXISTS " + INDEX_PLAYERS_NAME + " ON " + TABLE_PLAYERS
+                    + "(" + COL_PLAYER_NAME + " COLLATE NOCASE)",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_PLAYERS_GAMES_PLAYED + " ON " + TABLE_PLAYERS
+                    + "(" + COL_PLAYER_GAMES_PLAYED + ")",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_PLAYERS_WINS + " ON " + TABLE_PLAYERS
+                    + "(" + COL_PLAYER_WINS + ")",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_PLAYERS_WIN_RATE + " ON " + TABLE_PLAYERS
+                    + "(" + COL_PLAYER_WIN_RATE + ")"
+    };
+    static final String CREATE_GAME_TABLE = "CREATE TABLE " + TABLE_GAMES + "("
+            + COL_GAME_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COL_GAME_WHITE_ID + " INTEGER,"
+            + COL_GAME_BLACK_ID + " INTEGER,"
+            + COL_GAME_RESULT + " INTEGER,"
+            + COL_GAME_DATE + " INTEGER,"
+            + COL_GAME_WHITE_ELO_CHANGE + " INTEGER,"
+            + COL_GAME_BLACK_ELO_CHANGE + " INTEGER,"
+            + "FOREIGN KEY(" + COL_GAME_WHITE_ID + ") REFERENCES " + TABLE_PLAYERS + "(" + COL_PLAYER_ID + "),"
+            + "FOREIGN KEY(" + COL_GAME_BLACK_ID + ") REFERENCES " + TABLE_PLAYERS + "(" + COL_PLAYER_ID + ")"
+            + ")";
+    static final String[] GAME_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS " + INDEX_GAMES_WHITE_DATE + " ON " + TABLE_GAMES
+                    + "(" + COL_GAME_WHITE_ID + ", " + COL_GAME_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_GAMES_BLACK_DATE + " ON " + TABLE_GAMES
+                    + "(" + COL_GAME_BLACK_ID + ", " + COL_GAME_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_GAMES_DATE + " ON " + TABLE_GAMES
+                    + "(" + COL_GAME_DATE + ")"
+    };
+    static final String CREATE_RATING_HISTORY_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_RATING_HISTORY + "("
+            + COL_HISTORY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+            + COL_HISTORY_PLAYER_ID + " INTEGER NOT NULL,"
+            + COL_HISTORY_GAME_ID + " INTEGER NOT NULL,"
+            + COL_HISTORY_DATE + " INTEGER NOT NULL,"
+            + COL_HISTORY_RATING_BEFORE + " INTEGER NOT NULL,"
+            + COL_HISTORY_RATING_AFTER + " INTEGER NOT NULL,"
+            + "FOREIGN KEY(" + COL_HISTORY_PLAYER_ID + ") REFERENCES " + TABLE_PLAYERS + "(" + COL_PLAYER_ID + "),"
+            + "FOREIGN KEY(" + COL_HISTORY_GAME_ID + ") REFERENCES " + TABLE_GAMES + "(" + COL_GAME_ID + ")"
+            + ")";
+    static final String[] RATING_HISTORY_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS " + INDEX_HISTORY_PLAYER_DATE + " ON " + TABLE_RATING_HISTORY
+                    + "(" + COL_HISTORY_PLAYER_ID + ", " + COL_HISTORY_DATE + ")",
+            "CREATE INDEX IF NOT EXISTS " + INDEX_HISTORY_GAME + " ON " + TABLE_RATING_HISTORY
+                    + "(" + COL_HISTORY_GAME_ID + ")"
+    };
+    static final String CREATE_RATING_PERIOD_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_RATING_PERIODS + "("
+            + COL_PERIOD_PLAYER_ID + " INTEGER NOT NULL,"
+            + COL_PERIOD_PERIOD + " INTEGER NOT NULL,"
+            + COL_PERIOD_DEVIATION + " REAL NOT NULL,"
+            + COL_PERIOD_VOLATILITY + " REAL NOT NULL,"
+            + "PRIMARY KEY(" + COL_PERIOD_PLAYER_ID + ", " + COL_PERIOD_PERIOD + "),"
+            + "FOREIGN KEY(" + COL_PERIOD_PLAYER_ID + ") REFERENCES " + TABLE_PLAYERS + "(" + COL_PLAYER_ID + ")"
+            + ")";
+    static final String[] RATING_PERIOD_INDEXES = {
+            "CREATE INDEX IF NOT EXISTS " + INDEX_RATING_PERIODS_PERIOD + " ON " + TABLE_RATING_PERIODS
+                    + "(" + COL_PERIOD_PERIOD + ")"
+    };
+    
+    static final String CREATE_SETTINGS_TABLE = "CREATE TABLE IF NOT EXISTS " + TABLE_SETTINGS + "("
+            + COL_SETTINGS_ID + " INTEGER PRIMARY KEY CHECK(" + COL_SETTINGS_ID + " = " + SETTINGS_ROW_ID + "),"
+            + COL_SETTINGS_RATING_MODE + " INTEGER NOT NULL DEFAULT 0"
+            + ")";
+    static final String INSERT_SETTINGS_ROW = "INSERT OR IGNORE INTO " + TABLE_SETTINGS
+            + "(" + COL_SETTINGS_ID + ") VALUES (" + SETTINGS_ROW_ID + ")";
+    
+    // Rating modes a club can choose between
+    public static final int RATING_MODE_ELO = 0;
+    public static final int RATING_MODE_GLICKO2 = 1;
+    
+    // Preferences that held the club's rating mode before version 8
+    private static final String PREF_NAME = "ChessClubPrefs";
+    private static final String KEY_RATING_MODE = "ratingMode";
     
     // Singleton instance
     private static DatabaseHelper instance;
     
+    // Precompiled statements for game recording, compiled on first use
+    private SQLiteStatement insertGameStatement;
+    private SQLiteStatement updatePlayerStatsStatement;
+    private SQLiteStatement appendRatingHistoryStatement;
+    private SQLiteStatement insertRatingHistoryStatement;
+    
+    // In-memory player cache, kept current by every write below
+    private final PlayerCache playerCache = new PlayerCache();
+    // Rank of every player by rating, kept current the same way as the cache
+    private final LeaderboardIndex leaderboardIndex = new LeaderboardIndex();
+    private final InvalidationTracker invalidationTracker = new InvalidationTracker();
+    
+    // Rates new games and replays history; every rating write uses this one system
+    private volatile RatingSystem ratingSystem = new EloRatingSystem();
+    
+    // Rating mode, read from the settings table on first use
+    private final Context context;
+    private volatile int ratingMode = -1;
+    // Only used inside write transactions, which SQLite runs one at a time
+    private final Glicko2 glicko2 = new Glicko2();
+    
+    // Tables written inside a still-open transaction on this thread, reported on the outermost end
+    private final ThreadLocal<Set<String>> deferredInvalidations = new ThreadLocal<Set<String>>() {
+        @Override
+        protected Set<String> initialValue() {
+            return new HashSet<>();
+        }
+    };
+    
     public static synchronized DatabaseHelper getInstance(Context context) {
         if (instance == null) {
             instance = new DatabaseHelper(context.getApplicationContext());
@@ -54,38 +255,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     
     private DatabaseHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
     }
     
     @Override
     public void onCreate(SQLiteDatabase db) {
-        // Create players table
-        String createPlayerTable = "CREATE TABLE " + TABLE_PLAYERS + "("
-                + COL_PLAYER_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + COL_PLAYER_NAME + " TEXT NOT NULL,"
-                + COL_PLAYER_PIN_HASH + " TEXT NOT NULL,"
-                + COL_PLAYER_ELO + " INTEGER DEFAULT 1200,"
-                + COL_PLAYER_WINS + " INTEGER DEFAULT 0,"
-                + COL_PLAYER_DRAWS + " INTEGER DEFAULT 0,"
-                + COL_PLAYER_LOSSES + " INTEGER DEFAULT 0,"
-                + COL_PLAYER_IS_ADMIN + " INTEGER DEFAULT 0,"
-                + COL_PLAYER_EMAIL + " TEXT,"
-                + COL_PLAYER_PHONE + " TEXT"
-                + ")";
-        db.execSQL(createPlayerTable);
-        
-        // Create games table
-        String createGameTable = "CREATE TABLE " + TABLE_GAMES + "("
-                + COL_GAME_ID + " INTEGER PRIMARY KEY AUTOINCREMENT,"
-                + COL_GAME_WHITE_ID + " INTEGER,"
-                + COL_GAME_BLACK_ID + " INTEGER,"
-                + COL_GAME_RESULT + " INTEGER,"
-                + COL_GAME_DATE + " INTEGER,"
-                + COL_GAME_WHITE_ELO_CHANGE + " INTEGER,"
-                + COL_GAME_BLACK_ELO_CHANGE + " INTEGER,"
-                + "FOREIGN KEY(" + COL_GAME_WHITE_ID + ") REFERENCES " + TABLE_PLAYERS + "(" + COL_PLAYER_ID + "),"
-                + "FOREIGN KEY(" + COL_GAME_BLACK_ID + ") REFERENCES " + TABLE_PLAYERS + "(" + COL_PLAYER_ID + ")"
-                + ")";
-        db.execSQL(createGameTable);
+        db.execSQL(CREATE_PLAYER_TABLE);
+        createPlayerIndexes(db);
+        db.execSQL(CREATE_GAME_TABLE);
+        createGameIndexes(db);
+        createRatingHistoryTable(db);
+        db.execSQL(CREATE_RATING_PERIOD_TABLE);
+        for (String index : RATING_PERIOD_INDEXES) {
+            db.execSQL(index);
+        }
+        db.execSQL(CREATE_SETTINGS_TABLE);
+        db.execSQL(INSERT_SETTINGS_ROW);
         
         // Insert default admin
         insertDefaultAdmin(db);
@@ -93,10 +278,369 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop and recreate tables on upgrade
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GAMES);
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_PLAYERS);
-        onCreate(db);
+        // Apply registered step migrations, keeping existing data; this runs on whichever
+        // thread first opens the database, which must not be the main thread
+        Migrations.upgrade(db, oldVersion, newVersion);
+        if (oldVersion < 8) {
+            moveRatingModeFromPreferences(db);
+        }
+        // Read from the database being upgraded: getRatingMode would reopen it
+        ratingMode = readRatingMode(db);
+        if (oldVersion < 7 && ratingMode == RATING_MODE_GLICKO2) {
+            // A Glicko-2 club re-rates once to fill the rating period checkpoints
+            RatingReplayer replayer = new RatingReplayer(db, ratingSystem);
+            try {
+                replayer.replayInPeriods(glicko2, Long.MIN_VALUE,
+                        RatingReplayer.ratingsBefore(db, Long.MIN_VALUE, Integer.MIN_VALUE));
+            } finally {
+                replayer.close();
+            }
+        }
+        playerCache.clear();
+        leaderboardIndex.invalidate();
+    }
+    
+    /**
+     * Get the player cache, e.g. to inspect its hit and miss counters
+     */
+    public PlayerCache getPlayerCache() {
+        return playerCache;
+    }
+    
+    /**
+     * Get the leaderboard rank index, e.g. to observe rank changes after each game
+     */
+    public LeaderboardIndex getLeaderboardIndex() {
+        return leaderboardIndex;
+    }
+    
+    /**
+     * Get the tracker notified whenever the players, games or rating history tables are written
+     */
+    public InvalidationTracker getInvalidationTracker() {
+        return invalidationTracker;
+    }
+    
+    /**
+     * Get the rating system used to rate games and replay the history
+     */
+    public RatingSystem getRatingSystem() {
+        return ratingSystem;
+    }
+    
+    /**
+     * Set the rating system used for games recorded or replayed from now on
+     */
+    public void setRatingSystem(RatingSystem ratingSystem) {
+        this.ratingSystem = ratingSystem;
+    }
+    
+    /**
+     * Get how the club is rated: RATING_MODE_ELO, rating each game as it is recorded with the
+     * rating system, or RATING_MODE_GLICKO2, rating each day's games together as one period
+     */
+    public int getRatingMode() {
+        if (ratingMode < 0) {
+            ratingMode = readRatingMode(getReadableDatabase());
+        }
+        return ratingMode;
+    }
+    
+    /**
+     * Switch the club's rating mode and re-rate the whole history under it
+     */
+    public void setRatingMode(int mode) {
+        if (mode != RATING_MODE_ELO && mode != RATING_MODE_GLICKO2) {
+            throw new IllegalArgumentException("Unknown rating mode " + mode);
+        }
+        if (mode == getRatingMode()) {
+            return;
+        }
+        recomputeRatings(mode);
+    }
+    
+    /**
+     * Re-rate the whole game history under the club's rating mode, in one transaction.
+     * Each player starts from their rating before their first game.
+     */
+    public void recomputeRatings() {
+        recomputeRatings(getRatingMode());
+    }
+    
+    private void recomputeRatings(int mode) {
+        SQLiteDatabase db = getWritableDatabase();
+        
+        db.beginTransaction();
+        RatingReplayer replayer = new RatingReplayer(db, ratingSystem);
+        try {
+            if (mode == RATING_MODE_GLICKO2) {
+                replayer.replayInPeriods(glicko2, Long.MIN_VALUE,
+                        RatingReplayer.ratingsBefore(db, Long.MIN_VALUE, Integer.MIN_VALUE));
+            } else {
+                replayer.replay(Long.MIN_VALUE, Integer.MIN_VALUE,
+                        RatingReplayer.ratingsBefore(db, Long.MIN_VALUE, Integer.MIN_VALUE));
+            }
+            // Saved with the ratings it produced, so a failed re-rating keeps the old mode
+            writeRatingMode(db, mode);
+            db.setTransactionSuccessful();
+        } finally {
+            replayer.close();
+            db.endTransaction();
+        }
+        ratingMode = mode;
+        
+        playerCache.clear();
+        leaderboardIndex.invalidate();
+        tablesChanged(db, TABLE_GAMES, TABLE_PLAYERS, TABLE_RATING_HISTORY);
+    }
+    
+    /**
+     * Read the club's rating mode from the settings table, Elo if it has no row
+     */
+    private static int readRatingMode(SQLiteDatabase db) {
+        Cursor cursor = db.query(TABLE_SETTINGS, new String[]{COL_SETTINGS_RATING_MODE},
+                COL_SETTINGS_ID + " = " + SETTINGS_ROW_ID, null, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : RATING_MODE_ELO;
+        } finally {
+            cursor.close();
+        }
+    }
+    
+    private static void writeRatingMode(SQLiteDatabase db, int mode) {
+        ContentValues values = new ContentValues();
+        values.put(COL_SETTINGS_ID, SETTINGS_ROW_ID);
+        values.put(COL_SETTINGS_RATING_MODE, mode);
+        db.insertWithOnConflict(TABLE_SETTINGS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+    
+    /**
+     * Copy the rating mode a club chose before version 8 into the settings table, inside the
+     * upgrade transaction; the preference is never read again once the upgrade commits
+     */
+    private void moveRatingModeFromPreferences(SQLiteDatabase db) {
+        writeRatingMode(db, context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE)
+                .getInt(KEY_RATING_MODE, RATING_MODE_ELO));
+    }
+    
+    /**
+     * Work run inside a database transaction
+     */
+    public interface TransactionBody<T> {
+        T run(SQLiteDatabase db);
+    }
+    
+    /**
+     * Run work in a transaction. Table invalidations caused by writes inside it are
+     * delivered once the outermost transaction has ended, never for half-finished work.
+     * The body marks nothing itself: returning normally commits, throwing rolls back.
+     */
+    public <T> T runInTransaction(TransactionBody<T> body) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            T result = body.run(db);
+            db.setTransactionSuccessful();
+            return result;
+        } finally {
+            db.endTransaction();
+            if (!db.inTransaction()) {
+                flushInvalidations();
+            }
+        }
+    }
+    
+    /**
+     * Report written tables to the invalidation tracker, deferring while a transaction is open
+     */
+    private void tablesChanged(SQLiteDatabase db, String... tables) {
+        Set<String> deferred = deferredInvalidations.get();
+        for (String table : tables) {
+            deferred.add(table);
+        }
+        if (!db.inTransaction()) {
+            flushInvalidations();
+        }
+    }
+    
+    private void flushInvalidations() {
+        Set<String> deferred = deferredInvalidations.get();
+        if (deferred.isEmpty()) {
+            return;
+        }
+        String[] tables = deferred.toArray(new String[0]);
+        deferred.clear();
+        invalidationTracker.notifyChanged(tables);
+    }
+    
+    /**
+     * Create an index per leaderboard sort key, so each sort order is an index walk
+     */
+    static void createPlayerIndexes(SQLiteDatabase db) {
+        for (String index : PLAYER_INDEXES) {
+            db.execSQL(index);
+        }
+    }
+    
+    /**
+     * Add the stored games played and win rate columns, filled from each player's results,
+     * and index every leaderboard sort key
+     */
+    static void addPlayerSortColumns(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_PLAYERS + " ADD COLUMN "
+                + COL_PLAYER_GAMES_PLAYED + " INTEGER DEFAULT 0");
+        db.execSQL("ALTER TABLE " + TABLE_PLAYERS + " ADD COLUMN "
+                + COL_PLAYER_WIN_RATE + " INTEGER DEFAULT 0");
+        db.execSQL("UPDATE " + TABLE_PLAYERS + " SET "
+                + COL_PLAYER_GAMES_PLAYED + " = " + COL_PLAYER_WINS + " + " + COL_PLAYER_DRAWS
+                + " + " + COL_PLAYER_LOSSES + ", "
+                + COL_PLAYER_WIN_RATE + " = " + winRateExpression(COL_PLAYER_WINS,
+                        COL_PLAYER_WINS + " + " + COL_PLAYER_DRAWS + " + " + COL_PLAYER_LOSSES));
+        // The indexes as of version 5, spelled out so later changes to PLAYER_INDEXES cannot
+        // alter this step; names may still repeat here, so the name index is not unique
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_players_elo ON players(elo)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_players_name ON players(name COLLATE NOCASE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_players_games_played ON players(games_played)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_players_wins ON players(wins)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_players_win_rate ON players(win_rate)");
+    }
+    
+    /**
+     * Rename players whose names equal an earlier player's, ignoring case, by numbering them,
+     * and replace the name index with a unique one
+     */
+    static void addUniquePlayerNameIndex(SQLiteDatabase db) {
+        List<Integer> ids = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        Set<String> allNames = new HashSet<>();
+        Cursor cursor = db.query(TABLE_PLAYERS, NAME_COLUMNS, null, null, null, null, COL_PLAYER_ID);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getInt(0));
+                names.add(cursor.getString(1));
+                allNames.add(PlayerNames.foldCase(cursor.getString(1)));
+            }
+        } finally {
+            cursor.close();
+        }
+        
+        SQLiteStatement rename = db.compileStatement("UPDATE " + TABLE_PLAYERS + " SET "
+                + COL_PLAYER_NAME + " = ? WHERE " + COL_PLAYER_ID + " = ?");
+        try {
+            Set<String> kept = new HashSet<>();
+            for (int i = 0; i < ids.size(); i++) {
+                String name = names.get(i);
+                if (kept.add(PlayerNames.foldCase(name))) {
+                    continue;
+                }
+                // Number the duplicate, avoiding every name already in use
+                String renamed;
+                int number = 2;
+                do {
+                    renamed = name + " (" + number++ + ")";
+                } while (allNames.contains(PlayerNames.foldCase(renamed)));
+                allNames.add(PlayerNames.foldCase(renamed));
+                kept.add(PlayerNames.foldCase(renamed));
+                rename.bindString(1, renamed);
+                rename.bindLong(2, ids.get(i));
+                rename.executeUpdateDelete();
+            }
+        } finally {
+            rename.close();
+        }
+        
+        db.execSQL("DROP INDEX IF EXISTS idx_players_name");
+        db.execSQL("CREATE UNIQUE INDEX idx_players_name ON players(name COLLATE NOCASE)");
+    }
+    
+    /**
+     * SQL for the fixed-point win rate of Player.winRateOf, from SQL for wins and games played
+     */
+    private static String winRateExpression(String wins, String gamesPlayed) {
+        return "CASE WHEN " + gamesPlayed + " = 0 THEN 0 ELSE (" + wins + ") * "
+                + Player.WIN_RATE_SCALE + " / (" + gamesPlayed + ") END";
+    }
+    
+    /**
+     * Create indexes on the games table.
+     * Per-player indexes serve history and game-count lookups for either colour,
+     * the date index serves the full history ordered by date.
+     */
+    static void createGameIndexes(SQLiteDatabase db) {
+        for (String index : GAME_INDEXES) {
+            db.execSQL(index);
+        }
+    }
+    
+    /**
+     * Add the table of Glicko-2 rating period checkpoints, with the version 7 DDL spelled out
+     */
+    static void addRatingPeriodTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS rating_periods(player_id INTEGER NOT NULL,"
+                + "period INTEGER NOT NULL,deviation REAL NOT NULL,volatility REAL NOT NULL,"
+                + "PRIMARY KEY(player_id, period),FOREIGN KEY(player_id) REFERENCES players(id))");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_rating_periods_period ON rating_periods(period)");
+    }
+    
+    /**
+     * Add the one-row settings table, Elo rated, with the version 8 DDL spelled out
+     */
+    static void addSettingsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS settings(id INTEGER PRIMARY KEY CHECK(id = 1),"
+                + "rating_mode INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("INSERT OR IGNORE INTO settings(id) VALUES (1)");
+    }
+    
+    /**
+     * Add the Glicko-2 deviation and volatility columns to the players table
+     */
+    static void addGlicko2Columns(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_PLAYERS + " ADD COLUMN "
+                + COL_PLAYER_RATING_DEVIATION + " REAL DEFAULT " + Glicko2.DEFAULT_DEVIATION);
+        db.execSQL("ALTER TABLE " + TABLE_PLAYERS + " ADD COLUMN "
+                + COL_PLAYER_VOLATILITY + " REAL DEFAULT " + Glicko2.DEFAULT_VOLATILITY);
+    }
+    
+    /**
+     * Create the rating history table and its indexes.
+     * The (player, date) index serves rating charts and rating-at-date lookups as range scans,
+     * the game index finds a game's rows when it is deleted or its ratings are replayed.
+     */
+    static void createRatingHistoryTable(SQLiteDatabase db) {
+        db.execSQL(CREATE_RATING_HISTORY_TABLE);
+        for (String index : RATING_HISTORY_INDEXES) {
+            db.execSQL(index);
+        }
+    }
+    
+    /**
+     * Fill the rating history from the games already recorded, walking them in order.
+     * Each player's first rating is their current rating minus every delta they gained,
+     * and the stored deltas are applied from there, so the history matches the stored games.
+     */
+    static void backfillRatingHistory(SQLiteDatabase db) {
+        SparseIntArray ratings = RatingReplayer.ratingsBefore(db, Long.MIN_VALUE, Integer.MIN_VALUE);
+        
+        SQLiteStatement statement = compileInsertRatingHistory(db);
+        Cursor cursor = db.query(TABLE_GAMES, null, null, null, null, null,
+                COL_GAME_DATE + " ASC, " + COL_GAME_ID + " ASC");
+        GameCursor games = new GameCursor(cursor);
+        try {
+            while (games.hasNext()) {
+                Game game = games.next();
+                int whiteRating = ratings.get(game.getWhitePlayerId());
+                int blackRating = ratings.get(game.getBlackPlayerId());
+                insertRatingHistory(statement, game.getWhitePlayerId(), game.getId(), game.getDate(),
+                        whiteRating, whiteRating + game.getWhiteEloChange());
+                insertRatingHistory(statement, game.getBlackPlayerId(), game.getId(), game.getDate(),
+                        blackRating, blackRating + game.getBlackEloChange());
+                ratings.put(game.getWhitePlayerId(), whiteRating + game.getWhiteEloChange());
+                ratings.put(game.getBlackPlayerId(), blackRating + game.getBlackEloChange());
+            }
+        } finally {
+            games.close();
+            statement.close();
+        }
     }
     
     private void insertDefaultAdmin(SQLiteDatabase db) {
@@ -112,6 +656,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     
     /**
      * Add a new player to the database
+     * @return The new player's id, or -1 if another player already has the name, ignoring case
      */
     public long addPlayer(Player player) {
         SQLiteDatabase db = getWritableDatabase();
@@ -126,14 +671,22 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_PLAYER_IS_ADMIN, player.isAdmin() ? 1 : 0);
         values.put(COL_PLAYER_EMAIL, player.getEmail());
         values.put(COL_PLAYER_PHONE, player.getPhone());
+        values.put(COL_PLAYER_GAMES_PLAYED, player.getGamesPlayed());
+        values.put(COL_PLAYER_WIN_RATE, player.getWinRateFixed());
         
         long id = db.insert(TABLE_PLAYERS, null, values);
         player.setId((int) id);
+        if (id > 0) {
+            playerCache.put(player);
+            leaderboardIndex.put(player.getId(), player.getElo());
+            tablesChanged(db, TABLE_PLAYERS);
+        }
         return id;
     }
     
     /**
-     * Update an existing player
+     * Update an existing player; nothing is written if another player already has the new
+     * name, ignoring case
      */
     public int updatePlayer(Player player) {
         SQLiteDatabase db = getWritableDatabase();
@@ -150,9 +703,17 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(COL_PLAYER_IS_ADMIN, player.isAdmin() ? 1 : 0);
         values.put(COL_PLAYER_EMAIL, player.getEmail());
         values.put(COL_PLAYER_PHONE, player.getPhone());
+        values.put(COL_PLAYER_GAMES_PLAYED, player.getGamesPlayed());
+        values.put(COL_PLAYER_WIN_RATE, player.getWinRateFixed());
         
-        return db.update(TABLE_PLAYERS, values, COL_PLAYER_ID + " = ?",
-                new String[]{String.valueOf(player.getId())});
+        int rowsAffected = db.updateWithOnConflict(TABLE_PLAYERS, values, COL_PLAYER_ID + " = ?",
+                new String[]{String.valueOf(player.getId())}, SQLiteDatabase.CONFLICT_IGNORE);
+        if (rowsAffected > 0) {
+            playerCache.update(player);
+            leaderboardIndex.put(player.getId(), player.getElo());
+            tablesChanged(db, TABLE_PLAYERS);
+        }
+        return rowsAffected;
     }
     
     /**
@@ -161,28 +722,41 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     public int deletePlayer(int playerId) {
         SQLiteDatabase db = getWritableDatabase();
         
-        // First check if player has any games
-        String gameCountQuery = "SELECT COUNT(*) FROM " + TABLE_GAMES +
-                " WHERE " + COL_GAME_WHITE_ID + " = ? OR " + COL_GAME_BLACK_ID + " = ?";
-        Cursor cursor = db.rawQuery(gameCountQuery, new String[]{String.valueOf(playerId), String.valueOf(playerId)});
-        int gameCount = 0;
+        // First check if player has any games, probing each colour's index separately
+        String hasGamesQuery = "SELECT EXISTS(SELECT 1 FROM " + TABLE_GAMES +
+                " WHERE " + COL_GAME_WHITE_ID + " = ?) OR EXISTS(SELECT 1 FROM " + TABLE_GAMES +
+                " WHERE " + COL_GAME_BLACK_ID + " = ?)";
+        Cursor cursor = db.rawQuery(hasGamesQuery, new String[]{String.valueOf(playerId), String.valueOf(playerId)});
+        boolean hasGames = false;
         if (cursor.moveToFirst()) {
-            gameCount = cursor.getInt(0);
+            hasGames = cursor.getInt(0) != 0;
         }
         cursor.close();
         
-        if (gameCount > 0) {
+        if (hasGames) {
             return -1; // Player has games, cannot delete
         }
         
-        return db.delete(TABLE_PLAYERS, COL_PLAYER_ID + " = ?",
+        int rowsAffected = db.delete(TABLE_PLAYERS, COL_PLAYER_ID + " = ?",
                 new String[]{String.valueOf(playerId)});
+        playerCache.remove(playerId);
+        if (rowsAffected > 0) {
+            leaderboardIndex.remove(playerId);
+            tablesChanged(db, TABLE_PLAYERS);
+        }
+        return rowsAffected;
     }
     
     /**
      * Get a player by ID
      */
     public Player getPlayer(int id) {
+        Player cached = playerCache.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = playerCache.getGeneration();
+        
         SQLiteDatabase db = getReadableDatabase();
         
         String query = "SELECT * FROM " + TABLE_PLAYERS + " WHERE " + COL_PLAYER_ID + " = ?";
@@ -190,7 +764,8 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         
         Player player = null;
         if (cursor.moveToFirst()) {
-            player = cursorToPlayer(cursor);
+            player = new PlayerMapper(cursor).map(cursor);
+            playerCache.putIfUnchanged(player, generation);
         }
         cursor.close();
         
@@ -208,25 +783,112 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Get all players with sorting
      */
     public List<Player> getAllPlayers(String sortBy) {
-        String query = "SELECT * FROM " + TABLE_PLAYERS;
-        if (sortBy != null) {
-            query += " ORDER BY " + sortBy;
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(TABLE_PLAYERS, null, null, null, null, null, sortBy);
+        return readAll(cursor, new PlayerMapper(cursor));
+    }
+    
+    /**
+     * Get players for the leaderboard: ratings and results only, without PIN hashes
+     * or contact details, so each row takes a fraction of the cursor window
+     */
+    public List<Player> getLeaderboard(String sortBy) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.rawQuery(leaderboardQuery(sortBy), null);
+        return readAll(cursor, new PlayerMapper(cursor));
+    }
+    
+    /**
+     * SQL of getLeaderboard, in the order of one of the leaderboard sort keys
+     */
+    static String leaderboardQuery(String sortBy) {
+        return SQLiteQueryBuilder.buildQueryString(false, TABLE_PLAYERS, LEADERBOARD_COLUMNS,
+                null, null, null, sortBy, null);
+    }
+    
+    /**
+     * Get every leaderboard row as a snapshot that can be sorted in memory by any key
+     */
+    public LeaderboardSnapshot getLeaderboardSnapshot() {
+        return LeaderboardSnapshot.of(getLeaderboard(COL_PLAYER_ID));
+    }
+    
+    /**
+     * Get the ID and name of every player, ordered by name ignoring case, for pickers such as
+     * the login list; the order is a walk of the name index
+     */
+    public List<Player> getPlayerNames() {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(TABLE_PLAYERS, NAME_COLUMNS, null, null, null, null, COLUMN_PLAYER_NAME);
+        return readAll(cursor, new PlayerMapper(cursor));
+    }
+    
+    /**
+     * Get a player by name, ignoring case, with one lookup in the unique name index
+     */
+    public Player getPlayerByName(String name) {
+        long generation = playerCache.getGeneration();
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT * FROM " + TABLE_PLAYERS + " WHERE " + COL_PLAYER_NAME
+                + " = ? COLLATE NOCASE", new String[]{name});
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            Player player = new PlayerMapper(cursor).map(cursor);
+            playerCache.putIfUnchanged(player, generation);
+            return player;
+        } finally {
+            cursor.close();
         }
-        
+    }
+    
+    /**
+     * Find players by name, ignoring case, for autocomplete: names starting with the query
+     * come first, read as a range of the name index, then names containing it elsewhere,
+     * found by scanning that index. Both groups are ordered by name.
+     * Only the ID, name and rating are loaded.
+     */
+    public List<Player> searchPlayers(String query, int limit) {
         SQLiteDatabase db = getReadableDatabase();
-        Cursor cursor = db.rawQuery(query, null);
+        // Every name starting with the query sorts below it followed by the highest code point
+        String upperBound = query + "\uDBFF\uDFFF";
+        String prefixRange = COL_PLAYER_NAME + " >= ? COLLATE NOCASE AND "
+                + COL_PLAYER_NAME + " < ? COLLATE NOCASE";
+        String orderBy = COL_PLAYER_NAME + " COLLATE NOCASE";
         
-        List<Player> players = new ArrayList<>();
-        if (cursor.moveToFirst()) {
-            do {
-                players.add(cursorToPlayer(cursor));
-            } while (cursor.moveToNext());
+        Cursor cursor = db.query(TABLE_PLAYERS, SEARCH_COLUMNS, prefixRange,
+                new String[]{query, upperBound}, null, null, orderBy, String.valueOf(limit));
+        List<Player> players = readAll(cursor, new PlayerMapper(cursor));
+        if (players.size() >= limit || query.isEmpty()) {
+            return players;
         }
-        cursor.close();
         
+        String pattern = "%" + query.replace("\\", "\\\\").replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        cursor = db.query(TABLE_PLAYERS, SEARCH_COLUMNS,
+                COL_PLAYER_NAME + " LIKE ? ESCAPE '\\' AND NOT (" + prefixRange + ")",
+                new String[]{pattern, query, upperBound}, null, null, orderBy,
+                String.valueOf(limit - players.size()));
+        players.addAll(readAll(cursor, new PlayerMapper(cursor)));
         return players;
     }
     
+    /**
+     * Map every row of a cursor and close it
+     */
+    private static <T> List<T> readAll(Cursor cursor, RowMapper<T> mapper) {
+        try {
+            List<T> rows = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                rows.add(mapper.map(cursor));
+            }
+            return rows;
+        } finally {
+            cursor.close();
+        }
+    }
+    
     /**
      * Verify PIN for a player
      */
@@ -254,147 +916,618 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         SQLiteDatabase db = getWritableDatabase();
         ContentValues values = new ContentValues();
         
-        values.put(COL_PLAYER_PIN_HASH, PinHasher.hashPin(newPin));
+        String pinHash = PinHasher.hashPin(newPin);
+        values.put(COL_PLAYER_PIN_HASH, pinHash);
         
         int rowsAffected = db.update(TABLE_PLAYERS, values, COL_PLAYER_ID + " = ?",
                 new String[]{String.valueOf(playerId)});
+        if (rowsAffected > 0) {
+            playerCache.updatePinHash(playerId, pinHash);
+            tablesChanged(db, TABLE_PLAYERS);
+        }
         return rowsAffected > 0;
     }
     
+    // Game methods
+    
     /**
-     * Convert cursor to Player object
+     * Add a new game to the database.
+     * The game row and both players' counters are written in a single transaction,
+     * using in-place UPDATEs so no player rows need to be read first.
+     * Clubs rated with Glicko-2 then re-rate the game's rating period, and any later one, in
+     * the same transaction, so the game is rated together with the rest of its day; its
+     * stored ELO changes may then differ from the ones set on the passed game.
      */
-    private Player cursorToPlayer(Cursor cursor) {
-        Player player = new Player();
-        player.setId(cursor.getInt(cursor.getColumnIndex(COL_PLAYER_ID)));
-        player.setName(cursor.getString(cursor.getColumnIndex(COL_PLAYER_NAME)));
-        player.setPinHash(cursor.getString(cursor.getColumnIndex(COL_PLAYER_PIN_HASH)));
-        player.setElo(cursor.getInt(cursor.getColumnIndex(COL_PLAYER_ELO)));
-        player.setWins(cursor.getInt(cursor.getColumnIndex(COL_PLAYER_WINS)));
-        player.setDraws(cursor.getInt(cursor.getColumnIndex(COL_PLAYER_DRAWS)));
-        player.setLosses(cursor.getInt(cursor.getColumnIndex(COL_PLAYER_LOSSES)));
-        player.setAdmin(cursor.getInt(cursor.getColumnIndex(COL_PLAYER_IS_ADMIN)) == 1);
+    public long addGame(Game game) {
+        SQLiteDatabase db = getWritableDatabase();
+        long id;
+        SparseIntArray replayed = null;
         
-        int emailIndex = cursor.getColumnIndex(COL_PLAYER_EMAIL);
-        if (emailIndex >= 0 && !cursor.isNull(emailIndex)) {
-            player.setEmail(cursor.getString(emailIndex));
+        db.beginTransaction();
+        try {
+            id = insertGame(db, game);
+            
+            // Update player stats
+            updatePlayerStatsAfterGame(db, game, 1);
+            
+            // Snapshot both ratings, read back from the rows just updated
+            appendRatingHistory(db, game.getWhitePlayerId(), id, game.getDate(), game.getWhiteEloChange());
+            appendRatingHistory(db, game.getBlackPlayerId(), id, game.getDate(), game.getBlackEloChange());
+            
+            if (getRatingMode() == RATING_MODE_GLICKO2) {
+                // Re-rate the game's period, which is usually today's and the last one
+                replayed = replayPeriodsFrom(db, game.getDate());
+            }
+            
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
         
-        int phoneIndex = cursor.getColumnIndex(COL_PLAYER_PHONE);
-        if (phoneIndex >= 0 && !cursor.isNull(phoneIndex)) {
-            player.setPhone(cursor.getString(phoneIndex));
+        if (replayed != null) {
+            evictReplayedPlayers(game, replayed);
+        } else {
+            updateCachedStatsAfterGame(game, 1);
+            // Moving the players in the rank index tells its observers their new ranks
+            leaderboardIndex.applyRatingDelta(game.getWhitePlayerId(), game.getWhiteEloChange());
+            leaderboardIndex.applyRatingDelta(game.getBlackPlayerId(), game.getBlackEloChange());
         }
+        tablesChanged(db, TABLE_GAMES, TABLE_PLAYERS, TABLE_RATING_HISTORY);
+        game.setId((int) id);
+        return id;
+    }
+    
+    /**
+     * Insert a batch of games with their rating history rows and add the batch's ELO and
+     * win/draw/loss deltas to its players, in one transaction through precompiled statements,
+     * so committed games and player counters always agree. The ratings before each game are
+     * passed in, as bulk import rates a batch before writing it.
+     * @param whiteRatings White's rating before each game, parallel to games
+     * @param blackRatings Black's rating before each game, parallel to games
+     * @param playerIds Players whose statistics the batch changes
+     * @param eloDeltas ELO change of each player, parallel to playerIds, as are the result deltas
+     * @param playerCount Number of entries used in playerIds and the delta arrays
+     */
+    void insertGames(List<Game> games, int[] whiteRatings, int[] blackRatings,
+                     int[] playerIds, int[] eloDeltas, int[] winsDeltas,
+                     int[] drawsDeltas, int[] lossesDeltas, int playerCount) {
+        SQLiteDatabase db = getWritableDatabase();
         
-        return player;
+        db.beginTransaction();
+        try {
+            if (insertRatingHistoryStatement == null) {
+                insertRatingHistoryStatement = compileInsertRatingHistory(db);
+            }
+            for (int i = 0; i < games.size(); i++) {
+                Game game = games.get(i);
+                game.setId((int) insertGame(db, game));
+                insertRatingHistory(insertRatingHistoryStatement, game.getWhitePlayerId(), game.getId(),
+                        game.getDate(), whiteRatings[i], whiteRatings[i] + game.getWhiteEloChange());
+                insertRatingHistory(insertRatingHistoryStatement, game.getBlackPlayerId(), game.getId(),
+                        game.getDate(), blackRatings[i], blackRatings[i] + game.getBlackEloChange());
+            }
+            for (int i = 0; i < playerCount; i++) {
+                updatePlayerStats(db, playerIds[i], eloDeltas[i],
+                        winsDeltas[i], drawsDeltas[i], lossesDeltas[i]);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        
+        for (int i = 0; i < playerCount; i++) {
+            playerCache.applyStatDeltas(playerIds[i], eloDeltas[i],
+                    winsDeltas[i], drawsDeltas[i], lossesDeltas[i]);
+        }
+        leaderboardIndex.invalidate();
+        tablesChanged(db, TABLE_GAMES, TABLE_PLAYERS, TABLE_RATING_HISTORY);
     }
     
-    // Game methods
+    /**
+     * Insert a game row using the precompiled insert statement.
+     * Must be called with a transaction open on db.
+     */
+    private long insertGame(SQLiteDatabase db, Game game) {
+        if (insertGameStatement == null) {
+            insertGameStatement = db.compileStatement("INSERT INTO " + TABLE_GAMES + "("
+                    + COL_GAME_WHITE_ID + ", "
+                    + COL_GAME_BLACK_ID + ", "
+                    + COL_GAME_RESULT + ", "
+                    + COL_GAME_DATE + ", "
+                    + COL_GAME_WHITE_ELO_CHANGE + ", "
+                    + COL_GAME_BLACK_ELO_CHANGE
+                    + ") VALUES (?, ?, ?, ?, ?, ?)");
+        }
+        
+        SQLiteStatement statement = insertGameStatement;
+        statement.clearBindings();
+        statement.bindLong(1, game.getWhitePlayerId());
+        statement.bindLong(2, game.getBlackPlayerId());
+        statement.bindLong(3, game.getResult());
+        statement.bindLong(4, game.getDate());
+        statement.bindLong(5, game.getWhiteEloChange());
+        statement.bindLong(6, game.getBlackEloChange());
+        return statement.executeInsert();
+    }
     
     /**
-     * Add a new game to the database
+     * Record a player's rating around a game whose stats were just applied:
+     * the rating after is the stored rating, the rating before is that minus the game's delta.
+     * Must be called with a transaction open on db.
      */
-    public long addGame(Game game) {
-        SQLiteDatabase db = getWritableDatabase();
-        ContentValues values = new ContentValues();
+    private void appendRatingHistory(SQLiteDatabase db, int playerId, long gameId, long date, int eloChange) {
+        if (appendRatingHistoryStatement == null) {
+            appendRatingHistoryStatement = db.compileStatement("INSERT INTO " + TABLE_RATING_HISTORY + "("
+                    + COL_HISTORY_PLAYER_ID + ", "
+                    + COL_HISTORY_GAME_ID + ", "
+                    + COL_HISTORY_DATE + ", "
+                    + COL_HISTORY_RATING_BEFORE + ", "
+                    + COL_HISTORY_RATING_AFTER
+                    + ") SELECT " + COL_PLAYER_ID + ", ?, ?, " + COL_PLAYER_ELO + " - ?, " + COL_PLAYER_ELO
+                    + " FROM " + TABLE_PLAYERS + " WHERE " + COL_PLAYER_ID + " = ?");
+        }
         
-        values.put(COL_GAME_WHITE_ID, game.getWhitePlayerId());
-        values.put(COL_GAME_BLACK_ID, game.getBlackPlayerId());
-        values.put(COL_GAME_RESULT, game.getResult());
-        values.put(COL_GAME_DATE, game.getDate());
-        values.put(COL_GAME_WHITE_ELO_CHANGE, game.getWhiteEloChange());
-        values.put(COL_GAME_BLACK_ELO_CHANGE, game.getBlackEloChange());
+        SQLiteStatement statement = appendRatingHistoryStatement;
+        statement.clearBindings();
+        statement.bindLong(1, gameId);
+        statement.bindLong(2, date);
+        statement.bindLong(3, eloChange);
+        statement.bindLong(4, playerId);
+        statement.executeInsert();
+    }
+    
+    private static SQLiteStatement compileInsertRatingHistory(SQLiteDatabase db) {
+        return db.compileStatement("INSERT INTO " + TABLE_RATING_HISTORY + "("
+                + COL_HISTORY_PLAYER_ID + ", "
+                + COL_HISTORY_GAME_ID + ", "
+                + COL_HISTORY_DATE + ", "
+                + COL_HISTORY_RATING_BEFORE + ", "
+                + COL_HISTORY_RATING_AFTER
+                + ") VALUES (?, ?, ?, ?, ?)");
+    }
+    
+    private static void insertRatingHistory(SQLiteStatement statement, int playerId, int gameId, long date,
+                                            int ratingBefore, int ratingAfter) {
+        statement.clearBindings();
+        statement.bindLong(1, playerId);
+        statement.bindLong(2, gameId);
+        statement.bindLong(3, date);
+        statement.bindLong(4, ratingBefore);
+        statement.bindLong(5, ratingAfter);
+        statement.executeInsert();
+    }
+    
+    /**
+     * Apply (sign = 1) or reverse (sign = -1) a game's effect on both players' statistics.
+     * Must be called with a transaction open on db.
+     */
+    private void updatePlayerStatsAfterGame(SQLiteDatabase db, Game game, int sign) {
+        int whiteWins = game.whiteWon() ? 1 : 0;
+        int blackWins = game.blackWon() ? 1 : 0;
+        int draws = game.isDraw() ? 1 : 0;
         
-        long id = db.insert(TABLE_GAMES, null, values);
-        game.setId((int) id);
+        updatePlayerStats(db, game.getWhitePlayerId(), sign * game.getWhiteEloChange(),
+                sign * whiteWins, sign * draws, sign * blackWins);
+        updatePlayerStats(db, game.getBlackPlayerId(), sign * game.getBlackEloChange(),
+                sign * blackWins, sign * draws, sign * whiteWins);
+    }
+    
+    /**
+     * Mirror updatePlayerStatsAfterGame in the player cache once the transaction has committed
+     */
+    private void updateCachedStatsAfterGame(Game game, int sign) {
+        int whiteWins = game.whiteWon() ? 1 : 0;
+        int blackWins = game.blackWon() ? 1 : 0;
+        int draws = game.isDraw() ? 1 : 0;
         
-        // Update player stats
-        updatePlayerStatsAfterGame(game);
+        playerCache.applyStatDeltas(game.getWhitePlayerId(), sign * game.getWhiteEloChange(),
+                sign * whiteWins, sign * draws, sign * blackWins);
+        playerCache.applyStatDeltas(game.getBlackPlayerId(), sign * game.getBlackEloChange(),
+                sign * blackWins, sign * draws, sign * whiteWins);
+    }
+    
+    /**
+     * Add deltas to a player's ELO and win/draw/loss counters in place,
+     * keeping the stored games played and win rate in step
+     */
+    private void updatePlayerStats(SQLiteDatabase db, int playerId, int eloDelta,
+                                   int winsDelta, int drawsDelta, int lossesDelta) {
+        if (updatePlayerStatsStatement == null) {
+            // Every right-hand side reads the row as it was before the update
+            updatePlayerStatsStatement = db.compileStatement("UPDATE " + TABLE_PLAYERS + " SET "
+                    + COL_PLAYER_ELO + " = " + COL_PLAYER_ELO + " + ?1, "
+                    + COL_PLAYER_WINS + " = " + COL_PLAYER_WINS + " + ?2, "
+                    + COL_PLAYER_DRAWS + " = " + COL_PLAYER_DRAWS + " + ?3, "
+                    + COL_PLAYER_LOSSES + " = " + COL_PLAYER_LOSSES + " + ?4, "
+                    + COL_PLAYER_GAMES_PLAYED + " = " + COL_PLAYER_GAMES_PLAYED + " + ?5, "
+                    + COL_PLAYER_WIN_RATE + " = " + winRateExpression(COL_PLAYER_WINS + " + ?2",
+                            COL_PLAYER_GAMES_PLAYED + " + ?5")
+                    + " WHERE " + COL_PLAYER_ID + " = ?6");
+        }
         
-        return id;
+        SQLiteStatement statement = updatePlayerStatsStatement;
+        statement.clearBindings();
+        statement.bindLong(1, eloDelta);
+        statement.bindLong(2, winsDelta);
+        statement.bindLong(3, drawsDelta);
+        statement.bindLong(4, lossesDelta);
+        statement.bindLong(5, winsDelta + drawsDelta + lossesDelta);
+        statement.bindLong(6, playerId);
+        statement.executeUpdateDelete();
     }
     
     /**
-     * Update player statistics after a game
+     * Delete a game and update player stats.
+     * Results are reverted directly; ratings are replayed forward from the deleted game,
+     * since every later game of its players was rated from ratings that included it.
      */
-    private void updatePlayerStatsAfterGame(Game game) {
-        Player whitePlayer = getPlayer(game.getWhitePlayerId());
-        Player blackPlayer = getPlayer(game.getBlackPlayerId());
+    public boolean deleteGame(int gameId) {
+        SQLiteDatabase db = getWritableDatabase();
+        Game game;
+        SparseIntArray ratings;
         
-        if (whitePlayer != null && blackPlayer != null) {
-            // Update ELO ratings
-            whitePlayer.setElo(whitePlayer.getElo() + game.getWhiteEloChange());
-            blackPlayer.setElo(blackPlayer.getElo() + game.getBlackEloChange());
+        db.beginTransaction();
+        RatingReplayer replayer = new RatingReplayer(db, ratingSystem);
+        try {
+            // First get the game
+            game = getGame(gameId);
+            if (game == null) {
+                return false;
+            }
+            
+            // Ratings just before the replayed games, read while the game's deltas are still stored
+            ratings = ratingsBeforeReplay(db, game);
             
-            // Update wins/draws/losses
-            if (game.isDraw()) {
-                whitePlayer.setDraws(whitePlayer.getDraws() + 1);
-                blackPlayer.setDraws(blackPlayer.getDraws() + 1);
-            } else if (game.whiteWon()) {
-                whitePlayer.setWins(whitePlayer.getWins() + 1);
-                blackPlayer.setLosses(blackPlayer.getLosses() + 1);
-            } else if (game.blackWon()) {
-                whitePlayer.setLosses(whitePlayer.getLosses() + 1);
-                blackPlayer.setWins(blackPlayer.getWins() + 1);
+            // Delete the game
+            int rowsAffected = db.delete(TABLE_GAMES, COL_GAME_ID + " = ?",
+                    new String[]{String.valueOf(gameId)});
+            if (rowsAffected == 0) {
+                return false;
             }
+            db.delete(TABLE_RATING_HISTORY, COL_HISTORY_GAME_ID + " = ?",
+                    new String[]{String.valueOf(gameId)});
             
-            // Save changes
-            updatePlayer(whitePlayer);
-            updatePlayer(blackPlayer);
+            // Reverse results and recompute ratings from that point on
+            updatePlayerResultsAfterGame(db, game, -1);
+            replayRatings(replayer, game, ratings);
+            
+            db.setTransactionSuccessful();
+        } finally {
+            replayer.close();
+            db.endTransaction();
         }
+        
+        evictReplayedPlayers(game, ratings);
+        tablesChanged(db, TABLE_GAMES, TABLE_PLAYERS, TABLE_RATING_HISTORY);
+        return true;
     }
     
     /**
-     * Delete a game and update player stats
+     * Correct the result of a recorded game.
+     * Results are moved from the old outcome to the new one, and ratings are replayed
+     * forward from the game so it and every later game are rated from corrected ratings.
      */
-    public boolean deleteGame(int gameId) {
+    public boolean updateGameResult(int gameId, int result) {
         SQLiteDatabase db = getWritableDatabase();
+        Game game;
+        SparseIntArray ratings;
         
-        // First get the game
-        Game game = getGame(gameId);
-        if (game == null) {
-            return false;
+        db.beginTransaction();
+        RatingReplayer replayer = new RatingReplayer(db, ratingSystem);
+        try {
+            game = getGame(gameId);
+            if (game == null) {
+                return false;
+            }
+            if (game.getResult() == result) {
+                return true;
+            }
+            
+            ratings = ratingsBeforeReplay(db, game);
+            
+            ContentValues values = new ContentValues();
+            values.put(COL_GAME_RESULT, result);
+            db.update(TABLE_GAMES, values, COL_GAME_ID + " = ?", new String[]{String.valueOf(gameId)});
+            
+            updatePlayerResultsAfterGame(db, game, -1);
+            game.setResult(result);
+            updatePlayerResultsAfterGame(db, game, 1);
+            replayRatings(replayer, game, ratings);
+            
+            db.setTransactionSuccessful();
+        } finally {
+            replayer.close();
+            db.endTransaction();
         }
         
-        // Delete the game
-        int rowsAffected = db.delete(TABLE_GAMES, COL_GAME_ID + " = ?",
-                new String[]{String.valueOf(gameId)});
+        evictReplayedPlayers(game, ratings);
+        tablesChanged(db, TABLE_GAMES, TABLE_PLAYERS, TABLE_RATING_HISTORY);
+        return true;
+    }
+    
+    /**
+     * Add or remove a game's win/draw/loss counts without touching ratings
+     */
+    private void updatePlayerResultsAfterGame(SQLiteDatabase db, Game game, int sign) {
+        int whiteWins = game.whiteWon() ? 1 : 0;
+        int blackWins = game.blackWon() ? 1 : 0;
+        int draws = game.isDraw() ? 1 : 0;
         
-        if (rowsAffected > 0) {
-            // Reverse player stats
-            reversePlayerStatsForGame(game);
-            return true;
+        updatePlayerStats(db, game.getWhitePlayerId(), 0, sign * whiteWins, sign * draws, sign * blackWins);
+        updatePlayerStats(db, game.getBlackPlayerId(), 0, sign * blackWins, sign * draws, sign * whiteWins);
+    }
+    
+    /**
+     * Get the ratings just before the games that a change to a game makes replay: from the
+     * game itself with Elo, or from the start of its rating period with Glicko-2
+     */
+    private SparseIntArray ratingsBeforeReplay(SQLiteDatabase db, Game game) {
+        if (getRatingMode() == RATING_MODE_GLICKO2) {
+            return RatingReplayer.ratingsBefore(db, RatingReplayer.periodStart(game.getDate()), Integer.MIN_VALUE);
+        }
+        return RatingReplayer.ratingsBefore(db, game.getDate(), game.getId());
+    }
+    
+    /**
+     * Replay ratings after a game was deleted or corrected: from the game onwards with Elo,
+     * or from the start of its rating period with Glicko-2
+     */
+    private void replayRatings(RatingReplayer replayer, Game game, SparseIntArray ratings) {
+        if (getRatingMode() == RATING_MODE_GLICKO2) {
+            replayer.replayInPeriods(glicko2, game.getDate(), ratings);
+        } else {
+            replayer.replay(game.getDate(), game.getId(), ratings);
         }
-        return false;
     }
     
     /**
-     * Reverse player statistics for a deleted game
+     * Re-rate a Glicko-2 club from the rating period holding a date, after games were added
+     * from that date on. Must be called with a transaction open on db.
+     * @return The ratings of the replayed players at the start of that period
      */
-    private void reversePlayerStatsForGame(Game game) {
-        Player whitePlayer = getPlayer(game.getWhitePlayerId());
-        Player blackPlayer = getPlayer(game.getBlackPlayerId());
+    private SparseIntArray replayPeriodsFrom(SQLiteDatabase db, long date) {
+        SparseIntArray ratings = RatingReplayer.ratingsBefore(db, RatingReplayer.periodStart(date), Integer.MIN_VALUE);
+        RatingReplayer replayer = new RatingReplayer(db, ratingSystem);
+        try {
+            replayer.replayInPeriods(glicko2, date, ratings);
+        } finally {
+            replayer.close();
+        }
+        return ratings;
+    }
+    
+    /**
+     * Re-rate a Glicko-2 club from the rating period holding a date in one transaction,
+     * e.g. after a bulk import of games from that date on
+     */
+    void replayRatingPeriods(long date) {
+        SQLiteDatabase db = getWritableDatabase();
         
-        if (whitePlayer != null && blackPlayer != null) {
-            // Reverse ELO changes
-            whitePlayer.setElo(whitePlayer.getElo() - game.getWhiteEloChange());
-            blackPlayer.setElo(blackPlayer.getElo() - game.getBlackEloChange());
-            
-            // Reverse wins/draws/losses
-            if (game.isDraw()) {
-                whitePlayer.setDraws(whitePlayer.getDraws() - 1);
-                blackPlayer.setDraws(blackPlayer.getDraws() - 1);
-            } else if (game.whiteWon()) {
-                whitePlayer.setWins(whitePlayer.getWins() - 1);
-                blackPlayer.setLosses(blackPlayer.getLosses() - 1);
-            } else if (game.blackWon()) {
-                whitePlayer.setLosses(whitePlayer.getLosses() - 1);
-                blackPlayer.setWins(blackPlayer.getWins() - 1);
+        db.beginTransaction();
+        try {
+            replayPeriodsFrom(db, date);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        
+        playerCache.clear();
+        leaderboardIndex.invalidate();
+        tablesChanged(db, TABLE_GAMES, TABLE_PLAYERS, TABLE_RATING_HISTORY);
+    }
+    
+    /**
+     * Drop the replayed players from the cache once the transaction has committed.
+     * Their ratings were rewritten and their results may have changed, so they are reloaded on next access.
+     * The rank index is always dropped, since a replay can move players all down the leaderboard.
+     */
+    private void evictReplayedPlayers(Game game, SparseIntArray ratings) {
+        leaderboardIndex.invalidate();
+        playerCache.remove(game.getWhitePlayerId());
+        playerCache.remove(game.getBlackPlayerId());
+        for (int i = 0; i < ratings.size(); i++) {
+            playerCache.remove(ratings.keyAt(i));
+        }
+    }
+    
+    // Leaderboard rank methods
+    
+    /**
+     * Get a player's place on the leaderboard by rating, e.g. #37 of 412
+     * @return The rank, or null if the player is unknown
+     */
+    public PlayerRank getPlayerRank(int playerId) {
+        LeaderboardIndex index = loadedLeaderboardIndex();
+        int rank = index.rankOf(playerId);
+        return rank < 0 ? null : new PlayerRank(playerId, rank, index.size());
+    }
+    
+    /**
+     * Get the best rated players, best first, with leaderboard columns only
+     */
+    public List<Player> getTopPlayers(int count) {
+        return getLeaderboardRows(loadedLeaderboardIndex().topN(count));
+    }
+    
+    /**
+     * Get the players ranked up to places above and below a player, best first,
+     * with leaderboard columns only; empty if the player is unknown
+     */
+    public List<Player> getPlayersAroundRank(int playerId, int places) {
+        return getLeaderboardRows(loadedLeaderboardIndex().window(playerId, places));
+    }
+    
+    /**
+     * Get the rank index, first building it from the players table in one pass if it was dropped
+     */
+    private LeaderboardIndex loadedLeaderboardIndex() {
+        while (!leaderboardIndex.isLoaded()) {
+            long generation = leaderboardIndex.getGeneration();
+            SQLiteDatabase db = getReadableDatabase();
+            Cursor cursor = db.query(TABLE_PLAYERS, new String[]{COL_PLAYER_ID, COL_PLAYER_ELO},
+                    null, null, null, null, null);
+            int count = cursor.getCount();
+            int[] ids = new int[count];
+            int[] ratings = new int[count];
+            try {
+                for (int i = 0; cursor.moveToNext(); i++) {
+                    ids[i] = cursor.getInt(0);
+                    ratings[i] = cursor.getInt(1);
+                }
+            } finally {
+                cursor.close();
             }
-            
-            // Save changes
-            updatePlayer(whitePlayer);
-            updatePlayer(blackPlayer);
+            // Retried if a write landed while the players were read
+            leaderboardIndex.rebuildIfUnchanged(ids, ratings, count, generation);
+        }
+        return leaderboardIndex;
+    }
+    
+    /**
+     * Get the players a player most recently played, most recent first, or the players of the
+     * club's most recent games when playerId is -1. Games are read newest first in (date, id)
+     * keyset batches, as a merge of the per-colour index branches for a player, until enough
+     * distinct players are found.
+     */
+    public List<Player> getRecentOpponents(int playerId, int limit) {
+        // Opponents repeat, so each batch reads a few games per player sought
+        int batchSize = limit * 4;
+        String query = "SELECT " + COL_GAME_WHITE_ID + ", " + COL_GAME_BLACK_ID + ", "
+                + COL_GAME_DATE + ", " + COL_GAME_ID +
+                " FROM " + pagedGamesSource(playerId) +
+                " ORDER BY " + COL_GAME_DATE + " DESC, " + COL_GAME_ID + " DESC" +
+                " LIMIT " + batchSize;
+        
+        SQLiteDatabase db = getReadableDatabase();
+        long beforeDate = Long.MAX_VALUE;
+        int beforeId = Integer.MAX_VALUE;
+        int[] ids = new int[limit];
+        int count = 0;
+        int read;
+        do {
+            String[] keyArgs = {String.valueOf(beforeDate), String.valueOf(beforeDate), String.valueOf(beforeId)};
+            Cursor cursor = db.rawQuery(query, pagedGamesArgs(playerId, keyArgs));
+            read = 0;
+            try {
+                while (count < limit && cursor.moveToNext()) {
+                    read++;
+                    count = addRecentPlayer(ids, count, cursor.getInt(0), playerId);
+                    count = addRecentPlayer(ids, count, cursor.getInt(1), playerId);
+                    beforeDate = cursor.getLong(2);
+                    beforeId = cursor.getInt(3);
+                }
+            } finally {
+                cursor.close();
+            }
+        } while (count < limit && read == batchSize);
+        return getLeaderboardRows(Arrays.copyOf(ids, count));
+    }
+    
+    /**
+     * Append a player to a list of distinct recent players unless it is full, skipping the
+     * player whose opponents are listed
+     * @return The new number of players listed
+     */
+    private static int addRecentPlayer(int[] ids, int count, int id, int excludedId) {
+        if (count == ids.length || id == excludedId) {
+            return count;
+        }
+        for (int i = 0; i < count; i++) {
+            if (ids[i] == id) {
+                return count;
+            }
+        }
+        ids[count] = id;
+        return count + 1;
+    }
+    
+    /**
+     * Load leaderboard rows for players in the given order
+     */
+    private List<Player> getLeaderboardRows(int[] ids) {
+        if (ids.length == 0) {
+            return new ArrayList<>();
+        }
+        StringBuilder idList = new StringBuilder();
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                idList.append(',');
+            }
+            idList.append(ids[i]);
+        }
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(TABLE_PLAYERS, LEADERBOARD_COLUMNS,
+                COL_PLAYER_ID + " IN (" + idList + ")", null, null, null, null);
+        SparseArray<Player> byId = new SparseArray<>(ids.length);
+        for (Player player : readAll(cursor, new PlayerMapper(cursor))) {
+            byId.put(player.getId(), player);
+        }
+        
+        List<Player> players = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Player player = byId.get(id);
+            if (player != null) {
+                players.add(player);
+            }
+        }
+        return players;
+    }
+    
+    // Rating history methods
+    
+    /**
+     * Get a player's rating as it was at a point in time: after their last game up to then,
+     * or before their first game if they had not played yet. Each case is one index seek.
+     * @return The rating, or the player's current rating if they have no games, or -1 if unknown
+     */
+    public int getRatingAt(int playerId, long date) {
+        SQLiteDatabase db = getReadableDatabase();
+        String id = String.valueOf(playerId);
+        
+        Cursor cursor = db.query(TABLE_RATING_HISTORY, new String[]{COL_HISTORY_RATING_AFTER},
+                COL_HISTORY_PLAYER_ID + " = ? AND " + COL_HISTORY_DATE + " <= ?",
+                new String[]{id, String.valueOf(date)}, null, null,
+                COL_HISTORY_DATE + " DESC, " + COL_HISTORY_GAME_ID + " DESC", "1");
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getInt(0);
+            }
+        } finally {
+            cursor.close();
+        }
+        
+        cursor = db.query(TABLE_RATING_HISTORY, new String[]{COL_HISTORY_RATING_BEFORE},
+                COL_HISTORY_PLAYER_ID + " = ?", new String[]{id}, null, null,
+                COL_HISTORY_DATE + " ASC, " + COL_HISTORY_GAME_ID + " ASC", "1");
+        try {
+            if (cursor.moveToFirst()) {
+                return cursor.getInt(0);
+            }
+        } finally {
+            cursor.close();
         }
+        
+        Player player = getPlayer(playerId);
+        return player != null ? player.getElo() : -1;
+    }
+    
+    /**
+     * Get a player's rating history between two dates inclusive, oldest first, e.g. for a rating chart
+     */
+    public List<RatingHistoryEntry> getRatingHistory(int playerId, long fromDate, long toDate) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(TABLE_RATING_HISTORY, new String[]{COL_HISTORY_PLAYER_ID,
+                        COL_HISTORY_GAME_ID, COL_HISTORY_DATE, COL_HISTORY_RATING_BEFORE, COL_HISTORY_RATING_AFTER},
+                COL_HISTORY_PLAYER_ID + " = ? AND " + COL_HISTORY_DATE + " BETWEEN ? AND ?",
+                new String[]{String.valueOf(playerId), String.valueOf(fromDate), String.valueOf(toDate)},
+                null, null, COL_HISTORY_DATE + " ASC, " + COL_HISTORY_GAME_ID + " ASC");
+        return readAll(cursor, new RowMapper<RatingHistoryEntry>() {
+            @Override
+            public RatingHistoryEntry map(Cursor row) {
+                return new RatingHistoryEntry(row.getInt(0), row.getInt(1), row.getLong(2),
+                        row.getInt(3), row.getInt(4));
+            }
+        });
     }
     
     /**
@@ -408,7 +1541,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         
         Game game = null;
         if (cursor.moveToFirst()) {
-            game = cursorToGame(cursor);
+            game = new GameMapper(cursor).map(cursor);
         }
         cursor.close();
         
@@ -419,37 +1552,206 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      * Get all games
      */
     public List<Game> getAllGames() {
-        String query = "SELECT * FROM " + TABLE_GAMES + " ORDER BY " + COL_GAME_DATE + " DESC";
+        String query = "SELECT * FROM " + TABLE_GAMES +
+                " ORDER BY " + COL_GAME_DATE + " DESC, " + COL_GAME_ID + " DESC";
         
         SQLiteDatabase db = getReadableDatabase();
         Cursor cursor = db.rawQuery(query, null);
+        return readAll(cursor, new GameMapper(cursor));
+    }
+    
+    /**
+     * Open a streaming cursor over all games, oldest first with ties broken by ID.
+     * The date index delivers rows in order, so nothing is sorted or buffered up front.
+     */
+    GameCursor openGameCursor() {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.query(TABLE_GAMES, null, null, null, null, null,
+                COL_GAME_DATE + " ASC, " + COL_GAME_ID + " ASC");
+        return new GameCursor(cursor);
+    }
+    
+    /**
+     * Get all games for a player, newest first with ties broken by ID.
+     * Written as a UNION ALL so each branch can walk its own (player, date) index.
+     */
+    public List<Game> getPlayerGames(int playerId) {
+        SQLiteDatabase db = getReadableDatabase();
+        String id = String.valueOf(playerId);
+        Cursor cursor = db.rawQuery(playerGamesQuery(), new String[]{id, id, id});
+        return readAll(cursor, new GameMapper(cursor));
+    }
+    
+    /**
+     * SQL of getPlayerGames. The (player, date) indexes end in the rowid, so both branches
+     * come out in (date, id) order and are merged without a sort.
+     */
+    static String playerGamesQuery() {
+        return "SELECT * FROM " + TABLE_GAMES +
+                " WHERE " + COL_GAME_WHITE_ID + " = ?" +
+                " UNION ALL SELECT * FROM " + TABLE_GAMES +
+                " WHERE " + COL_GAME_BLACK_ID + " = ? AND " + COL_GAME_WHITE_ID + " <> ?" +
+                " ORDER BY " + COL_GAME_DATE + " DESC, " + COL_GAME_ID + " DESC";
+    }
+    
+    /**
+     * Get all games with both players' names and ELO, newest first
+     */
+    public List<GameWithPlayers> getAllGamesWithPlayers() {
+        return queryGamesWithPlayers(TABLE_GAMES, null, null);
+    }
+    
+    /**
+     * Get all games for a player with both players' names and ELO, newest first
+     */
+    public List<GameWithPlayers> getPlayerGamesWithPlayers(int playerId) {
+        String playerGames = "(SELECT * FROM " + TABLE_GAMES +
+                " WHERE " + COL_GAME_WHITE_ID + " = ?" +
+                " UNION ALL SELECT * FROM " + TABLE_GAMES +
+                " WHERE " + COL_GAME_BLACK_ID + " = ? AND " + COL_GAME_WHITE_ID + " <> ?)";
+        String id = String.valueOf(playerId);
+        return queryGamesWithPlayers(playerGames, new String[]{id, id, id}, null);
+    }
+    
+    /**
+     * Get one page of games with both players' names and ELO, newest first.
+     * Pages are keyed on (date, id) rather than OFFSET, so every page is a range seek on
+     * the date indexes and costs the same however deep into the history it is.
+     * @param playerId Player whose games to page through, or -1 for all games
+     * @param beforeDate Date of the last game on the previous page, or Long.MAX_VALUE for the first page
+     * @param beforeId ID of the last game on the previous page, or Integer.MAX_VALUE for the first page
+     * @param limit Maximum number of games to return
+     */
+    public List<GameWithPlayers> getGamesWithPlayersPage(int playerId, long beforeDate, int beforeId, int limit) {
+        return queryGamesWithPlayers(pagedGamesSource(playerId), gamesPageArgs(playerId, beforeDate, beforeId),
+                String.valueOf(limit));
+    }
+    
+    /**
+     * Arguments of a page query before a (date, id) key, for gamesWithPlayersQuery over
+     * pagedGamesSource
+     */
+    static String[] gamesPageArgs(int playerId, long beforeDate, int beforeId) {
+        String[] keyArgs = {String.valueOf(beforeDate), String.valueOf(beforeDate), String.valueOf(beforeId)};
+        return pagedGamesArgs(playerId, keyArgs);
+    }
+    
+    /**
+     * Find the (date, id) keys at which consecutive pages of a game history start.
+     * Only the date indexes are read, so this is cheap compared to loading the pages.
+     * @param playerId Player whose games are paged, or -1 for all games
+     * @param pageSize Number of games per page
+     * @param pageCount Number of pages to find the start keys of
+     * @param dates Receives the date key of each page after the first
+     * @param ids Receives the ID key of each page after the first
+     * @return The number of keys found, less than pageCount - 1 if the history is shorter
+     */
+    int getGamePageKeys(int playerId, int pageSize, int pageCount, long[] dates, int[] ids) {
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.rawQuery(gamePageKeysQuery(playerId, (long) pageSize * (pageCount - 1)),
+                gamesPageArgs(playerId, Long.MAX_VALUE, Integer.MAX_VALUE));
         
-        List<Game> games = new ArrayList<>();
-        if (cursor.moveToFirst()) {
-            do {
-                games.add(cursorToGame(cursor));
-            } while (cursor.moveToNext());
+        int count = 0;
+        int row = 0;
+        while (cursor.moveToNext()) {
+            row++;
+            if (row % pageSize == 0) {
+                dates[count] = cursor.getLong(0);
+                ids[count] = cursor.getInt(1);
+                count++;
+            }
         }
         cursor.close();
         
-        return games;
+        return count;
     }
     
     /**
-     * Get all games for a player
+     * SQL of getGamePageKeys, reading the keys of the first limit games before a (date, id) key
      */
-    public List<Game> getPlayerGames(int playerId) {
-        String query = "SELECT * FROM " + TABLE_GAMES +
-                " WHERE " + COL_GAME_WHITE_ID + " = ? OR " + COL_GAME_BLACK_ID + " = ?" +
-                " ORDER BY " + COL_GAME_DATE + " DESC";
-        
+    static String gamePageKeysQuery(int playerId, long limit) {
+        return "SELECT " + COL_GAME_DATE + ", " + COL_GAME_ID +
+                " FROM " + pagedGamesSource(playerId) +
+                " ORDER BY " + COL_GAME_DATE + " DESC, " + COL_GAME_ID + " DESC" +
+                " LIMIT " + limit;
+    }
+    
+    /**
+     * Count the games at or newer than a (date, id) key, i.e. the rows above the page
+     * starting after that key. Only the date indexes are read.
+     * @param playerId Player whose games are counted, or -1 for all games
+     */
+    int countGamesFrom(int playerId, long date, int id) {
+        String[] keyArgs = {String.valueOf(date), String.valueOf(date), String.valueOf(id)};
+        SQLiteDatabase db = getReadableDatabase();
+        Cursor cursor = db.rawQuery(countGamesFromQuery(playerId), pagedGamesArgs(playerId, keyArgs));
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+    
+    /**
+     * SQL of countGamesFrom, taking the same arguments as a page query
+     */
+    static String countGamesFromQuery(int playerId) {
+        String keyCondition = COL_GAME_DATE + " >= ? AND (" + COL_GAME_DATE + " > ? OR " + COL_GAME_ID + " >= ?)";
+        return "SELECT COUNT(*) FROM " + gamesSource(playerId, keyCondition);
+    }
+    
+    /**
+     * Games older than a (date, id) key, for all games or one player's games.
+     * The date bound is a plain range so the per-player and date indexes can seek to it.
+     */
+    static String pagedGamesSource(int playerId) {
+        return gamesSource(playerId,
+                COL_GAME_DATE + " <= ? AND (" + COL_GAME_DATE + " < ? OR " + COL_GAME_ID + " < ?)");
+    }
+    
+    /**
+     * Games matching a condition on the games table, for all games or one player's games
+     */
+    private static String gamesSource(int playerId, String keyCondition) {
+        if (playerId < 0) {
+            return "(SELECT * FROM " + TABLE_GAMES + " WHERE " + keyCondition + ")";
+        }
+        return "(SELECT * FROM " + TABLE_GAMES +
+                " WHERE " + COL_GAME_WHITE_ID + " = ? AND " + keyCondition +
+                " UNION ALL SELECT * FROM " + TABLE_GAMES +
+                " WHERE " + COL_GAME_BLACK_ID + " = ? AND " + COL_GAME_WHITE_ID + " <> ? AND " + keyCondition + ")";
+    }
+    
+    private static String[] pagedGamesArgs(int playerId, String[] keyArgs) {
+        if (playerId < 0) {
+            return keyArgs;
+        }
+        String id = String.valueOf(playerId);
+        return new String[]{id, keyArgs[0], keyArgs[1], keyArgs[2],
+                id, id, keyArgs[0], keyArgs[1], keyArgs[2]};
+    }
+    
+    /**
+     * Read a games source (table or subquery) with both players in a single query,
+     * newest first with ties broken by ID, optionally limited to a number of rows
+     */
+    private List<GameWithPlayers> queryGamesWithPlayers(String gamesSource, String[] args, String limit) {
         SQLiteDatabase db = getReadableDatabase();
-        Cursor cursor = db.rawQuery(query, new String[]{String.valueOf(playerId), String.valueOf(playerId)});
+        Cursor cursor = db.rawQuery(gamesWithPlayersQuery(gamesSource, limit), args);
         
-        List<Game> games = new ArrayList<>();
+        List<GameWithPlayers> games = new ArrayList<>(cursor.getCount());
         if (cursor.moveToFirst()) {
+            GameMapper gameMapper = new GameMapper(cursor);
+            int whiteNameIndex = cursor.getColumnIndex(ALIAS_WHITE_NAME);
+            int whiteEloIndex = cursor.getColumnIndex(ALIAS_WHITE_ELO);
+            int blackNameIndex = cursor.getColumnIndex(ALIAS_BLACK_NAME);
+            int blackEloIndex = cursor.getColumnIndex(ALIAS_BLACK_ELO);
             do {
-                games.add(cursorToGame(cursor));
+                String whiteName = cursor.isNull(whiteNameIndex) ? "Unknown" : cursor.getString(whiteNameIndex);
+                String blackName = cursor.isNull(blackNameIndex) ? "Unknown" : cursor.getString(blackNameIndex);
+                games.add(new GameWithPlayers(gameMapper.map(cursor),
+                        whiteName, cursor.getInt(whiteEloIndex),
+                        blackName, cursor.getInt(blackEloIndex)));
             } while (cursor.moveToNext());
         }
         cursor.close();
@@ -458,17 +1760,19 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     }
     
     /**
-     * Convert cursor to Game object
+     * SQL joining a games source (table or subquery) with both players, newest first with
+     * ties broken by ID, optionally limited to a number of rows
      */
-    private Game cursorToGame(Cursor cursor) {
-        Game game = new Game();
-        game.setId(cursor.getInt(cursor.getColumnIndex(COL_GAME_ID)));
-        game.setWhitePlayerId(cursor.getInt(cursor.getColumnIndex(COL_GAME_WHITE_ID)));
-        game.setBlackPlayerId(cursor.getInt(cursor.getColumnIndex(COL_GAME_BLACK_ID)));
-        game.setResult(cursor.getInt(cursor.getColumnIndex(COL_GAME_RESULT)));
-        game.setDate(cursor.getLong(cursor.getColumnIndex(COL_GAME_DATE)));
-        game.setWhiteEloChange(cursor.getInt(cursor.getColumnIndex(COL_GAME_WHITE_ELO_CHANGE)));
-        game.setBlackEloChange(cursor.getInt(cursor.getColumnIndex(COL_GAME_BLACK_ELO_CHANGE)));
-        return game;
+    static String gamesWithPlayersQuery(String gamesSource, String limit) {
+        return "SELECT g.*," +
+                " w." + COL_PLAYER_NAME + " AS " + ALIAS_WHITE_NAME + "," +
+                " w." + COL_PLAYER_ELO + " AS " + ALIAS_WHITE_ELO + "," +
+                " b." + COL_PLAYER_NAME + " AS " + ALIAS_BLACK_NAME + "," +
+                " b." + COL_PLAYER_ELO + " AS " + ALIAS_BLACK_ELO +
+                " FROM " + gamesSource + " g" +
+                " LEFT JOIN " + TABLE_PLAYERS + " w ON w." + COL_PLAYER_ID + " = g." + COL_GAME_WHITE_ID +
+                " LEFT JOIN " + TABLE_PLAYERS + " b ON b." + COL_PLAYER_ID + " = g." + COL_GAME_BLACK_ID +
+                " ORDER BY g." + COL_GAME_DATE + " DESC, g." + COL_GAME_ID + " DESC" +
+                (limit != null ? " LIMIT " + limit : "");
     }
 }
@@ -0,0 +1,60 @@
+package com.chessclub.app.database;
+
+import android.database.Cursor;
+
+import com.chessclub.app.model.Game;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams games from a cursor without materializing a list.
+ * Column positions are resolved once, and a single mutable Game is refilled for every
+ * row, so a pass over the whole history runs in constant memory. The cursor closes
+ * itself once the last row has been read; close() must be called when stopping early.
+ */
+public class GameCursor implements Iterator<Game>, Closeable {
+    private final Cursor cursor;
+    private final GameMapper mapper;
+    private final Game game = new Game();
+
+    private boolean advanced;
+    private boolean hasRow;
+
+    GameCursor(Cursor cursor) {
+        this.cursor = cursor;
+        this.mapper = new GameMapper(cursor);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!advanced) {
+            hasRow = !cursor.isClosed() && cursor.moveToNext();
+            advanced = true;
+            if (!hasRow) {
+                close();
+            }
+        }
+        return hasRow;
+    }
+
+    /**
+     * Get the next game. The returned object is reused by the following call.
+     */
+    @Override
+    public Game next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        advanced = false;
+        return mapper.fill(cursor, game);
+    }
+
+    @Override
+    public void close() {
+        if (!cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+}
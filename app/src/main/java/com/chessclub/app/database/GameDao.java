@@ -1,11 +1,18 @@
 package com.chessclub.app.database;
 
 import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.SparseArray;
+
+import androidx.lifecycle.LiveData;
 
 import com.chessclub.app.model.Game;
+import com.chessclub.app.model.GameWithPlayers;
 import com.chessclub.app.model.Player;
-import com.chessclub.app.utils.EloCalculator;
+import com.chessclub.app.model.RatingHistoryEntry;
+import com.chessclub.app.utils.AppExecutors;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -13,6 +20,13 @@ import java.util.List;
  */
 public class GameDao {
     
+    // Number of games written per transaction during bulk import
+    private static final int IMPORT_CHUNK_SIZE = 1000;
+    
+    // Game lists join player names and ratings, so they depend on both tables
+    private static final String[] GAME_LIST_TABLES = {
+            DatabaseHelper.TABLE_GAMES, DatabaseHelper.TABLE_PLAYERS};
+    
     private final DatabaseHelper dbHelper;
     
     public GameDao(Context context) {
@@ -20,30 +34,149 @@ public class GameDao {
     }
     
     /**
-     * Create a new game and update player stats
+     * Create a new game and update player stats.
+     * Ratings are read and the game recorded in one transaction, so concurrent
+     * submissions cannot compute ELO changes from stale ratings.
+     */
+    public long createGame(final int whitePlayerId, final int blackPlayerId, final int result) {
+        return dbHelper.runInTransaction(new DatabaseHelper.TransactionBody<Long>() {
+            @Override
+            public Long run(SQLiteDatabase db) {
+                Player whitePlayer = dbHelper.getPlayer(whitePlayerId);
+                Player blackPlayer = dbHelper.getPlayer(blackPlayerId);
+                
+                if (whitePlayer == null || blackPlayer == null) {
+                    return -1L;
+                }
+                
+                // Calculate ELO changes
+                int[] eloChanges = dbHelper.getRatingSystem().rateGame(
+                        whitePlayer.getElo(), blackPlayer.getElo(), result);
+                
+                // Create game
+                Game game = new Game();
+                game.setWhitePlayerId(whitePlayerId);
+                game.setBlackPlayerId(blackPlayerId);
+                game.setResult(result);
+                game.setDate(System.currentTimeMillis());
+                game.setWhiteEloChange(eloChanges[0]);
+                game.setBlackEloChange(eloChanges[1]);
+                
+                return dbHelper.addGame(game);
+            }
+        });
+    }
+    
+    /**
+     * Import a stream of games in chronological order.
+     * Games are buffered in chunks and each chunk is rated in one RatingSystem call over
+     * running ratings kept in memory, and written together with its players' counter changes
+     * in one transaction through reused statements, so an import that stops part way leaves
+     * the committed chunks and the counters in step. The ELO changes and ids are set on the
+     * passed games. Games referencing unknown players are skipped.
+     * @return The number of games imported
+     */
+    public int importGames(Iterable<Game> games) {
+        // Load starting ratings once; a player's slot is their index in tallies
+        SparseArray<PlayerTally> tallies = new SparseArray<>();
+        for (Player player : dbHelper.getAllPlayers()) {
+            tallies.put(player.getId(), new PlayerTally(player.getElo()));
+        }
+        int[] ratings = new int[tallies.size()];
+        for (int i = 0; i < ratings.length; i++) {
+            ratings[i] = tallies.valueAt(i).elo;
+        }
+        
+        ImportChunk chunk = new ImportChunk(ratings.length);
+        int imported = 0;
+        long firstDate = Long.MIN_VALUE;
+        long lastDate = Long.MIN_VALUE;
+        
+        for (Game game : games) {
+            int whiteSlot = tallies.indexOfKey(game.getWhitePlayerId());
+            int blackSlot = tallies.indexOfKey(game.getBlackPlayerId());
+            if (whiteSlot < 0 || blackSlot < 0 || whiteSlot == blackSlot) {
+                continue;
+            }
+            if (game.getDate() < lastDate) {
+                throw new IllegalArgumentException("Games must be imported in chronological order");
+            }
+            if (firstDate == Long.MIN_VALUE) {
+                firstDate = game.getDate();
+            }
+            lastDate = game.getDate();
+            
+            chunk.add(game, whiteSlot, blackSlot);
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                imported += flushImportChunk(chunk, ratings, tallies);
+            }
+        }
+        imported += flushImportChunk(chunk, ratings, tallies);
+        
+        // Glicko-2 rates whole days together, so the periods from the first imported game
+        // onwards are re-rated once at the end
+        if (imported > 0 && dbHelper.getRatingMode() == DatabaseHelper.RATING_MODE_GLICKO2) {
+            dbHelper.replayRatingPeriods(firstDate);
+        }
+        return imported;
+    }
+    
+    /**
+     * Rate a chunk of imported games and write it with its players' counter changes,
+     * then mark its effect on the tallies as committed
      */
-    public long createGame(int whitePlayerId, int blackPlayerId, int result) {
-        Player whitePlayer = dbHelper.getPlayer(whitePlayerId);
-        Player blackPlayer = dbHelper.getPlayer(blackPlayerId);
+    private int flushImportChunk(ImportChunk chunk, int[] ratings, SparseArray<PlayerTally> tallies) {
+        int size = chunk.size();
+        if (size == 0) {
+            return 0;
+        }
+        
+        // Rate the whole chunk from the running ratings, keeping the ratings it started from
+        int[] running = chunk.startRatings;
+        System.arraycopy(ratings, 0, running, 0, ratings.length);
+        dbHelper.getRatingSystem().rateGames(ratings, chunk.whiteSlots, chunk.blackSlots, chunk.results,
+                chunk.whiteChanges, chunk.blackChanges, size);
         
-        if (whitePlayer == null || blackPlayer == null) {
-            return -1;
+        // Walk the chunk again for each game's ratings before it and the result counters
+        for (int i = 0; i < size; i++) {
+            Game game = chunk.games.get(i);
+            int white = chunk.whiteSlots[i];
+            int black = chunk.blackSlots[i];
+            game.setWhiteEloChange(chunk.whiteChanges[i]);
+            game.setBlackEloChange(chunk.blackChanges[i]);
+            chunk.whiteRatings[i] = running[white];
+            chunk.blackRatings[i] = running[black];
+            running[white] += chunk.whiteChanges[i];
+            running[black] += chunk.blackChanges[i];
+            
+            tallies.valueAt(white).record(chunk.whiteChanges[i], game.whiteWon(), game.isDraw(), game.blackWon());
+            tallies.valueAt(black).record(chunk.blackChanges[i], game.blackWon(), game.isDraw(), game.whiteWon());
         }
         
-        // Calculate ELO changes
-        int[] eloChanges = EloCalculator.calculateGameEloChanges(
-                whitePlayer.getElo(), blackPlayer.getElo(), result);
+        // Counter changes of the players in this chunk since the last committed one
+        int playerCount = 0;
+        for (int i = 0; i < tallies.size(); i++) {
+            PlayerTally tally = tallies.valueAt(i);
+            if (!tally.hasUncommittedChanges()) {
+                continue;
+            }
+            chunk.playerIds[playerCount] = tallies.keyAt(i);
+            chunk.eloDeltas[playerCount] = tally.elo - tally.committedElo;
+            chunk.winsDeltas[playerCount] = tally.wins - tally.committedWins;
+            chunk.drawsDeltas[playerCount] = tally.draws - tally.committedDraws;
+            chunk.lossesDeltas[playerCount] = tally.losses - tally.committedLosses;
+            playerCount++;
+        }
         
-        // Create game
-        Game game = new Game();
-        game.setWhitePlayerId(whitePlayerId);
-        game.setBlackPlayerId(blackPlayerId);
-        game.setResult(result);
-        game.setDate(System.currentTimeMillis());
-        game.setWhiteEloChange(eloChanges[0]);
-        game.setBlackEloChange(eloChanges[1]);
+        dbHelper.insertGames(chunk.games, chunk.whiteRatings, chunk.blackRatings,
+                chunk.playerIds, chunk.eloDeltas, chunk.winsDeltas, chunk.drawsDeltas,
+                chunk.lossesDeltas, playerCount);
+        chunk.clear();
         
-        return dbHelper.addGame(game);
+        for (int i = 0; i < tallies.size(); i++) {
+            tallies.valueAt(i).commit();
+        }
+        return size;
     }
     
     /**
@@ -53,6 +186,13 @@ public class GameDao {
         return dbHelper.deleteGame(gameId);
     }
     
+    /**
+     * Correct a game's result; ratings are replayed from the game onwards
+     */
+    public boolean updateGameResult(int gameId, int result) {
+        return dbHelper.updateGameResult(gameId, result);
+    }
+    
     /**
      * Get game by ID
      */
@@ -67,6 +207,30 @@ public class GameDao {
         return dbHelper.getAllGames();
     }
     
+    /**
+     * Visit every game, oldest first, without loading the history into memory.
+     * The visitor receives one reused Game object; the cursor is closed afterwards
+     * even if the visitor throws.
+     */
+    public void forEachGame(GameVisitor visitor) {
+        GameCursor games = dbHelper.openGameCursor();
+        try {
+            while (games.hasNext()) {
+                visitor.visit(games.next());
+            }
+        } finally {
+            games.close();
+        }
+    }
+    
+    /**
+     * Iterate over every game, oldest first, reusing one Game object for all rows.
+     * The cursor closes itself when exhausted; close it when stopping early.
+     */
+    public GameCursor iterateGames() {
+        return dbHelper.openGameCursor();
+    }
+    
     /**
      * Get all games for a player
      */
@@ -74,6 +238,76 @@ public class GameDao {
         return dbHelper.getPlayerGames(playerId);
     }
     
+    /**
+     * Get all games with player names and ELO, for binding list rows
+     */
+    public List<GameWithPlayers> getAllGamesWithPlayers() {
+        return dbHelper.getAllGamesWithPlayers();
+    }
+    
+    /**
+     * Get all games for a player with player names and ELO, for binding list rows
+     */
+    public List<GameWithPlayers> getPlayerGamesWithPlayers(int playerId) {
+        return dbHelper.getPlayerGamesWithPlayers(playerId);
+    }
+    
+    /**
+     * Observe all games with player names; re-queried whenever games or players change
+     */
+    public LiveData<List<GameWithPlayers>> observeAllGamesWithPlayers() {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), GAME_LIST_TABLES,
+                new QueryLiveData.Query<List<GameWithPlayers>>() {
+                    @Override
+                    public List<GameWithPlayers> run() {
+                        return dbHelper.getAllGamesWithPlayers();
+                    }
+                });
+    }
+    
+    /**
+     * Observe a player's games with player names; re-queried whenever games or players change
+     */
+    public LiveData<List<GameWithPlayers>> observePlayerGamesWithPlayers(final int playerId) {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), GAME_LIST_TABLES,
+                new QueryLiveData.Query<List<GameWithPlayers>>() {
+                    @Override
+                    public List<GameWithPlayers> run() {
+                        return dbHelper.getPlayerGamesWithPlayers(playerId);
+                    }
+                });
+    }
+    
+    /**
+     * Get the club's rating mode, DatabaseHelper.RATING_MODE_ELO or RATING_MODE_GLICKO2
+     */
+    public int getRatingMode() {
+        return dbHelper.getRatingMode();
+    }
+    
+    /**
+     * Switch the club's rating mode; the whole history is re-rated under the new mode
+     */
+    public void setRatingMode(int mode) {
+        dbHelper.setRatingMode(mode);
+    }
+    
+    /**
+     * Get a player's rating as it was at a point in time, from the rating history
+     */
+    public int getRatingAt(int playerId, long date) {
+        return dbHelper.getRatingAt(playerId, date);
+    }
+    
+    /**
+     * Get a player's rating history between two dates inclusive, oldest first
+     */
+    public List<RatingHistoryEntry> getRatingHistory(int playerId, long fromDate, long toDate) {
+        return dbHelper.getRatingHistory(playerId, fromDate, toDate);
+    }
+    
     /**
      * Get player name for a game
      */
@@ -81,4 +315,100 @@ public class GameDao {
         Player player = dbHelper.getPlayer(playerId);
         return player != null ? player.getName() : "Unknown";
     }
+    
+    /**
+     * A chunk of imported games with their players' slots and results in primitive arrays,
+     * so the whole chunk is rated in one call without per-game allocations
+     */
+    private static class ImportChunk {
+        final List<Game> games = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        final int[] whiteSlots = new int[IMPORT_CHUNK_SIZE];
+        final int[] blackSlots = new int[IMPORT_CHUNK_SIZE];
+        final int[] results = new int[IMPORT_CHUNK_SIZE];
+        final int[] whiteChanges = new int[IMPORT_CHUNK_SIZE];
+        final int[] blackChanges = new int[IMPORT_CHUNK_SIZE];
+        
+        // Ratings before each game, for its rating history rows
+        final int[] whiteRatings = new int[IMPORT_CHUNK_SIZE];
+        final int[] blackRatings = new int[IMPORT_CHUNK_SIZE];
+        
+        // Ratings of every slot when the chunk started
+        final int[] startRatings;
+        
+        // Counter changes of the chunk's players, written with its games
+        final int[] playerIds;
+        final int[] eloDeltas;
+        final int[] winsDeltas;
+        final int[] drawsDeltas;
+        final int[] lossesDeltas;
+        
+        ImportChunk(int playerCount) {
+            startRatings = new int[playerCount];
+            playerIds = new int[playerCount];
+            eloDeltas = new int[playerCount];
+            winsDeltas = new int[playerCount];
+            drawsDeltas = new int[playerCount];
+            lossesDeltas = new int[playerCount];
+        }
+        
+        void add(Game game, int whiteSlot, int blackSlot) {
+            int i = games.size();
+            whiteSlots[i] = whiteSlot;
+            blackSlots[i] = blackSlot;
+            results[i] = game.getResult();
+            games.add(game);
+        }
+        
+        int size() {
+            return games.size();
+        }
+        
+        void clear() {
+            games.clear();
+        }
+    }
+    
+    /**
+     * Running rating and result counters for one player during bulk import
+     */
+    private static class PlayerTally {
+        int elo;
+        int wins;
+        int draws;
+        int losses;
+        
+        // Values as of the last committed chunk
+        int committedElo;
+        int committedWins;
+        int committedDraws;
+        int committedLosses;
+        
+        PlayerTally(int elo) {
+            this.elo = elo;
+            this.committedElo = elo;
+        }
+        
+        void record(int eloChange, boolean won, boolean drew, boolean lost) {
+            elo += eloChange;
+            if (won) {
+                wins++;
+            } else if (drew) {
+                draws++;
+            } else if (lost) {
+                losses++;
+            }
+        }
+        
+        void commit() {
+            committedElo = elo;
+            committedWins = wins;
+            committedDraws = draws;
+            committedLosses = losses;
+        }
+        
+        boolean hasUncommittedChanges() {
+            return elo != committedElo || wins != committedWins
+                    || draws != committedDraws || losses != committedLosses;
+        }
+    }
 }
@@ -0,0 +1,47 @@
+package com.chessclub.app.database;
+
+import android.database.Cursor;
+
+import com.chessclub.app.model.Game;
+
+/**
+ * Maps game rows to Game objects, either new ones or a reused instance
+ */
+final class GameMapper implements RowMapper<Game> {
+    private final int idIndex;
+    private final int whiteIdIndex;
+    private final int blackIdIndex;
+    private final int resultIndex;
+    private final int dateIndex;
+    private final int whiteEloChangeIndex;
+    private final int blackEloChangeIndex;
+
+    GameMapper(Cursor cursor) {
+        idIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_GAME_ID);
+        whiteIdIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_GAME_WHITE_ID);
+        blackIdIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_GAME_BLACK_ID);
+        resultIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_GAME_RESULT);
+        dateIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_GAME_DATE);
+        whiteEloChangeIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_GAME_WHITE_ELO_CHANGE);
+        blackEloChangeIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_GAME_BLACK_ELO_CHANGE);
+    }
+
+    @Override
+    public Game map(Cursor cursor) {
+        return fill(cursor, new Game());
+    }
+
+    /**
+     * Copy the current row into an existing Game, for streaming without allocation
+     */
+    Game fill(Cursor cursor, Game game) {
+        game.setId(cursor.getInt(idIndex));
+        game.setWhitePlayerId(cursor.getInt(whiteIdIndex));
+        game.setBlackPlayerId(cursor.getInt(blackIdIndex));
+        game.setResult(cursor.getInt(resultIndex));
+        game.setDate(cursor.getLong(dateIndex));
+        game.setWhiteEloChange(cursor.getInt(whiteEloChangeIndex));
+        game.setBlackEloChange(cursor.getInt(blackEloChangeIndex));
+        return game;
+    }
+}
@@ -0,0 +1,14 @@
+package com.chessclub.app.database;
+
+import com.chessclub.app.model.Game;
+
+/**
+ * Receives games one at a time during a streaming pass over the game history
+ */
+public interface GameVisitor {
+    /**
+     * Visit one game. The game object is reused for every row, so it is only valid
+     * during this call; copy any fields that are needed later.
+     */
+    void visit(Game game);
+}
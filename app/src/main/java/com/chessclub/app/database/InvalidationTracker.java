@@ -0,0 +1,126 @@
+package com.chessclub.app.database;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracks a version per table and tells observers which tables changed.
+ * Changes are coalesced: all tables written within one dispatch window are delivered
+ * together on the main thread, so a burst of writes causes one refresh per window.
+ */
+public class InvalidationTracker {
+    // Window over which rapid changes are collected into one notification
+    private static final long COALESCE_WINDOW_MS = 100;
+
+    /**
+     * Receives the set of tables that changed since the last notification
+     */
+    public interface Observer {
+        void onInvalidated(Set<String> tables);
+    }
+
+    private final Map<String, Long> versions = new HashMap<>();
+    private final Set<String> pendingTables = new HashSet<>();
+    private final CopyOnWriteArrayList<ObserverEntry> observers = new CopyOnWriteArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean dispatchScheduled;
+
+    private final Runnable dispatch = new Runnable() {
+        @Override
+        public void run() {
+            Set<String> changed;
+            synchronized (InvalidationTracker.this) {
+                changed = new HashSet<>(pendingTables);
+                pendingTables.clear();
+                dispatchScheduled = false;
+            }
+            changed = Collections.unmodifiableSet(changed);
+            for (ObserverEntry entry : observers) {
+                if (entry.isInterestedIn(changed)) {
+                    entry.observer.onInvalidated(changed);
+                }
+            }
+        }
+    };
+
+    /**
+     * Current version of a table; changes every time the table is written
+     */
+    public synchronized long getVersion(String table) {
+        Long version = versions.get(table);
+        return version == null ? 0 : version;
+    }
+
+    /**
+     * Sum of the versions of several tables, for cheap "did any of these change" checks
+     */
+    public synchronized long getVersion(String[] tables) {
+        long sum = 0;
+        for (String table : tables) {
+            Long version = versions.get(table);
+            if (version != null) {
+                sum += version;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Record that tables were written and schedule a coalesced notification
+     */
+    void notifyChanged(String... tables) {
+        synchronized (this) {
+            for (String table : tables) {
+                Long version = versions.get(table);
+                versions.put(table, version == null ? 1 : version + 1);
+                pendingTables.add(table);
+            }
+            if (dispatchScheduled) {
+                return;
+            }
+            dispatchScheduled = true;
+        }
+        handler.postDelayed(dispatch, COALESCE_WINDOW_MS);
+    }
+
+    /**
+     * Observe changes to any of the given tables
+     */
+    public void addObserver(Observer observer, String... tables) {
+        observers.add(new ObserverEntry(observer, tables));
+    }
+
+    public void removeObserver(Observer observer) {
+        for (ObserverEntry entry : observers) {
+            if (entry.observer == observer) {
+                observers.remove(entry);
+            }
+        }
+    }
+
+    private static class ObserverEntry {
+        final Observer observer;
+        final String[] tables;
+
+        ObserverEntry(Observer observer, String[] tables) {
+            this.observer = observer;
+            this.tables = tables;
+        }
+
+        boolean isInterestedIn(Set<String> changed) {
+            for (String table : tables) {
+                if (changed.contains(table)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
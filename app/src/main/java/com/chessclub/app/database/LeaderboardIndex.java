@@ -0,0 +1,341 @@
+package com.chessclub.app.database;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Thread-safe rank index over player ratings, in front of the players table.
+ * Players are ordered by rating, highest first, and by id among equal ratings; a player's
+ * rank is their 1-based position in that order. A Fenwick tree counts players per rating
+ * bucket, so rank, top-N and window lookups take logarithmic time instead of sorting every
+ * player. Built in one pass from the players table and kept current by every write path in
+ * DatabaseHelper; bulk rating changes drop it, and it is rebuilt on the next lookup.
+ */
+public class LeaderboardIndex {
+    // One bucket per rating point; ratings outside the range share the end buckets
+    private static final int MIN_RATING = 0;
+    private static final int BUCKET_COUNT = 4096;
+    private static final int NO_RATING = Integer.MIN_VALUE;
+
+    /**
+     * Told about rank changes, on the writing thread once the change is committed
+     */
+    public interface RankObserver {
+        /**
+         * A player's rating changed and moved them from oldRank to newRank.
+         * Every player ranked between the two shifted by one place.
+         */
+        void onRankChanged(int playerId, int oldRank, int newRank);
+
+        /**
+         * Many ratings changed at once, e.g. after a replay or an import, so any rank may differ
+         */
+        void onRanksReset();
+    }
+
+    // Fenwick tree over buckets, bucket 0 holding the highest ratings
+    private final int[] tree = new int[BUCKET_COUNT + 1];
+    // Players of each bucket, ordered by rating descending and id ascending
+    private final int[][] members = new int[BUCKET_COUNT][];
+    private final int[] memberCounts = new int[BUCKET_COUNT];
+    // Rating of each indexed player, by id
+    private int[] ratings = new int[0];
+    private int size;
+    private boolean loaded;
+
+    // Bumped by every write, so a build that raced with a write is not installed
+    private long generation;
+
+    private final CopyOnWriteArrayList<RankObserver> observers = new CopyOnWriteArrayList<>();
+
+    LeaderboardIndex() {
+    }
+
+    public void addObserver(RankObserver observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(RankObserver observer) {
+        observers.remove(observer);
+    }
+
+    /**
+     * Whether the index holds every player; lookups are only valid when it does
+     */
+    synchronized boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Current write generation, to be passed to rebuildIfUnchanged after reading the players
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Replace the index with every player's rating, in one pass, unless a write happened
+     * since the ratings were read
+     * @return Whether the index was rebuilt
+     */
+    synchronized boolean rebuildIfUnchanged(int[] playerIds, int[] playerRatings, int count,
+                                            long loadGeneration) {
+        if (loadGeneration != generation) {
+            return false;
+        }
+        Arrays.fill(tree, 0);
+        Arrays.fill(members, null);
+        Arrays.fill(memberCounts, 0);
+        Arrays.fill(ratings, NO_RATING);
+        size = 0;
+        for (int i = 0; i < count; i++) {
+            insert(playerIds[i], playerRatings[i]);
+        }
+        loaded = true;
+        return true;
+    }
+
+    /**
+     * Index a new player or a player whose rating was written directly
+     */
+    void put(int playerId, int rating) {
+        int oldRank;
+        int newRank;
+        synchronized (this) {
+            generation++;
+            if (!loaded) {
+                return;
+            }
+            oldRank = rankOfLocked(playerId);
+            if (oldRank > 0) {
+                if (ratings[playerId] == rating) {
+                    return;
+                }
+                delete(playerId);
+            }
+            insert(playerId, rating);
+            newRank = rankOfLocked(playerId);
+        }
+        if (oldRank > 0) {
+            notifyRankChanged(playerId, oldRank, newRank);
+        } else {
+            // A new player shifts everyone ranked below them
+            notifyRanksReset();
+        }
+    }
+
+    /**
+     * Move a player by a rating change, e.g. after recording a game
+     */
+    void applyRatingDelta(int playerId, int delta) {
+        int rating;
+        synchronized (this) {
+            if (!loaded || delta == 0 || rankOfLocked(playerId) < 0) {
+                generation++;
+                return;
+            }
+            rating = ratings[playerId] + delta;
+        }
+        put(playerId, rating);
+    }
+
+    /**
+     * Drop a deleted player
+     */
+    void remove(int playerId) {
+        synchronized (this) {
+            generation++;
+            if (!loaded || rankOfLocked(playerId) < 0) {
+                return;
+            }
+            delete(playerId);
+        }
+        notifyRanksReset();
+    }
+
+    /**
+     * Drop the whole index after ratings changed in bulk; it is rebuilt on the next lookup
+     */
+    void invalidate() {
+        synchronized (this) {
+            generation++;
+            loaded = false;
+        }
+        notifyRanksReset();
+    }
+
+    /**
+     * Get the number of ranked players
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Get a player's 1-based rank, or -1 if the player is not indexed
+     */
+    public synchronized int rankOf(int playerId) {
+        return rankOfLocked(playerId);
+    }
+
+    /**
+     * Get the ids of the n best ranked players, best first
+     */
+    public synchronized int[] topN(int n) {
+        return idsFrom(0, Math.max(0, Math.min(n, size)));
+    }
+
+    /**
+     * Get the ids of the players ranked up to k places above and below a player, best first,
+     * or an empty array if the player is not indexed
+     */
+    public synchronized int[] window(int playerId, int k) {
+        int rank = rankOfLocked(playerId);
+        if (rank < 0) {
+            return new int[0];
+        }
+        int from = Math.max(0, rank - 1 - k);
+        int to = Math.min(size, rank + k);
+        return idsFrom(from, to - from);
+    }
+
+    private int rankOfLocked(int playerId) {
+        if (playerId < 0 || playerId >= ratings.length || ratings[playerId] == NO_RATING) {
+            return -1;
+        }
+        int bucket = bucketOf(ratings[playerId]);
+        return prefixCount(bucket) + indexInBucket(bucket, playerId, ratings[playerId]) + 1;
+    }
+
+    /**
+     * Ids of count players starting at a 0-based position, jumping between non-empty buckets
+     */
+    private int[] idsFrom(int position, int count) {
+        int[] ids = new int[count];
+        int filled = 0;
+        while (filled < count) {
+            int bucket = bucketAt(position + filled);
+            int offset = position + filled - prefixCount(bucket);
+            int taken = Math.min(memberCounts[bucket] - offset, count - filled);
+            System.arraycopy(members[bucket], offset, ids, filled, taken);
+            filled += taken;
+        }
+        return ids;
+    }
+
+    private void insert(int playerId, int rating) {
+        if (playerId >= ratings.length) {
+            int oldLength = ratings.length;
+            ratings = Arrays.copyOf(ratings, Math.max(playerId + 1, oldLength * 2));
+            Arrays.fill(ratings, oldLength, ratings.length, NO_RATING);
+        }
+        ratings[playerId] = rating;
+        int bucket = bucketOf(rating);
+        int count = memberCounts[bucket];
+        int[] bucketMembers = members[bucket];
+        if (bucketMembers == null) {
+            bucketMembers = new int[4];
+        } else if (count == bucketMembers.length) {
+            bucketMembers = Arrays.copyOf(bucketMembers, count * 2);
+        }
+        members[bucket] = bucketMembers;
+        int index = count;
+        while (index > 0 && comesBefore(playerId, rating, bucketMembers[index - 1])) {
+            bucketMembers[index] = bucketMembers[index - 1];
+            index--;
+        }
+        bucketMembers[index] = playerId;
+        memberCounts[bucket] = count + 1;
+        addToTree(bucket, 1);
+        size++;
+    }
+
+    private void delete(int playerId) {
+        int rating = ratings[playerId];
+        int bucket = bucketOf(rating);
+        int index = indexInBucket(bucket, playerId, rating);
+        int[] bucketMembers = members[bucket];
+        System.arraycopy(bucketMembers, index + 1, bucketMembers, index,
+                memberCounts[bucket] - index - 1);
+        memberCounts[bucket]--;
+        addToTree(bucket, -1);
+        ratings[playerId] = NO_RATING;
+        size--;
+    }
+
+    /**
+     * Position of an indexed player within their bucket, by binary search
+     */
+    private int indexInBucket(int bucket, int playerId, int rating) {
+        int[] bucketMembers = members[bucket];
+        int low = 0;
+        int high = memberCounts[bucket] - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (comesBefore(bucketMembers[mid], ratings[bucketMembers[mid]], playerId, rating)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private boolean comesBefore(int playerId, int rating, int otherId) {
+        return comesBefore(playerId, rating, otherId, ratings[otherId]);
+    }
+
+    private static boolean comesBefore(int playerId, int rating, int otherId, int otherRating) {
+        return rating > otherRating || (rating == otherRating && playerId < otherId);
+    }
+
+    private static int bucketOf(int rating) {
+        int offset = Math.max(0, Math.min(BUCKET_COUNT - 1, rating - MIN_RATING));
+        return BUCKET_COUNT - 1 - offset;
+    }
+
+    private void addToTree(int bucket, int delta) {
+        for (int i = bucket + 1; i <= BUCKET_COUNT; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    /**
+     * Number of players in the buckets before the given one, i.e. with higher ratings
+     */
+    private int prefixCount(int bucket) {
+        int count = 0;
+        for (int i = bucket; i > 0; i -= i & -i) {
+            count += tree[i];
+        }
+        return count;
+    }
+
+    /**
+     * Bucket holding the player at a 0-based position, by descending the Fenwick tree
+     */
+    private int bucketAt(int position) {
+        int index = 0;
+        int remaining = position;
+        for (int step = Integer.highestOneBit(BUCKET_COUNT); step > 0; step >>= 1) {
+            int next = index + step;
+            if (next <= BUCKET_COUNT && tree[next] <= remaining) {
+                index = next;
+                remaining -= tree[next];
+            }
+        }
+        return index;
+    }
+
+    private void notifyRankChanged(int playerId, int oldRank, int newRank) {
+        for (RankObserver observer : observers) {
+            observer.onRankChanged(playerId, oldRank, newRank);
+        }
+    }
+
+    private void notifyRanksReset() {
+        for (RankObserver observer : observers) {
+            observer.onRanksReset();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.chessclub.app.database;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * A single schema upgrade step, taking the database from toVersion - 1 to toVersion.
+ * Steps run inside the upgrade transaction opened by SQLiteOpenHelper and must preserve data.
+ */
+abstract class Migration {
+
+    final int toVersion;
+
+    Migration(int toVersion) {
+        this.toVersion = toVersion;
+    }
+
+    /**
+     * Apply this step to the database
+     */
+    abstract void migrate(SQLiteDatabase db);
+}
@@ -0,0 +1,99 @@
+package com.chessclub.app.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.SparseArray;
+
+/**
+ * Registry of schema upgrade steps, keyed by the database version each step produces
+ */
+final class Migrations {
+
+    private static final SparseArray<Migration> MIGRATIONS = new SparseArray<>();
+
+    static {
+        // Version 2: indexes on the games table
+        register(new Migration(2) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                DatabaseHelper.createGameIndexes(db);
+            }
+        });
+
+        // Version 3: rating history, backfilled from the recorded games
+        register(new Migration(3) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                DatabaseHelper.createRatingHistoryTable(db);
+                DatabaseHelper.backfillRatingHistory(db);
+            }
+        });
+
+        // Version 4: Glicko-2 deviation and volatility per player
+        register(new Migration(4) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                DatabaseHelper.addGlicko2Columns(db);
+            }
+        });
+
+        // Version 5: stored games played and win rate, and an index per leaderboard sort key
+        register(new Migration(5) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                DatabaseHelper.addPlayerSortColumns(db);
+            }
+        });
+
+        // Version 6: player names unique, ignoring case
+        register(new Migration(6) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                DatabaseHelper.addUniquePlayerNameIndex(db);
+            }
+        });
+
+        // Version 7: Glicko-2 checkpoints per player and rating period
+        register(new Migration(7) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                DatabaseHelper.addRatingPeriodTable(db);
+            }
+        });
+
+        // Version 8: one-row settings table holding the rating mode, which was a preference
+        register(new Migration(8) {
+            @Override
+            void migrate(SQLiteDatabase db) {
+                DatabaseHelper.addSettingsTable(db);
+            }
+        });
+    }
+
+    private Migrations() {
+    }
+
+    private static void register(Migration migration) {
+        if (MIGRATIONS.get(migration.toVersion) != null) {
+            throw new IllegalStateException("Duplicate migration to version " + migration.toVersion);
+        }
+        MIGRATIONS.put(migration.toVersion, migration);
+    }
+
+    /**
+     * Apply every step between oldVersion and newVersion in order.
+     * Called from onUpgrade, which SQLiteOpenHelper already runs in a single transaction,
+     * so a failing step leaves the database at oldVersion with its data intact.
+     * Steps are not chunked: version 3 streams about 400k history rows into that transaction
+     * for a 200k-game club. This relies on the database being opened off the main thread,
+     * which holds as long as every DAO call goes through ClubRepository's executors.
+     */
+    static void upgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            Migration migration = MIGRATIONS.get(version);
+            if (migration == null) {
+                throw new IllegalStateException("No migration to database version " + version);
+            }
+            migration.migrate(db);
+        }
+    }
+}
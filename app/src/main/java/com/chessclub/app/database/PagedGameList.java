@@ -0,0 +1,424 @@
+package com.chessclub.app.database;
+
+import android.content.Context;
+import android.util.SparseArray;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.model.GameWithPlayers;
+import com.chessclub.app.model.Player;
+import com.chessclub.app.utils.AppExecutors;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A game history loaded page by page as a RecyclerView scrolls through it.
+ * Pages of PAGE_SIZE games are fetched by (date, id) keyset on the read executor, the next
+ * page is prefetched before the end of the loaded rows is reached, and only a window of
+ * pages around the last accessed position is kept in memory. Rows of dropped pages read as
+ * null placeholders until they are fetched again, so memory stays bounded however long the
+ * history is, and the first rows appear after a single page query.
+ * Must be used from the main thread.
+ */
+public class PagedGameList {
+    public static final int PAGE_SIZE = 50;
+    // Start loading a neighbouring page when this close to its edge
+    private static final int PREFETCH_DISTANCE = PAGE_SIZE / 2;
+    // Pages kept around the last accessed page; further pages are dropped
+    private static final int MAX_LOADED_PAGES = 5;
+
+    private final DatabaseHelper dbHelper;
+    private final int playerId;
+    private final ExecutorService diskRead;
+    private final Executor mainThread;
+
+    // Page i holds the games older than (pageDates[i], pageIds[i])
+    private long[] pageDates = new long[16];
+    private int[] pageIds = new int[16];
+    private int pageCount;
+
+    private final SparseArray<List<GameWithPlayers>> pages = new SparseArray<>();
+    private final SparseArray<Boolean> loadingPages = new SparseArray<>();
+    private int size;
+    private boolean endReached;
+    private int lastAccessedPage;
+
+    // Bumped on every refresh, so page loads started before it are discarded
+    private int generation;
+    // Games changed while detached; the loaded window is reloaded when attached again
+    private boolean stale;
+    // Only players changed while detached; shown names and ratings are checked when attached
+    private boolean playersStale;
+    private boolean closed;
+
+    private ListUpdateCallback updateCallback;
+    private final MutableLiveData<Boolean> empty = new MutableLiveData<>();
+
+    private final InvalidationTracker.Observer invalidationObserver = new InvalidationTracker.Observer() {
+        @Override
+        public void onInvalidated(Set<String> tables) {
+            boolean gamesChanged = tables.contains(DatabaseHelper.TABLE_GAMES);
+            if (updateCallback == null) {
+                // Refresh when a list is attached again
+                stale |= gamesChanged;
+                playersStale |= !gamesChanged;
+            } else if (gamesChanged) {
+                refresh();
+            } else {
+                refreshPlayers();
+            }
+        }
+    };
+
+    /**
+     * Create a paged history and start loading its first page
+     * @param playerId Player whose games to list, or -1 for all games
+     */
+    public PagedGameList(Context context, int playerId) {
+        this.dbHelper = DatabaseHelper.getInstance(context);
+        this.playerId = playerId;
+        this.diskRead = AppExecutors.getInstance().diskRead();
+        this.mainThread = AppExecutors.getInstance().mainThread();
+
+        dbHelper.getInvalidationTracker().addObserver(invalidationObserver,
+                DatabaseHelper.TABLE_GAMES, DatabaseHelper.TABLE_PLAYERS);
+
+        pageDates[0] = Long.MAX_VALUE;
+        pageIds[0] = Integer.MAX_VALUE;
+        pageCount = 1;
+        loadPage(0);
+    }
+
+    /**
+     * Set the callback told about inserted, removed and changed rows, usually an
+     * AdapterListUpdateCallback; null detaches the list, e.g. when its view is destroyed
+     */
+    public void setUpdateCallback(ListUpdateCallback callback) {
+        updateCallback = callback;
+        if (callback != null && stale) {
+            refresh();
+        } else if (callback != null && playersStale) {
+            refreshPlayers();
+        }
+    }
+
+    /**
+     * Whether the history has no games, null until the first page has loaded
+     */
+    public LiveData<Boolean> isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Number of rows currently known; grows as pages are loaded
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the game at a position, or null if its page is still loading.
+     * Accessing a position also prefetches the pages around it.
+     */
+    public GameWithPlayers get(int position) {
+        int pageIndex = position / PAGE_SIZE;
+        int offset = position % PAGE_SIZE;
+        lastAccessedPage = pageIndex;
+
+        if (!endReached && position >= size - PREFETCH_DISTANCE) {
+            loadPage(pageCount - 1);
+        }
+        if (offset < PREFETCH_DISTANCE && pageIndex > 0) {
+            loadPage(pageIndex - 1);
+        } else if (offset >= PAGE_SIZE - PREFETCH_DISTANCE && pageIndex + 1 < pageCount) {
+            loadPage(pageIndex + 1);
+        }
+
+        List<GameWithPlayers> page = pages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Reload the loaded window of pages, e.g. after games were added or deleted.
+     * Pages are re-read from the window's first key onwards, each page's last row giving
+     * the next page's key. The keys of the pages above the window are kept unless a count
+     * of the games above it shows rows were added or removed there, in which case they are
+     * found again from the top.
+     */
+    public void refresh() {
+        if (closed) {
+            return;
+        }
+        stale = false;
+        playersStale = false;
+        final int refreshGeneration = ++generation;
+        loadingPages.clear();
+
+        final int firstPage = pages.size() > 0 ? pages.keyAt(0) : 0;
+        final int lastPage = pages.size() > 0 ? pages.keyAt(pages.size() - 1) : 0;
+        final long[] knownDates = Arrays.copyOf(pageDates, firstPage + 1);
+        final int[] knownIds = Arrays.copyOf(pageIds, firstPage + 1);
+        diskRead.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long[] dates = new long[lastPage + 2];
+                final int[] ids = new int[lastPage + 2];
+                int keyCount;
+                if (firstPage == 0 || dbHelper.countGamesFrom(playerId, knownDates[firstPage],
+                        knownIds[firstPage]) == firstPage * PAGE_SIZE) {
+                    System.arraycopy(knownDates, 0, dates, 0, firstPage + 1);
+                    System.arraycopy(knownIds, 0, ids, 0, firstPage + 1);
+                    keyCount = firstPage + 1;
+                } else {
+                    // Games above the window changed, so the keys of the earlier pages moved
+                    dates[0] = Long.MAX_VALUE;
+                    ids[0] = Integer.MAX_VALUE;
+                    long[] foundDates = new long[firstPage];
+                    int[] foundIds = new int[firstPage];
+                    int found = dbHelper.getGamePageKeys(playerId, PAGE_SIZE, firstPage + 1, foundDates, foundIds);
+                    System.arraycopy(foundDates, 0, dates, 1, found);
+                    System.arraycopy(foundIds, 0, ids, 1, found);
+                    keyCount = found + 1;
+                }
+
+                final SparseArray<List<GameWithPlayers>> reloaded = new SparseArray<>();
+                for (int i = keyCount - 1; i <= lastPage; i++) {
+                    List<GameWithPlayers> page = dbHelper.getGamesWithPlayersPage(playerId, dates[i], ids[i], PAGE_SIZE);
+                    reloaded.put(i, page);
+                    if (page.size() < PAGE_SIZE) {
+                        break;
+                    }
+                    Game last = page.get(PAGE_SIZE - 1).getGame();
+                    dates[i + 1] = last.getDate();
+                    ids[i + 1] = last.getId();
+                    keyCount = i + 2;
+                }
+                final int finalKeyCount = keyCount;
+                mainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (refreshGeneration == generation && !closed) {
+                            applyRefresh(dates, ids, finalKeyCount, reloaded);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Re-read the loaded pages after only players changed, if a player shown on them now has
+     * a different name or rating. Other player changes, such as a new PIN, cost no page
+     * queries: the shown players are checked against the player cache.
+     */
+    private void refreshPlayers() {
+        if (closed) {
+            return;
+        }
+        playersStale = false;
+        if (pages.size() == 0) {
+            return;
+        }
+        final int refreshGeneration = generation;
+        final SparseArray<List<GameWithPlayers>> shown = pages.clone();
+        final long[] dates = Arrays.copyOf(pageDates, pageCount);
+        final int[] ids = Arrays.copyOf(pageIds, pageCount);
+        diskRead.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!showsChangedPlayer(shown)) {
+                    return;
+                }
+                final SparseArray<List<GameWithPlayers>> reloaded = new SparseArray<>();
+                for (int i = 0; i < shown.size(); i++) {
+                    int pageIndex = shown.keyAt(i);
+                    reloaded.put(pageIndex, dbHelper.getGamesWithPlayersPage(playerId,
+                            dates[pageIndex], ids[pageIndex], PAGE_SIZE));
+                }
+                mainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (refreshGeneration == generation && !closed) {
+                            applyPlayerRefresh(reloaded);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Whether any player on the pages has a name or rating other than the one shown
+     */
+    private boolean showsChangedPlayer(SparseArray<List<GameWithPlayers>> shown) {
+        for (int i = 0; i < shown.size(); i++) {
+            for (GameWithPlayers row : shown.valueAt(i)) {
+                Game game = row.getGame();
+                if (!isShownAsStored(game.getWhitePlayerId(), row.getWhitePlayerName(), row.getWhitePlayerElo())
+                        || !isShownAsStored(game.getBlackPlayerId(), row.getBlackPlayerName(), row.getBlackPlayerElo())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isShownAsStored(int playerId, String shownName, int shownElo) {
+        Player player = dbHelper.getPlayer(playerId);
+        if (player == null) {
+            return "Unknown".equals(shownName);
+        }
+        return player.getElo() == shownElo && player.getName().equals(shownName);
+    }
+
+    /**
+     * Stop observing the database; the list must not be used afterwards
+     */
+    public void close() {
+        closed = true;
+        updateCallback = null;
+        dbHelper.getInvalidationTracker().removeObserver(invalidationObserver);
+    }
+
+    private void loadPage(final int pageIndex) {
+        if (closed || pageIndex >= pageCount || pages.get(pageIndex) != null
+                || loadingPages.get(pageIndex) != null) {
+            return;
+        }
+        loadingPages.put(pageIndex, Boolean.TRUE);
+
+        final int loadGeneration = generation;
+        final long beforeDate = pageDates[pageIndex];
+        final int beforeId = pageIds[pageIndex];
+        diskRead.execute(new Runnable() {
+            @Override
+            public void run() {
+                final List<GameWithPlayers> page =
+                        dbHelper.getGamesWithPlayersPage(playerId, beforeDate, beforeId, PAGE_SIZE);
+                mainThread.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (loadGeneration == generation && !closed) {
+                            onPageLoaded(pageIndex, page);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int pageIndex, List<GameWithPlayers> page) {
+        loadingPages.remove(pageIndex);
+        pages.put(pageIndex, page);
+
+        int start = pageIndex * PAGE_SIZE;
+        int oldSize = size;
+        if (pageIndex == pageCount - 1) {
+            // Last known page: it either yields the key of the next page or ends the history
+            if (page.size() == PAGE_SIZE) {
+                GameWithPlayers last = page.get(PAGE_SIZE - 1);
+                appendPageKey(last.getGame().getDate(), last.getGame().getId());
+            } else {
+                endReached = true;
+            }
+            size = Math.max(size, start + page.size());
+        }
+
+        if (updateCallback != null) {
+            int placeholders = Math.min(oldSize - start, page.size());
+            if (placeholders > 0) {
+                updateCallback.onChanged(start, placeholders, null);
+            }
+            if (size > oldSize) {
+                updateCallback.onInserted(oldSize, size - oldSize);
+            }
+        }
+        if (pageIndex == 0) {
+            empty.setValue(page.isEmpty());
+        }
+
+        trimPages();
+    }
+
+    private void applyRefresh(long[] dates, int[] ids, int keyCount,
+                              SparseArray<List<GameWithPlayers>> reloaded) {
+        int oldSize = size;
+
+        pageDates = Arrays.copyOf(dates, Math.max(dates.length, 16));
+        pageIds = Arrays.copyOf(ids, Math.max(ids.length, 16));
+        pageCount = keyCount;
+        pages.clear();
+        for (int i = 0; i < reloaded.size(); i++) {
+            pages.put(reloaded.keyAt(i), reloaded.valueAt(i));
+        }
+
+        // Rows are known up to the end of the last reloaded page
+        List<GameWithPlayers> lastPage = reloaded.size() > 0 ? reloaded.valueAt(reloaded.size() - 1) : null;
+        int lastIndex = reloaded.size() > 0 ? reloaded.keyAt(reloaded.size() - 1) : 0;
+        size = lastPage != null ? lastIndex * PAGE_SIZE + lastPage.size() : 0;
+        // A full last page always has the next page's key among the keys found
+        endReached = lastPage == null || lastPage.size() < PAGE_SIZE;
+
+        if (updateCallback != null) {
+            int unchangedCount = Math.min(oldSize, size);
+            if (unchangedCount > 0) {
+                updateCallback.onChanged(0, unchangedCount, null);
+            }
+            if (size > oldSize) {
+                updateCallback.onInserted(oldSize, size - oldSize);
+            } else if (size < oldSize) {
+                updateCallback.onRemoved(size, oldSize - size);
+            }
+        }
+        empty.setValue(size == 0);
+    }
+
+    private void applyPlayerRefresh(SparseArray<List<GameWithPlayers>> reloaded) {
+        for (int i = 0; i < reloaded.size(); i++) {
+            int pageIndex = reloaded.keyAt(i);
+            List<GameWithPlayers> current = pages.get(pageIndex);
+            List<GameWithPlayers> page = reloaded.valueAt(i);
+            // A page dropped since, or whose games changed meanwhile, is left to its own reload
+            if (current == null || current.size() != page.size()) {
+                continue;
+            }
+            pages.put(pageIndex, page);
+            if (updateCallback != null && !page.isEmpty()) {
+                updateCallback.onChanged(pageIndex * PAGE_SIZE, page.size(), null);
+            }
+        }
+    }
+
+    private void appendPageKey(long date, int id) {
+        if (pageCount == pageDates.length) {
+            pageDates = Arrays.copyOf(pageDates, pageCount * 2);
+            pageIds = Arrays.copyOf(pageIds, pageCount * 2);
+        }
+        pageDates[pageCount] = date;
+        pageIds[pageCount] = id;
+        pageCount++;
+    }
+
+    /**
+     * Drop pages far from the last accessed one; their keys are kept so they can be reloaded
+     */
+    private void trimPages() {
+        int radius = MAX_LOADED_PAGES / 2;
+        for (int i = pages.size() - 1; i >= 0; i--) {
+            if (Math.abs(pages.keyAt(i) - lastAccessedPage) > radius) {
+                pages.removeAt(i);
+            }
+        }
+    }
+}
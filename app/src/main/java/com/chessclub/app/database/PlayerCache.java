@@ -0,0 +1,148 @@
+package com.chessclub.app.database;
+
+import android.util.SparseArray;
+
+import com.chessclub.app.model.Player;
+
+/**
+ * Bounded, thread-safe id to Player cache in front of DatabaseHelper.
+ * Entries are loaded lazily on reads and kept current by every write path in DatabaseHelper.
+ * Callers always receive copies, so mutating a returned Player never changes the cache.
+ */
+public class PlayerCache {
+    private static final int DEFAULT_MAX_SIZE = 1024;
+
+    private final SparseArray<Player> players = new SparseArray<>();
+    private final int maxSize;
+
+    // Bumped by every write, so a load that raced with a write is not cached
+    private long generation;
+
+    private long hitCount;
+    private long missCount;
+
+    PlayerCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    PlayerCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get a copy of a cached player, or null on a miss
+     */
+    synchronized Player get(int id) {
+        Player player = players.get(id);
+        if (player == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return copyOf(player);
+    }
+
+    /**
+     * Current write generation, to be passed to putIfUnchanged after loading from disk
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Cache a player loaded from disk, unless a write happened since the load began
+     */
+    synchronized void putIfUnchanged(Player player, long loadGeneration) {
+        if (loadGeneration == generation) {
+            store(player);
+        }
+    }
+
+    /**
+     * Cache a player that has just been written in full
+     */
+    synchronized void put(Player player) {
+        generation++;
+        store(player);
+    }
+
+    /**
+     * Apply an update written with updatePlayer, keeping the cached PIN hash when none was written.
+     * updatePlayer never writes the Glicko-2 deviation and volatility, so those are kept as cached.
+     */
+    synchronized void update(Player player) {
+        generation++;
+        Player cached = players.get(player.getId());
+        if (cached == null) {
+            return;
+        }
+        Player merged = copyOf(player);
+        if (player.getPinHash() == null || player.getPinHash().isEmpty()) {
+            merged.setPinHash(cached.getPinHash());
+        }
+        merged.setRatingDeviation(cached.getRatingDeviation());
+        merged.setVolatility(cached.getVolatility());
+        store(merged);
+    }
+
+    /**
+     * Apply a PIN hash change to a cached player
+     */
+    synchronized void updatePinHash(int id, String pinHash) {
+        generation++;
+        Player cached = players.get(id);
+        if (cached != null) {
+            cached.setPinHash(pinHash);
+        }
+    }
+
+    /**
+     * Apply ELO and win/draw/loss deltas to a cached player
+     */
+    synchronized void applyStatDeltas(int id, int eloDelta, int winsDelta, int drawsDelta, int lossesDelta) {
+        generation++;
+        Player cached = players.get(id);
+        if (cached != null) {
+            cached.setElo(cached.getElo() + eloDelta);
+            cached.setWins(cached.getWins() + winsDelta);
+            cached.setDraws(cached.getDraws() + drawsDelta);
+            cached.setLosses(cached.getLosses() + lossesDelta);
+        }
+    }
+
+    /**
+     * Drop a single player
+     */
+    synchronized void remove(int id) {
+        generation++;
+        players.remove(id);
+    }
+
+    /**
+     * Drop every cached player
+     */
+    synchronized void clear() {
+        generation++;
+        players.clear();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private void store(Player player) {
+        if (players.indexOfKey(player.getId()) < 0 && players.size() >= maxSize) {
+            // Evict an arbitrary entry to stay within bounds
+            players.removeAt(0);
+        }
+        players.put(player.getId(), copyOf(player));
+    }
+
+    private static Player copyOf(Player player) {
+        return new Player(player);
+    }
+}
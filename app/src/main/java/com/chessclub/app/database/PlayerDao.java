@@ -2,7 +2,12 @@ package com.chessclub.app.database;
 
 import android.content.Context;
 
+import androidx.lifecycle.LiveData;
+
+import com.chessclub.app.model.LeaderboardSnapshot;
 import com.chessclub.app.model.Player;
+import com.chessclub.app.model.PlayerRank;
+import com.chessclub.app.utils.AppExecutors;
 import com.chessclub.app.utils.PinHasher;
 
 import java.util.List;
@@ -29,6 +34,13 @@ public class PlayerDao {
         return dbHelper.addPlayer(player);
     }
     
+    /**
+     * Add a fully populated player
+     */
+    public long addPlayer(Player player) {
+        return dbHelper.addPlayer(player);
+    }
+    
     /**
      * Update a player
      */
@@ -65,16 +77,181 @@ public class PlayerDao {
     }
     
     /**
-     * Get player by name
+     * Get leaderboard rows (ratings and results, no PIN hash or contact details)
+     */
+    public List<Player> getLeaderboard(String sortBy) {
+        return dbHelper.getLeaderboard(sortBy);
+    }
+    
+    /**
+     * Get the ID and name of every player, ordered by name
+     */
+    public List<Player> getPlayerNames() {
+        return dbHelper.getPlayerNames();
+    }
+    
+    /**
+     * Observe leaderboard rows in the given order; re-queried whenever the players table changes
+     */
+    public LiveData<List<Player>> observeLeaderboard(final String sortBy) {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), new String[]{DatabaseHelper.TABLE_PLAYERS},
+                new QueryLiveData.Query<List<Player>>() {
+                    @Override
+                    public List<Player> run() {
+                        return dbHelper.getLeaderboard(sortBy);
+                    }
+                });
+    }
+    
+    /**
+     * Observe the leaderboard as an in-memory snapshot; reloaded whenever the players table
+     * changes, and kept as the same instance if no leaderboard row actually changed
+     */
+    public LiveData<LeaderboardSnapshot> observeLeaderboardSnapshot() {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), new String[]{DatabaseHelper.TABLE_PLAYERS},
+                new QueryLiveData.Query<LeaderboardSnapshot>() {
+                    private volatile LeaderboardSnapshot last;
+                    
+                    @Override
+                    public LeaderboardSnapshot run() {
+                        LeaderboardSnapshot snapshot = dbHelper.getLeaderboardSnapshot();
+                        LeaderboardSnapshot previous = last;
+                        if (previous != null && previous.hasSameRows(snapshot)) {
+                            return previous;
+                        }
+                        // Sort by the default order here rather than on the main thread
+                        snapshot.sorted(LeaderboardSnapshot.SORT_BY_ELO, false);
+                        last = snapshot;
+                        return snapshot;
+                    }
+                });
+    }
+    
+    /**
+     * Observe the ID and name of every player; re-queried whenever the players table changes
+     */
+    public LiveData<List<Player>> observePlayerNames() {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), new String[]{DatabaseHelper.TABLE_PLAYERS},
+                new QueryLiveData.Query<List<Player>>() {
+                    @Override
+                    public List<Player> run() {
+                        return dbHelper.getPlayerNames();
+                    }
+                });
+    }
+    
+    /**
+     * Observe all players in the given order; re-queried whenever the players table changes
+     */
+    public LiveData<List<Player>> observeAllPlayers(final String sortBy) {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), new String[]{DatabaseHelper.TABLE_PLAYERS},
+                new QueryLiveData.Query<List<Player>>() {
+                    @Override
+                    public List<Player> run() {
+                        return dbHelper.getAllPlayers(sortBy);
+                    }
+                });
+    }
+    
+    /**
+     * Observe a player; re-queried whenever the players table changes
+     */
+    public LiveData<Player> observePlayer(final int id) {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), new String[]{DatabaseHelper.TABLE_PLAYERS},
+                new QueryLiveData.Query<Player>() {
+                    @Override
+                    public Player run() {
+                        return dbHelper.getPlayer(id);
+                    }
+                });
+    }
+    
+    /**
+     * Get a player's place on the leaderboard, or null if the player is unknown
+     */
+    public PlayerRank getPlayerRank(int playerId) {
+        return dbHelper.getPlayerRank(playerId);
+    }
+    
+    /**
+     * Get the best rated players, best first
+     */
+    public List<Player> getTopPlayers(int count) {
+        return dbHelper.getTopPlayers(count);
+    }
+    
+    /**
+     * Get the players ranked up to places above and below a player, best first
+     */
+    public List<Player> getPlayersAroundRank(int playerId, int places) {
+        return dbHelper.getPlayersAroundRank(playerId, places);
+    }
+    
+    /**
+     * Observe a player's place on the leaderboard; re-read whenever the players table changes
+     */
+    public LiveData<PlayerRank> observePlayerRank(final int playerId) {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), new String[]{DatabaseHelper.TABLE_PLAYERS},
+                new QueryLiveData.Query<PlayerRank>() {
+                    @Override
+                    public PlayerRank run() {
+                        return dbHelper.getPlayerRank(playerId);
+                    }
+                });
+    }
+    
+    /**
+     * Observe the players ranked around a player; re-read whenever the players table changes
+     */
+    public LiveData<List<Player>> observePlayersAroundRank(final int playerId, final int places) {
+        return QueryLiveData.observing(AppExecutors.getInstance().diskRead(),
+                dbHelper.getInvalidationTracker(), new String[]{DatabaseHelper.TABLE_PLAYERS},
+                new QueryLiveData.Query<List<Player>>() {
+                    @Override
+                    public List<Player> run() {
+                        return dbHelper.getPlayersAroundRank(playerId, places);
+                    }
+                });
+    }
+    
+    /**
+     * Be told when a rating change moves a player on the leaderboard, and when ranks change
+     * in bulk; called on the writing thread
+     */
+    public void addRankObserver(LeaderboardIndex.RankObserver observer) {
+        dbHelper.getLeaderboardIndex().addObserver(observer);
+    }
+    
+    public void removeRankObserver(LeaderboardIndex.RankObserver observer) {
+        dbHelper.getLeaderboardIndex().removeObserver(observer);
+    }
+    
+    /**
+     * Get player by name, ignoring case
      */
     public Player getPlayerByName(String name) {
-        List<Player> players = getAllPlayers();
-        for (Player player : players) {
-            if (player.getName().equals(name)) {
-                return player;
-            }
-        }
-        return null;
+        return dbHelper.getPlayerByName(name);
+    }
+    
+    /**
+     * Find up to limit players whose names start with or contain the query, ignoring case
+     */
+    public List<Player> searchPlayers(String query, int limit) {
+        return dbHelper.searchPlayers(query, limit);
+    }
+    
+    /**
+     * Get a player's most recent opponents, or the club's most recently active players
+     * when playerId is -1
+     */
+    public List<Player> getRecentOpponents(int playerId, int limit) {
+        return dbHelper.getRecentOpponents(playerId, limit);
     }
     
     /**
@@ -0,0 +1,87 @@
+package com.chessclub.app.database;
+
+import android.database.Cursor;
+
+import com.chessclub.app.model.Player;
+
+/**
+ * Maps player rows to Player objects.
+ * Works with any projection of the players table: columns left out of the query
+ * keep the Player defaults, so lean projections such as the leaderboard or the
+ * login list need no mapper of their own.
+ */
+final class PlayerMapper implements RowMapper<Player> {
+    private final int idIndex;
+    private final int nameIndex;
+    private final int pinHashIndex;
+    private final int eloIndex;
+    private final int winsIndex;
+    private final int drawsIndex;
+    private final int lossesIndex;
+    private final int isAdminIndex;
+    private final int emailIndex;
+    private final int phoneIndex;
+    private final int ratingDeviationIndex;
+    private final int volatilityIndex;
+    private final int winRateIndex;
+
+    PlayerMapper(Cursor cursor) {
+        idIndex = cursor.getColumnIndexOrThrow(DatabaseHelper.COL_PLAYER_ID);
+        nameIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_NAME);
+        pinHashIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_PIN_HASH);
+        eloIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_ELO);
+        winsIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_WINS);
+        drawsIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_DRAWS);
+        lossesIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_LOSSES);
+        isAdminIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_IS_ADMIN);
+        emailIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_EMAIL);
+        phoneIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_PHONE);
+        ratingDeviationIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_RATING_DEVIATION);
+        volatilityIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_VOLATILITY);
+        winRateIndex = cursor.getColumnIndex(DatabaseHelper.COL_PLAYER_WIN_RATE);
+    }
+
+    @Override
+    public Player map(Cursor cursor) {
+        Player player = new Player();
+        player.setId(cursor.getInt(idIndex));
+        if (nameIndex >= 0) {
+            player.setName(cursor.getString(nameIndex));
+        }
+        if (pinHashIndex >= 0) {
+            player.setPinHash(cursor.getString(pinHashIndex));
+        }
+        if (eloIndex >= 0) {
+            player.setElo(cursor.getInt(eloIndex));
+        }
+        if (winsIndex >= 0) {
+            player.setWins(cursor.getInt(winsIndex));
+        }
+        if (drawsIndex >= 0) {
+            player.setDraws(cursor.getInt(drawsIndex));
+        }
+        if (lossesIndex >= 0) {
+            player.setLosses(cursor.getInt(lossesIndex));
+        }
+        if (isAdminIndex >= 0) {
+            player.setAdmin(cursor.getInt(isAdminIndex) == 1);
+        }
+        if (emailIndex >= 0 && !cursor.isNull(emailIndex)) {
+            player.setEmail(cursor.getString(emailIndex));
+        }
+        if (phoneIndex >= 0 && !cursor.isNull(phoneIndex)) {
+            player.setPhone(cursor.getString(phoneIndex));
+        }
+        if (ratingDeviationIndex >= 0) {
+            player.setRatingDeviation(cursor.getDouble(ratingDeviationIndex));
+        }
+        if (volatilityIndex >= 0) {
+            player.setVolatility(cursor.getDouble(volatilityIndex));
+        }
+        // After the tallies, whose setters would reset it
+        if (winRateIndex >= 0) {
+            player.setWinRateFixed(cursor.getInt(winRateIndex));
+        }
+        return player;
+    }
+}
@@ -0,0 +1,134 @@
+package com.chessclub.app.database;
+
+import androidx.lifecycle.LiveData;
+
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * LiveData backed by a database query run on a background executor.
+ * The query runs when the first observer becomes active, and a query still pending
+ * when the last observer goes away (e.g. the fragment is destroyed) is cancelled.
+ * When created with source tables, the result is observable: it re-runs only when
+ * one of those tables changed, either while observed or since it was last loaded.
+ */
+public abstract class QueryLiveData<T> extends LiveData<T> {
+    private final ExecutorService executor;
+    private final InvalidationTracker tracker;
+    private final String[] tables;
+
+    private Future<?> pending;
+    private volatile boolean loaded;
+    private volatile long loadedVersion;
+
+    private final InvalidationTracker.Observer invalidationObserver = new InvalidationTracker.Observer() {
+        @Override
+        public void onInvalidated(Set<String> changedTables) {
+            refresh();
+        }
+    };
+
+    protected QueryLiveData(ExecutorService executor) {
+        this(executor, null, new String[0]);
+    }
+
+    protected QueryLiveData(ExecutorService executor, InvalidationTracker tracker, String... tables) {
+        this.executor = executor;
+        this.tracker = tracker;
+        this.tables = tables;
+    }
+
+    /**
+     * Run the query. Called on the background executor.
+     */
+    protected abstract T query();
+
+    /**
+     * Run the query again, e.g. after a write invalidated the result
+     */
+    public void refresh() {
+        loaded = false;
+        if (hasActiveObservers()) {
+            load();
+        }
+    }
+
+    @Override
+    protected void onActive() {
+        if (tracker != null) {
+            tracker.addObserver(invalidationObserver, tables);
+            if (loaded && tracker.getVersion(tables) != loadedVersion) {
+                loaded = false; // Source tables changed while nobody was observing
+            }
+        }
+        if (!loaded) {
+            load();
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        if (tracker != null) {
+            tracker.removeObserver(invalidationObserver);
+        }
+        if (pending != null && !pending.isDone()) {
+            pending.cancel(true);
+            pending = null;
+        }
+    }
+
+    private void load() {
+        if (pending != null && !pending.isDone()) {
+            pending.cancel(true);
+        }
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                // Read the version first, so a write racing with the query triggers a reload
+                long version = tracker != null ? tracker.getVersion(tables) : 0;
+                T result = query();
+                if (!Thread.currentThread().isInterrupted()) {
+                    loadedVersion = version;
+                    loaded = true;
+                    postValue(result);
+                }
+            }
+        });
+    }
+
+    /**
+     * Create a QueryLiveData from a plain callable-style query
+     */
+    public static <T> QueryLiveData<T> of(ExecutorService executor, final Query<T> query) {
+        return new QueryLiveData<T>(executor) {
+            @Override
+            protected T query() {
+                return query.run();
+            }
+        };
+    }
+
+    /**
+     * Create an observable QueryLiveData that re-runs when any of the given tables change
+     */
+    public static <T> QueryLiveData<T> observing(ExecutorService executor, InvalidationTracker tracker,
+                                                 String[] tables, final Query<T> query) {
+        return new QueryLiveData<T>(executor, tracker, tables) {
+            @Override
+            protected T query() {
+                return query.run();
+            }
+        };
+    }
+
+    /**
+     * A query producing a result, run off the main thread
+     */
+    public interface Query<T> {
+        T run();
+    }
+}
@@ -0,0 +1,545 @@
+package com.chessclub.app.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.SparseIntArray;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.utils.Glicko2;
+import com.chessclub.app.utils.RatingSystem;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.TimeZone;
+
+/**
+ * Recomputes ELO forward from a point in the game history, after a game was deleted or corrected.
+ * Ratings before that point are unaffected, so only the tail of games from it onwards is read.
+ * The stored ratings act as the checkpoint: a player's rating at the point is their current
+ * rating minus the deltas they gained in the tail. The tail is then replayed in order, rated
+ * in batches over primitive arrays, and only the game deltas that changed are rewritten,
+ * followed by the players' final ratings.
+ * The rating history rows of every replayed game are rewritten along with them.
+ * Clubs rated with Glicko-2 replay one rating period at a time from the start of the changed
+ * game's period, starting each player from the deviation and volatility checkpointed after
+ * the last period they played before it.
+ * The rating work itself runs over player slots in primitive arrays, apart from the database,
+ * in rateInBatches and rateInPeriods.
+ * Must be used inside the caller's transaction.
+ */
+final class RatingReplayer {
+    // Games at or after a (date, id) key
+    private static final String TAIL_CONDITION = DatabaseHelper.COL_GAME_DATE + " >= ? AND ("
+            + DatabaseHelper.COL_GAME_DATE + " > ? OR " + DatabaseHelper.COL_GAME_ID + " >= ?)";
+    
+    // Games read and rated per RatingSystem call
+    static final int BATCH_SIZE = 256;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    
+    private final SQLiteDatabase db;
+    private final RatingSystem ratingSystem;
+    private SQLiteStatement updateDeltasStatement;
+    private SQLiteStatement updateEloStatement;
+    private SQLiteStatement updateHistoryStatement;
+    private SQLiteStatement updateGlicko2StateStatement;
+    private SQLiteStatement insertCheckpointStatement;
+    
+    RatingReplayer(SQLiteDatabase db, RatingSystem ratingSystem) {
+        this.db = db;
+        this.ratingSystem = ratingSystem;
+    }
+    
+    /**
+     * Get the rating of every player with a game at or after a point in the history,
+     * as it was just before that point
+     */
+    static SparseIntArray ratingsBefore(SQLiteDatabase db, long date, int gameId) {
+        String query = "SELECT p." + DatabaseHelper.COL_PLAYER_ID + ", p." + DatabaseHelper.COL_PLAYER_ELO + " - t.delta"
+                + " FROM (SELECT player_id, SUM(delta) AS delta FROM ("
+                + "SELECT " + DatabaseHelper.COL_GAME_WHITE_ID + " AS player_id, "
+                + DatabaseHelper.COL_GAME_WHITE_ELO_CHANGE + " AS delta"
+                + " FROM " + DatabaseHelper.TABLE_GAMES + " WHERE " + TAIL_CONDITION
+                + " UNION ALL SELECT " + DatabaseHelper.COL_GAME_BLACK_ID + ", "
+                + DatabaseHelper.COL_GAME_BLACK_ELO_CHANGE
+                + " FROM " + DatabaseHelper.TABLE_GAMES + " WHERE " + TAIL_CONDITION
+                + ") GROUP BY player_id) t"
+                + " JOIN " + DatabaseHelper.TABLE_PLAYERS + " p ON p." + DatabaseHelper.COL_PLAYER_ID + " = t.player_id";
+        String[] key = tailArgs(date, gameId);
+        Cursor cursor = db.rawQuery(query, new String[]{key[0], key[1], key[2], key[0], key[1], key[2]});
+        
+        SparseIntArray ratings = new SparseIntArray(cursor.getCount());
+        while (cursor.moveToNext()) {
+            ratings.put(cursor.getInt(0), cursor.getInt(1));
+        }
+        cursor.close();
+        return ratings;
+    }
+    
+    /**
+     * Replay all games at or after a point in the history, starting from the given ratings.
+     * On return the ratings hold each player's final rating, which has also been stored.
+     * @param ratings Ratings before the point, as returned by ratingsBefore before the history was changed
+     * @return The number of games whose ELO changes were rewritten
+     */
+    int replay(long date, int gameId, SparseIntArray ratings) {
+        int[] slotRatings = new int[ratings.size()];
+        for (int i = 0; i < slotRatings.length; i++) {
+            slotRatings[i] = ratings.valueAt(i);
+        }
+        
+        GameCursor games = openTail(date, gameId);
+        int rewritten;
+        try {
+            rewritten = rateInBatches(ratingSystem, games, slotsOf(ratings), slotRatings, writerFor(ratings));
+        } finally {
+            games.close();
+        }
+        
+        for (int i = 0; i < slotRatings.length; i++) {
+            int playerId = ratings.keyAt(i);
+            ratings.put(playerId, slotRatings[i]);
+            updateElo(playerId, slotRatings[i]);
+        }
+        return rewritten;
+    }
+    
+    /**
+     * Get the start of the rating period, a local calendar day, holding a date
+     */
+    static long periodStart(long date) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(date);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+    
+    /**
+     * Re-rate with Glicko-2 the rating period holding a date and every later one.
+     * Each player starts from their rating at the start of that period and from the deviation
+     * and volatility checkpointed after the last period they played before it, or the defaults
+     * if there is none. The checkpoints of the re-rated periods are rewritten, and every
+     * player's final rating, deviation and volatility are stored.
+     * @param date Date of the earliest changed game, or Long.MIN_VALUE to re-rate the whole history
+     * @param ratings Ratings at the start of the period, as returned by ratingsBefore with
+     *                the period start before the history was changed
+     * @return The number of games whose ELO changes were rewritten
+     */
+    int replayInPeriods(Glicko2 glicko2, long date, SparseIntArray ratings) {
+        TimeZone timeZone = TimeZone.getDefault();
+        boolean wholeHistory = date == Long.MIN_VALUE;
+        long firstPeriod = wholeHistory ? Long.MIN_VALUE : periodOf(date, timeZone);
+        
+        int[] slotRatings = new int[ratings.size()];
+        for (int i = 0; i < slotRatings.length; i++) {
+            slotRatings[i] = ratings.valueAt(i);
+        }
+        PeriodState state = new PeriodState(slotRatings);
+        if (!wholeHistory) {
+            loadCheckpoints(firstPeriod, ratings, state);
+        }
+        deleteCheckpoints(firstPeriod);
+        
+        GameCursor games = openTail(wholeHistory ? Long.MIN_VALUE : periodStart(date), Integer.MIN_VALUE);
+        int rewritten;
+        try {
+            rewritten = rateInPeriods(glicko2, games, slotsOf(ratings), timeZone, state, writerFor(ratings));
+        } finally {
+            games.close();
+        }
+        
+        for (int i = 0; i < slotRatings.length; i++) {
+            updateGlicko2State(ratings.keyAt(i), slotRatings[i], state.deviations[i], state.volatilities[i]);
+        }
+        return rewritten;
+    }
+    
+    /**
+     * Rate games in order in batches of BATCH_SIZE, as replay does, without the database
+     * @param slotRatings Each slot's rating before the first game, and after the last on return
+     * @param writer Told about each batch once it is rated
+     * @return The number of games whose ELO changes the writer rewrote
+     */
+    static int rateInBatches(RatingSystem ratingSystem, Iterator<Game> games, Slots slots,
+                             int[] slotRatings, Writer writer) {
+        int[] running = new int[slotRatings.length];
+        Batch batch = new Batch(BATCH_SIZE);
+        int rewritten = 0;
+        while (games.hasNext()) {
+            batch.clear();
+            while (batch.count < BATCH_SIZE && games.hasNext()) {
+                batch.add(games.next(), slots);
+            }
+            
+            System.arraycopy(slotRatings, 0, running, 0, slotRatings.length);
+            ratingSystem.rateGames(slotRatings, batch.whiteSlots, batch.blackSlots, batch.results,
+                    batch.whiteChanges, batch.blackChanges, batch.count);
+            rewritten += writer.writeBatch(batch, running);
+        }
+        return rewritten;
+    }
+    
+    /**
+     * Rate games with Glicko-2 one rating period at a time, as replayInPeriods does, without
+     * the database
+     * @param state Each slot's state before the first game, and after the last on return
+     * @param writer Told about each period once it is rated
+     * @return The number of games whose ELO changes the writer rewrote
+     */
+    static int rateInPeriods(Glicko2 glicko2, Iterator<Game> games, Slots slots, TimeZone timeZone,
+                             PeriodState state, Writer writer) {
+        int[] running = new int[state.ratings.length];
+        int[] played = new int[state.ratings.length];
+        Batch batch = new Batch(BATCH_SIZE);
+        int rewritten = 0;
+        long period = 0;
+        while (games.hasNext()) {
+            Game game = games.next();
+            long gamePeriod = periodOf(game.getDate(), timeZone);
+            if (batch.count > 0 && gamePeriod != period) {
+                rewritten += ratePeriod(glicko2, batch, period, state, running, played, writer);
+                batch.clear();
+            }
+            period = gamePeriod;
+            batch.add(game, slots);
+        }
+        if (batch.count > 0) {
+            rewritten += ratePeriod(glicko2, batch, period, state, running, played, writer);
+        }
+        return rewritten;
+    }
+    
+    /**
+     * Release the compiled statements
+     */
+    void close() {
+        if (updateDeltasStatement != null) {
+            updateDeltasStatement.close();
+        }
+        if (updateEloStatement != null) {
+            updateEloStatement.close();
+        }
+        if (updateHistoryStatement != null) {
+            updateHistoryStatement.close();
+        }
+        if (updateGlicko2StateStatement != null) {
+            updateGlicko2StateStatement.close();
+        }
+        if (insertCheckpointStatement != null) {
+            insertCheckpointStatement.close();
+        }
+    }
+    
+    private GameCursor openTail(long date, int gameId) {
+        Cursor cursor = db.query(DatabaseHelper.TABLE_GAMES, null, TAIL_CONDITION, tailArgs(date, gameId),
+                null, null, DatabaseHelper.COL_GAME_DATE + " ASC, " + DatabaseHelper.COL_GAME_ID + " ASC");
+        return new GameCursor(cursor);
+    }
+    
+    private static long periodOf(long date, TimeZone timeZone) {
+        return (date + timeZone.getOffset(date)) / DAY_MILLIS;
+    }
+    
+    /**
+     * A player's slot is their index in ratings, which holds everyone being replayed
+     */
+    private static Slots slotsOf(final SparseIntArray ratings) {
+        return new Slots() {
+            @Override
+            public int slotOf(int playerId) {
+                return ratings.indexOfKey(playerId);
+            }
+        };
+    }
+    
+    private Writer writerFor(final SparseIntArray ratings) {
+        return new Writer() {
+            @Override
+            public int writeBatch(Batch batch, int[] running) {
+                return RatingReplayer.this.writeBatch(batch, running, ratings);
+            }
+            
+            @Override
+            public void writeCheckpoint(int slot, long period, double deviation, double volatility) {
+                insertCheckpoint(ratings.keyAt(slot), period, deviation, volatility);
+            }
+        };
+    }
+    
+    /**
+     * Read each player's deviation, volatility and period from their last checkpoint before a period
+     */
+    private void loadCheckpoints(long firstPeriod, SparseIntArray ratings, PeriodState state) {
+        String query = "SELECT " + DatabaseHelper.COL_PERIOD_PERIOD + ", "
+                + DatabaseHelper.COL_PERIOD_DEVIATION + ", " + DatabaseHelper.COL_PERIOD_VOLATILITY
+                + " FROM " + DatabaseHelper.TABLE_RATING_PERIODS
+                + " WHERE " + DatabaseHelper.COL_PERIOD_PLAYER_ID + " = ?"
+                + " AND " + DatabaseHelper.COL_PERIOD_PERIOD + " < ?"
+                + " ORDER BY " + DatabaseHelper.COL_PERIOD_PERIOD + " DESC LIMIT 1";
+        String[] args = {null, String.valueOf(firstPeriod)};
+        for (int i = 0; i < ratings.size(); i++) {
+            args[0] = String.valueOf(ratings.keyAt(i));
+            Cursor cursor = db.rawQuery(query, args);
+            try {
+                if (cursor.moveToFirst()) {
+                    state.lastPeriods[i] = cursor.getLong(0);
+                    state.deviations[i] = cursor.getDouble(1);
+                    state.volatilities[i] = cursor.getDouble(2);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+    
+    private void deleteCheckpoints(long firstPeriod) {
+        db.delete(DatabaseHelper.TABLE_RATING_PERIODS, DatabaseHelper.COL_PERIOD_PERIOD + " >= ?",
+                new String[]{String.valueOf(firstPeriod)});
+    }
+    
+    private static int ratePeriod(Glicko2 glicko2, Batch batch, long period, PeriodState state,
+                                  int[] running, int[] played, Writer writer) {
+        // Deviations grow over the periods each player sat out
+        int playedCount = 0;
+        for (int i = 0; i < batch.count; i++) {
+            if (state.startPeriod(batch.whiteSlots[i], period, running)) {
+                played[playedCount++] = batch.whiteSlots[i];
+            }
+            if (state.startPeriod(batch.blackSlots[i], period, running)) {
+                played[playedCount++] = batch.blackSlots[i];
+            }
+        }
+        glicko2.ratePeriod(state.ratings, state.deviations, state.volatilities, batch.whiteSlots,
+                batch.blackSlots, batch.results, batch.whiteChanges, batch.blackChanges, batch.count);
+        for (int p = 0; p < playedCount; p++) {
+            int slot = played[p];
+            writer.writeCheckpoint(slot, period, state.deviations[slot], state.volatilities[slot]);
+        }
+        return writer.writeBatch(batch, running);
+    }
+    
+    /**
+     * Write a rated batch, walking it from the ratings it started from
+     * @return The number of games whose ELO changes were rewritten
+     */
+    private int writeBatch(Batch batch, int[] running, SparseIntArray ratings) {
+        int rewritten = 0;
+        for (int i = 0; i < batch.count; i++) {
+            int white = batch.whiteSlots[i];
+            int black = batch.blackSlots[i];
+            if (batch.whiteChanges[i] != batch.storedWhiteChanges[i]
+                    || batch.blackChanges[i] != batch.storedBlackChanges[i]) {
+                // Only the deltas change, never the (date, id) order the cursor walks
+                updateDeltas(batch.gameIds[i], batch.whiteChanges[i], batch.blackChanges[i]);
+                rewritten++;
+            }
+            
+            // Ratings before the game shift even when its deltas do not
+            int whiteRating = running[white];
+            int blackRating = running[black];
+            updateHistory(batch.gameIds[i], ratings.keyAt(white), whiteRating, whiteRating + batch.whiteChanges[i]);
+            updateHistory(batch.gameIds[i], ratings.keyAt(black), blackRating, blackRating + batch.blackChanges[i]);
+            running[white] = whiteRating + batch.whiteChanges[i];
+            running[black] = blackRating + batch.blackChanges[i];
+        }
+        return rewritten;
+    }
+    
+    private void updateDeltas(int gameId, int whiteEloChange, int blackEloChange) {
+        if (updateDeltasStatement == null) {
+            updateDeltasStatement = db.compileStatement("UPDATE " + DatabaseHelper.TABLE_GAMES + " SET "
+                    + DatabaseHelper.COL_GAME_WHITE_ELO_CHANGE + " = ?, "
+                    + DatabaseHelper.COL_GAME_BLACK_ELO_CHANGE + " = ?"
+                    + " WHERE " + DatabaseHelper.COL_GAME_ID + " = ?");
+        }
+        updateDeltasStatement.bindLong(1, whiteEloChange);
+        updateDeltasStatement.bindLong(2, blackEloChange);
+        updateDeltasStatement.bindLong(3, gameId);
+        updateDeltasStatement.executeUpdateDelete();
+    }
+    
+    private void updateElo(int playerId, int elo) {
+        if (updateEloStatement == null) {
+            updateEloStatement = db.compileStatement("UPDATE " + DatabaseHelper.TABLE_PLAYERS + " SET "
+                    + DatabaseHelper.COL_PLAYER_ELO + " = ?"
+                    + " WHERE " + DatabaseHelper.COL_PLAYER_ID + " = ?");
+        }
+        updateEloStatement.bindLong(1, elo);
+        updateEloStatement.bindLong(2, playerId);
+        updateEloStatement.executeUpdateDelete();
+    }
+    
+    private void updateGlicko2State(int playerId, int elo, double deviation, double volatility) {
+        if (updateGlicko2StateStatement == null) {
+            updateGlicko2StateStatement = db.compileStatement("UPDATE " + DatabaseHelper.TABLE_PLAYERS + " SET "
+                    + DatabaseHelper.COL_PLAYER_ELO + " = ?, "
+                    + DatabaseHelper.COL_PLAYER_RATING_DEVIATION + " = ?, "
+                    + DatabaseHelper.COL_PLAYER_VOLATILITY + " = ?"
+                    + " WHERE " + DatabaseHelper.COL_PLAYER_ID + " = ?");
+        }
+        updateGlicko2StateStatement.bindLong(1, elo);
+        updateGlicko2StateStatement.bindDouble(2, deviation);
+        updateGlicko2StateStatement.bindDouble(3, volatility);
+        updateGlicko2StateStatement.bindLong(4, playerId);
+        updateGlicko2StateStatement.executeUpdateDelete();
+    }
+    
+    private void insertCheckpoint(int playerId, long period, double deviation, double volatility) {
+        if (insertCheckpointStatement == null) {
+            insertCheckpointStatement = db.compileStatement("INSERT INTO " + DatabaseHelper.TABLE_RATING_PERIODS + " ("
+                    + DatabaseHelper.COL_PERIOD_PLAYER_ID + ", " + DatabaseHelper.COL_PERIOD_PERIOD + ", "
+                    + DatabaseHelper.COL_PERIOD_DEVIATION + ", " + DatabaseHelper.COL_PERIOD_VOLATILITY
+                    + ") VALUES (?, ?, ?, ?)");
+        }
+        insertCheckpointStatement.bindLong(1, playerId);
+        insertCheckpointStatement.bindLong(2, period);
+        insertCheckpointStatement.bindDouble(3, deviation);
+        insertCheckpointStatement.bindDouble(4, volatility);
+        insertCheckpointStatement.executeInsert();
+    }
+    
+    private void updateHistory(int gameId, int playerId, int ratingBefore, int ratingAfter) {
+        if (updateHistoryStatement == null) {
+            updateHistoryStatement = db.compileStatement("UPDATE " + DatabaseHelper.TABLE_RATING_HISTORY + " SET "
+                    + DatabaseHelper.COL_HISTORY_RATING_BEFORE + " = ?, "
+                    + DatabaseHelper.COL_HISTORY_RATING_AFTER + " = ?"
+                    + " WHERE " + DatabaseHelper.COL_HISTORY_GAME_ID + " = ?"
+                    + " AND " + DatabaseHelper.COL_HISTORY_PLAYER_ID + " = ?");
+        }
+        updateHistoryStatement.bindLong(1, ratingBefore);
+        updateHistoryStatement.bindLong(2, ratingAfter);
+        updateHistoryStatement.bindLong(3, gameId);
+        updateHistoryStatement.bindLong(4, playerId);
+        updateHistoryStatement.executeUpdateDelete();
+    }
+    
+    private static String[] tailArgs(long date, int gameId) {
+        return new String[]{String.valueOf(date), String.valueOf(date), String.valueOf(gameId)};
+    }
+    
+    /**
+     * Maps a player to their slot in the rating arrays
+     */
+    interface Slots {
+        int slotOf(int playerId);
+    }
+    
+    /**
+     * Stores what the replay computes, as it goes
+     */
+    interface Writer {
+        /**
+         * Store a rated batch, walking it from the ratings it started from
+         * @return The number of games whose ELO changes were rewritten
+         */
+        int writeBatch(Batch batch, int[] running);
+        
+        /**
+         * Store a player's deviation and volatility after a period they played in
+         */
+        void writeCheckpoint(int slot, long period, double deviation, double volatility);
+    }
+    
+    /**
+     * Glicko-2 state of every slot, with the last period each slot played in
+     */
+    static final class PeriodState {
+        final int[] ratings;
+        final double[] deviations;
+        final double[] volatilities;
+        final long[] lastPeriods;
+        
+        /**
+         * Start every slot from a rating and the default deviation and volatility, with no period played
+         */
+        PeriodState(int[] ratings) {
+            this.ratings = ratings;
+            deviations = new double[ratings.length];
+            volatilities = new double[ratings.length];
+            lastPeriods = new long[ratings.length];
+            Arrays.fill(deviations, Glicko2.DEFAULT_DEVIATION);
+            Arrays.fill(volatilities, Glicko2.DEFAULT_VOLATILITY);
+            Arrays.fill(lastPeriods, Long.MIN_VALUE);
+        }
+        
+        /**
+         * Bring a player to the start of a period they play in
+         * @return Whether this is the player's first game of the period
+         */
+        boolean startPeriod(int slot, long period, int[] running) {
+            if (lastPeriods[slot] == period) {
+                return false;
+            }
+            if (lastPeriods[slot] != Long.MIN_VALUE) {
+                deviations[slot] = Glicko2.inflateDeviation(deviations[slot], volatilities[slot],
+                        (int) Math.min(period - lastPeriods[slot] - 1, Integer.MAX_VALUE));
+            }
+            lastPeriods[slot] = period;
+            running[slot] = ratings[slot];
+            return true;
+        }
+    }
+    
+    /**
+     * Games being replayed, as player slots and results in primitive arrays that grow as needed
+     */
+    static class Batch {
+        int count;
+        int[] gameIds;
+        int[] whiteSlots;
+        int[] blackSlots;
+        int[] results;
+        int[] storedWhiteChanges;
+        int[] storedBlackChanges;
+        int[] whiteChanges;
+        int[] blackChanges;
+        
+        Batch(int capacity) {
+            allocate(capacity);
+        }
+        
+        void add(Game game, Slots slots) {
+            if (count == gameIds.length) {
+                grow();
+            }
+            gameIds[count] = game.getId();
+            whiteSlots[count] = slots.slotOf(game.getWhitePlayerId());
+            blackSlots[count] = slots.slotOf(game.getBlackPlayerId());
+            results[count] = game.getResult();
+            storedWhiteChanges[count] = game.getWhiteEloChange();
+            storedBlackChanges[count] = game.getBlackEloChange();
+            count++;
+        }
+        
+        void clear() {
+            count = 0;
+        }
+        
+        private void allocate(int capacity) {
+            gameIds = new int[capacity];
+            whiteSlots = new int[capacity];
+            blackSlots = new int[capacity];
+            results = new int[capacity];
+            storedWhiteChanges = new int[capacity];
+            storedBlackChanges = new int[capacity];
+            whiteChanges = new int[capacity];
+            blackChanges = new int[capacity];
+        }
+        
+        private void grow() {
+            int capacity = gameIds.length * 2;
+            gameIds = Arrays.copyOf(gameIds, capacity);
+            whiteSlots = Arrays.copyOf(whiteSlots, capacity);
+            blackSlots = Arrays.copyOf(blackSlots, capacity);
+            results = Arrays.copyOf(results, capacity);
+            storedWhiteChanges = Arrays.copyOf(storedWhiteChanges, capacity);
+            storedBlackChanges = Arrays.copyOf(storedBlackChanges, capacity);
+            whiteChanges = Arrays.copyOf(whiteChanges, capacity);
+            blackChanges = Arrays.copyOf(blackChanges, capacity);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.chessclub.app.database;
+
+import android.database.Cursor;
+
+/**
+ * Maps the current row of a cursor to an object.
+ * Implementations resolve their column positions once, when created for a cursor,
+ * instead of looking each column up by name on every row.
+ */
+interface RowMapper<T> {
+    T map(Cursor cursor);
+}
@@ -117,6 +117,23 @@ public class Game {
         return -1; // No loser (draw)
     }
 
+    public boolean playerWon(int playerId) {
+        return getWinnerId() == playerId;
+    }
+
+    public boolean playerLost(int playerId) {
+        return getLoserId() == playerId;
+    }
+
+    public int getEloChangeForPlayer(int playerId) {
+        if (playerId == whitePlayerId) {
+            return whiteEloChange;
+        } else if (playerId == blackPlayerId) {
+            return blackEloChange;
+        }
+        return 0;
+    }
+
     public String getResultText() {
         if (whiteWon()) {
             return "1-0";
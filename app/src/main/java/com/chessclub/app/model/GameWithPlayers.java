@@ -0,0 +1,48 @@
+package com.chessclub.app.model;
+
+/**
+ * Read model pairing a game with both players' names and current ELO,
+ * loaded in one query so list rows can be bound without further lookups
+ */
+public class GameWithPlayers {
+    private final Game game;
+    private final String whitePlayerName;
+    private final int whitePlayerElo;
+    private final String blackPlayerName;
+    private final int blackPlayerElo;
+
+    public GameWithPlayers(Game game, String whitePlayerName, int whitePlayerElo,
+                           String blackPlayerName, int blackPlayerElo) {
+        this.game = game;
+        this.whitePlayerName = whitePlayerName;
+        this.whitePlayerElo = whitePlayerElo;
+        this.blackPlayerName = blackPlayerName;
+        this.blackPlayerElo = blackPlayerElo;
+    }
+
+    // Getters
+    public Game getGame() {
+        return game;
+    }
+
+    public String getWhitePlayerName() {
+        return whitePlayerName;
+    }
+
+    public int getWhitePlayerElo() {
+        return whitePlayerElo;
+    }
+
+    public String getBlackPlayerName() {
+        return blackPlayerName;
+    }
+
+    public int getBlackPlayerElo() {
+        return blackPlayerElo;
+    }
+
+    // Helper methods
+    public String getOpponentName(int playerId) {
+        return playerId == game.getWhitePlayerId() ? blackPlayerName : whitePlayerName;
+    }
+}
@@ -0,0 +1,187 @@
+package com.chessclub.app.model;
+
+import com.chessclub.app.utils.PlayerNames;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Immutable copy of the leaderboard, held in columns so it can be sorted without the database.
+ * The sort order for each key is computed on first use and kept; descending order is the
+ * same order read backwards, so changing key or direction after that costs no sorting.
+ * Players with equal values keep id order, ascending, and so appear in reverse id order
+ * when sorted descending.
+ */
+public final class LeaderboardSnapshot {
+    public static final int SORT_BY_ELO = 0;
+    public static final int SORT_BY_NAME = 1;
+    public static final int SORT_BY_GAMES_PLAYED = 2;
+    public static final int SORT_BY_WINS = 3;
+    public static final int SORT_BY_WIN_RATE = 4;
+    private static final int SORT_KEY_COUNT = 5;
+
+    private final Player[] players;
+    private final int[] ids;
+    private final String[] names;
+    private final int[] elos;
+    private final int[] wins;
+    private final int[] draws;
+    private final int[] losses;
+    private final int[] winRates;
+
+    // Ascending order of row indexes for each key, null until first requested
+    private final int[][] orders = new int[SORT_KEY_COUNT][];
+
+    private LeaderboardSnapshot(Player[] players) {
+        int count = players.length;
+        this.players = players;
+        ids = new int[count];
+        names = new String[count];
+        elos = new int[count];
+        wins = new int[count];
+        draws = new int[count];
+        losses = new int[count];
+        winRates = new int[count];
+        for (int i = 0; i < count; i++) {
+            Player player = players[i];
+            ids[i] = player.getId();
+            names[i] = player.getName();
+            elos[i] = player.getElo();
+            wins[i] = player.getWins();
+            draws[i] = player.getDraws();
+            losses[i] = player.getLosses();
+            winRates[i] = player.getWinRateFixed();
+        }
+    }
+
+    /**
+     * Build a snapshot from leaderboard rows ordered by id. The players must not be modified afterwards.
+     */
+    public static LeaderboardSnapshot of(List<Player> players) {
+        return new LeaderboardSnapshot(players.toArray(new Player[0]));
+    }
+
+    public int size() {
+        return players.length;
+    }
+
+    /**
+     * Get the players sorted by a key, as a read-only view sharing this snapshot's rows
+     */
+    public List<Player> sorted(int sortKey, boolean ascending) {
+        return new SortedView(order(sortKey), ascending);
+    }
+
+    /**
+     * Whether another snapshot holds the same players with the same names and records,
+     * so a reload that found nothing new can keep this one and its sort orders
+     */
+    public boolean hasSameRows(LeaderboardSnapshot other) {
+        return Arrays.equals(ids, other.ids)
+                && Arrays.equals(elos, other.elos)
+                && Arrays.equals(wins, other.wins)
+                && Arrays.equals(draws, other.draws)
+                && Arrays.equals(losses, other.losses)
+                && Arrays.equals(winRates, other.winRates)
+                && Arrays.equals(names, other.names);
+    }
+
+    private synchronized int[] order(int sortKey) {
+        int[] order = orders[sortKey];
+        if (order == null) {
+            order = sortKey == SORT_BY_NAME ? sortByName() : sortByValue(valuesOf(sortKey));
+            orders[sortKey] = order;
+        }
+        return order;
+    }
+
+    private int[] valuesOf(int sortKey) {
+        switch (sortKey) {
+            case SORT_BY_ELO:
+                return elos;
+            case SORT_BY_GAMES_PLAYED:
+                int[] gamesPlayed = new int[players.length];
+                for (int i = 0; i < gamesPlayed.length; i++) {
+                    gamesPlayed[i] = wins[i] + draws[i] + losses[i];
+                }
+                return gamesPlayed;
+            case SORT_BY_WINS:
+                return wins;
+            case SORT_BY_WIN_RATE:
+                return winRates;
+            default:
+                throw new IllegalArgumentException("Unknown sort key: " + sortKey);
+        }
+    }
+
+    /**
+     * Sort row indexes by an int column, packing value and index into one long so that a
+     * primitive sort orders by value and then by row
+     */
+    private static int[] sortByValue(int[] values) {
+        long[] keys = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            keys[i] = ((long) values[i] << 32) | i;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[values.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = (int) keys[i];
+        }
+        return order;
+    }
+
+    /**
+     * Sort row indexes by name in the order of PlayerNames.compare, which matches the NOCASE
+     * name index; each name is folded once up front. The sort is stable, so equal names keep
+     * row order.
+     */
+    private int[] sortByName() {
+        final String[] folded = new String[names.length];
+        Integer[] rows = new Integer[names.length];
+        for (int i = 0; i < rows.length; i++) {
+            folded[i] = PlayerNames.foldCase(names[i]);
+            rows[i] = i;
+        }
+        Arrays.sort(rows, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return PlayerNames.compareFolded(folded[a], folded[b]);
+            }
+        });
+        int[] order = new int[rows.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = rows[i];
+        }
+        return order;
+    }
+
+    /**
+     * Players in a sort order, read forwards or backwards
+     */
+    private final class SortedView extends AbstractList<Player> implements RandomAccess {
+        private final int[] order;
+        private final boolean ascending;
+
+        SortedView(int[] order, boolean ascending) {
+            this.order = order;
+            this.ascending = ascending;
+        }
+
+        @Override
+        public Player get(int index) {
+            if (index < 0 || index >= order.length) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + order.length);
+            }
+            return players[order[ascending ? index : order.length - 1 - index]];
+        }
+
+        @Override
+        public int size() {
+            return order.length;
+        }
+    }
+}
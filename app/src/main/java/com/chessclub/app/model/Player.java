@@ -1,6 +1,9 @@
 package com.chessclub.app.model;
 
 public class Player {
+    // Win rates are stored as fixed-point fractions of WIN_RATE_SCALE, i.e. hundredths of a percent
+    public static final int WIN_RATE_SCALE = 10000;
+
     private int id;
     private String name;
     private String pinHash;
@@ -11,9 +14,16 @@ public class Player {
     private boolean isAdmin;
     private String email;
     private String phone;
+    // Glicko-2 rating state, only maintained for clubs rated with Glicko-2
+    private double ratingDeviation;
+    private double volatility;
+    // Fixed-point win rate, -1 until loaded or first computed from the tallies
+    private int winRate = -1;
 
     public Player() {
         this.elo = 1200; // Default ELO rating
+        this.ratingDeviation = 350.0; // Glicko-2 deviation of an unrated player
+        this.volatility = 0.06; // Glicko-2 default volatility
         this.wins = 0;
         this.draws = 0;
         this.losses = 0;
@@ -31,6 +41,27 @@ public class Player {
         this.isAdmin = isAdmin;
         this.email = email;
         this.phone = phone;
+        this.ratingDeviation = 350.0;
+        this.volatility = 0.06;
+    }
+
+    /**
+     * Copy another player, e.g. to edit a player without changing one held by a list
+     */
+    public Player(Player other) {
+        this.id = other.id;
+        this.name = other.name;
+        this.pinHash = other.pinHash;
+        this.elo = other.elo;
+        this.wins = other.wins;
+        this.draws = other.draws;
+        this.losses = other.losses;
+        this.isAdmin = other.isAdmin;
+        this.email = other.email;
+        this.phone = other.phone;
+        this.ratingDeviation = other.ratingDeviation;
+        this.volatility = other.volatility;
+        this.winRate = other.winRate;
     }
 
     // Getters and Setters
@@ -72,6 +103,7 @@ public class Player {
 
     public void setWins(int wins) {
         this.wins = wins;
+        this.winRate = -1;
     }
 
     public int getDraws() {
@@ -80,6 +112,7 @@ public class Player {
 
     public void setDraws(int draws) {
         this.draws = draws;
+        this.winRate = -1;
     }
 
     public int getLosses() {
@@ -88,6 +121,7 @@ public class Player {
 
     public void setLosses(int losses) {
         this.losses = losses;
+        this.winRate = -1;
     }
 
     public boolean isAdmin() {
@@ -114,17 +148,60 @@ public class Player {
         this.phone = phone;
     }
 
+    public double getRatingDeviation() {
+        return ratingDeviation;
+    }
+
+    public void setRatingDeviation(double ratingDeviation) {
+        this.ratingDeviation = ratingDeviation;
+    }
+
+    public double getVolatility() {
+        return volatility;
+    }
+
+    public void setVolatility(double volatility) {
+        this.volatility = volatility;
+    }
+
     // Helper methods
     public int getGamesPlayed() {
         return wins + draws + losses;
     }
 
+    /**
+     * Get the share of games won, in percent
+     */
     public float getWinRate() {
-        int gamesPlayed = getGamesPlayed();
+        return getWinRateFixed() * 100f / WIN_RATE_SCALE;
+    }
+
+    /**
+     * Get the share of games won as a fraction of WIN_RATE_SCALE, as stored in the players table
+     */
+    public int getWinRateFixed() {
+        if (winRate < 0) {
+            winRate = winRateOf(wins, draws, losses);
+        }
+        return winRate;
+    }
+
+    /**
+     * Set the stored win rate read with the tallies, so it is not computed again
+     */
+    public void setWinRateFixed(int winRate) {
+        this.winRate = winRate;
+    }
+
+    /**
+     * Fixed-point win rate of a record, rounded down; the same as the stored column
+     */
+    public static int winRateOf(int wins, int draws, int losses) {
+        int gamesPlayed = wins + draws + losses;
         if (gamesPlayed == 0) {
             return 0;
         }
-        return (float) wins / gamesPlayed;
+        return (int) ((long) wins * WIN_RATE_SCALE / gamesPlayed);
     }
 
     @Override
@@ -0,0 +1,29 @@
+package com.chessclub.app.model;
+
+/**
+ * A player's place on the leaderboard by rating, e.g. #37 of 412
+ */
+public class PlayerRank {
+    private final int playerId;
+    private final int rank;
+    private final int playerCount;
+
+    public PlayerRank(int playerId, int rank, int playerCount) {
+        this.playerId = playerId;
+        this.rank = rank;
+        this.playerCount = playerCount;
+    }
+
+    // Getters
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getRank() {
+        return rank;
+    }
+
+    public int getPlayerCount() {
+        return playerCount;
+    }
+}
@@ -0,0 +1,29 @@
+package com.chessclub.app.model;
+
+/**
+ * A player's move on the leaderboard after a rating change, e.g. from #12 to #9
+ */
+public class RankMove {
+    private final int playerId;
+    private final int oldRank;
+    private final int newRank;
+
+    public RankMove(int playerId, int oldRank, int newRank) {
+        this.playerId = playerId;
+        this.oldRank = oldRank;
+        this.newRank = newRank;
+    }
+
+    // Getters
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getOldRank() {
+        return oldRank;
+    }
+
+    public int getNewRank() {
+        return newRank;
+    }
+}
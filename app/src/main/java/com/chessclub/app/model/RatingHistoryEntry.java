@@ -0,0 +1,47 @@
+package com.chessclub.app.model;
+
+/**
+ * A player's rating just before and just after one of their games,
+ * one point of a rating chart
+ */
+public class RatingHistoryEntry {
+    private final int playerId;
+    private final int gameId;
+    private final long date;
+    private final int ratingBefore;
+    private final int ratingAfter;
+
+    public RatingHistoryEntry(int playerId, int gameId, long date, int ratingBefore, int ratingAfter) {
+        this.playerId = playerId;
+        this.gameId = gameId;
+        this.date = date;
+        this.ratingBefore = ratingBefore;
+        this.ratingAfter = ratingAfter;
+    }
+
+    // Getters
+    public int getPlayerId() {
+        return playerId;
+    }
+
+    public int getGameId() {
+        return gameId;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    public int getRatingBefore() {
+        return ratingBefore;
+    }
+
+    public int getRatingAfter() {
+        return ratingAfter;
+    }
+
+    // Helper methods
+    public int getRatingChange() {
+        return ratingAfter - ratingBefore;
+    }
+}
@@ -0,0 +1,304 @@
+package com.chessclub.app.repository;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.chessclub.app.database.GameDao;
+import com.chessclub.app.database.LeaderboardIndex;
+import com.chessclub.app.database.PagedGameList;
+import com.chessclub.app.database.PlayerDao;
+import com.chessclub.app.database.QueryLiveData;
+import com.chessclub.app.model.LeaderboardSnapshot;
+import com.chessclub.app.model.Player;
+import com.chessclub.app.model.PlayerRank;
+import com.chessclub.app.utils.AppExecutors;
+
+import java.util.List;
+
+/**
+ * Asynchronous access to players and games for the UI.
+ * Queries run on the shared read pool and return LiveData; list and player queries are
+ * observable and re-run by themselves after a write to their tables. Mutations are
+ * queued on the single writer thread and report their result through LiveData.
+ */
+public class ClubRepository {
+    private static final String TAG = "ClubRepository";
+    private static ClubRepository instance;
+
+    private final Context context;
+    private final PlayerDao playerDao;
+    private final GameDao gameDao;
+    private final AppExecutors executors;
+
+    public static synchronized ClubRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ClubRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ClubRepository(Context context) {
+        this.context = context;
+        playerDao = new PlayerDao(context);
+        gameDao = new GameDao(context);
+        executors = AppExecutors.getInstance();
+    }
+
+    // Player queries
+
+    /**
+     * Get all players, optionally ordered by an SQL ORDER BY clause
+     */
+    public LiveData<List<Player>> getPlayers(String sortBy) {
+        return playerDao.observeAllPlayers(sortBy);
+    }
+
+    /**
+     * Get leaderboard rows sorted by a column; PIN hashes and contact details are not loaded
+     */
+    public LiveData<List<Player>> getPlayersSorted(String column, boolean ascending) {
+        return playerDao.observeLeaderboard(column + (ascending ? " ASC" : " DESC"));
+    }
+
+    /**
+     * Get the leaderboard as a snapshot that sorts in memory; reloaded only when players change
+     */
+    public LiveData<LeaderboardSnapshot> getLeaderboardSnapshot() {
+        return playerDao.observeLeaderboardSnapshot();
+    }
+
+    /**
+     * Get the ID and name of every player, ordered by name
+     */
+    public LiveData<List<Player>> getPlayerNames() {
+        return playerDao.observePlayerNames();
+    }
+
+    /**
+     * Get a player by ID
+     */
+    public LiveData<Player> getPlayer(int playerId) {
+        return playerDao.observePlayer(playerId);
+    }
+
+    /**
+     * Get a player's place on the leaderboard, e.g. #37 of 412
+     */
+    public LiveData<PlayerRank> getPlayerRank(int playerId) {
+        return playerDao.observePlayerRank(playerId);
+    }
+
+    /**
+     * Get the players ranked up to places above and below a player, best first
+     */
+    public LiveData<List<Player>> getPlayersAroundRank(int playerId, int places) {
+        return playerDao.observePlayersAroundRank(playerId, places);
+    }
+
+    /**
+     * Be told when a recorded game moves a player on the leaderboard, and when ranks change
+     * in bulk; called on the writer thread
+     */
+    public void addRankObserver(LeaderboardIndex.RankObserver observer) {
+        playerDao.addRankObserver(observer);
+    }
+
+    public void removeRankObserver(LeaderboardIndex.RankObserver observer) {
+        playerDao.removeRankObserver(observer);
+    }
+
+    /**
+     * Find up to limit players whose names start with the query, then ones containing it,
+     * ignoring case; only IDs, names and ratings are loaded
+     */
+    public LiveData<List<Player>> searchPlayers(final String query, final int limit) {
+        return query(new QueryLiveData.Query<List<Player>>() {
+            @Override
+            public List<Player> run() {
+                return playerDao.searchPlayers(query, limit);
+            }
+        });
+    }
+
+    /**
+     * Get a player's most recent opponents, most recent first, or the club's most recently
+     * active players when playerId is -1
+     */
+    public LiveData<List<Player>> getRecentOpponents(final int playerId, final int limit) {
+        return query(new QueryLiveData.Query<List<Player>>() {
+            @Override
+            public List<Player> run() {
+                return playerDao.getRecentOpponents(playerId, limit);
+            }
+        });
+    }
+
+    /**
+     * Check a player's PIN
+     */
+    public LiveData<Boolean> authenticatePlayer(final int playerId, final String pin) {
+        return query(new QueryLiveData.Query<Boolean>() {
+            @Override
+            public Boolean run() {
+                return playerDao.authenticatePlayer(playerId, pin);
+            }
+        });
+    }
+
+    // Game queries
+
+    /**
+     * Get all games with player names, newest first, loaded page by page.
+     * The caller must close the list when done with it.
+     */
+    public PagedGameList getAllGames() {
+        return new PagedGameList(context, -1);
+    }
+
+    /**
+     * Get a player's games with player names, newest first, loaded page by page.
+     * The caller must close the list when done with it.
+     */
+    public PagedGameList getPlayerGames(int playerId) {
+        return new PagedGameList(context, playerId);
+    }
+
+    // Mutations
+
+    /**
+     * Record a game and update both players' ratings
+     */
+    public LiveData<Long> createGame(final int whitePlayerId, final int blackPlayerId, final int result) {
+        return write(new QueryLiveData.Query<Long>() {
+            @Override
+            public Long run() {
+                return gameDao.createGame(whitePlayerId, blackPlayerId, result);
+            }
+        });
+    }
+
+    /**
+     * Delete a game and revert its effect on player stats
+     */
+    public LiveData<Boolean> deleteGame(final int gameId) {
+        return write(new QueryLiveData.Query<Boolean>() {
+            @Override
+            public Boolean run() {
+                return gameDao.deleteGame(gameId);
+            }
+        });
+    }
+
+    /**
+     * Correct a game's result and replay the ratings that depend on it
+     */
+    public LiveData<Boolean> updateGameResult(final int gameId, final int result) {
+        return write(new QueryLiveData.Query<Boolean>() {
+            @Override
+            public Boolean run() {
+                return gameDao.updateGameResult(gameId, result);
+            }
+        });
+    }
+
+    /**
+     * Add a player
+     */
+    public LiveData<Long> addPlayer(final Player player) {
+        return write(new QueryLiveData.Query<Long>() {
+            @Override
+            public Long run() {
+                return playerDao.addPlayer(player);
+            }
+        });
+    }
+
+    /**
+     * Update a player
+     */
+    public LiveData<Boolean> updatePlayer(final Player player) {
+        return write(new QueryLiveData.Query<Boolean>() {
+            @Override
+            public Boolean run() {
+                return playerDao.updatePlayer(player);
+            }
+        });
+    }
+
+    /**
+     * Delete a player without games
+     */
+    public LiveData<Boolean> deletePlayer(final int playerId) {
+        return write(new QueryLiveData.Query<Boolean>() {
+            @Override
+            public Boolean run() {
+                return playerDao.deletePlayer(playerId);
+            }
+        });
+    }
+
+    /**
+     * Change a player's PIN
+     */
+    public LiveData<Boolean> changePlayerPin(final int playerId, final String newPin) {
+        return write(new QueryLiveData.Query<Boolean>() {
+            @Override
+            public Boolean run() {
+                return playerDao.changePlayerPin(playerId, newPin);
+            }
+        });
+    }
+
+    /**
+     * Get how the club is rated, DatabaseHelper.RATING_MODE_ELO or RATING_MODE_GLICKO2
+     */
+    public LiveData<Integer> getRatingMode() {
+        return query(new QueryLiveData.Query<Integer>() {
+            @Override
+            public Integer run() {
+                return gameDao.getRatingMode();
+            }
+        });
+    }
+
+    /**
+     * Switch the club between Elo and Glicko-2 (DatabaseHelper.RATING_MODE_*), re-rating all games
+     */
+    public LiveData<Boolean> setRatingMode(final int mode) {
+        return write(new QueryLiveData.Query<Boolean>() {
+            @Override
+            public Boolean run() {
+                gameDao.setRatingMode(mode);
+                return true;
+            }
+        });
+    }
+
+    private <T> LiveData<T> query(QueryLiveData.Query<T> query) {
+        return QueryLiveData.of(executors.diskRead(), query);
+    }
+
+    /**
+     * Queue a mutation on the writer thread. Writes are never cancelled once queued.
+     * A mutation that throws is rolled back by its transaction, logged, and reported as null,
+     * so observers can tell it failed and the writer thread carries on with the next write.
+     */
+    private <T> LiveData<T> write(final QueryLiveData.Query<T> mutation) {
+        final MutableLiveData<T> result = new MutableLiveData<>();
+        executors.diskWrite().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result.postValue(mutation.run());
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Write failed", e);
+                    result.postValue(null);
+                }
+            }
+        });
+        return result;
+    }
+}
@@ -1,17 +1,24 @@
 package com.chessclub.app.ui.admin;
 
+import android.app.AlertDialog;
+import android.content.DialogInterface;
 import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.view.Menu;
 import android.view.MenuItem;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.viewpager.widget.ViewPager;
 
 import com.chessclub.app.R;
 import com.chessclub.app.database.DatabaseHelper;
-import com.chessclub.app.database.PlayerDao;
+import com.chessclub.app.model.Player;
+import com.chessclub.app.repository.ClubRepository;
 import com.google.android.material.tabs.TabLayout;
 
 /**
@@ -31,11 +38,31 @@ public class AdminActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         
         // Check if user is admin
-        if (!isCurrentUserAdmin()) {
-            finish(); // Close activity if not admin
+        int userId = getLoggedInUserId();
+        if (userId == -1) {
+            finish(); // Close activity if not logged in
             return;
         }
         
+        // Load the user off the main thread and only show the panel to admins
+        final LiveData<Player> user = ClubRepository.getInstance(this).getPlayer(userId);
+        user.observe(this, new Observer<Player>() {
+            @Override
+            public void onChanged(Player player) {
+                user.removeObserver(this);
+                if (player == null || !player.isAdmin()) {
+                    finish(); // Close activity if not admin
+                } else {
+                    setupViews();
+                }
+            }
+        });
+    }
+
+    /**
+     * Set up the admin panel once the user is known to be an admin
+     */
+    private void setupViews() {
         setContentView(R.layout.activity_admin);
         
         // Initialize views
@@ -53,19 +80,12 @@ public class AdminActivity extends AppCompatActivity {
     }
 
     /**
-     * Check if current user is an admin
-     * @return true if admin, false otherwise
+     * Get the logged in user's ID
+     * @return The user ID, or -1 if nobody is logged in
      */
-    private boolean isCurrentUserAdmin() {
+    private int getLoggedInUserId() {
         SharedPreferences prefs = getSharedPreferences(PREF_NAME, MODE_PRIVATE);
-        int userId = prefs.getInt(KEY_LOGGED_IN_USER_ID, -1);
-        
-        if (userId == -1) {
-            return false;
-        }
-        
-        PlayerDao playerDao = DatabaseHelper.getInstance(this).getPlayerDao();
-        return playerDao.isPlayerAdmin(userId);
+        return prefs.getInt(KEY_LOGGED_IN_USER_ID, -1);
     }
 
     /**
@@ -83,15 +103,70 @@ public class AdminActivity extends AppCompatActivity {
         tabLayout.setupWithViewPager(viewPager);
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.admin_menu, menu);
+        return true;
+    }
+
     @Override
     public boolean onOptionsItemSelected(@NonNull MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
             onBackPressed();
             return true;
         }
+        if (item.getItemId() == R.id.action_rating_mode) {
+            showRatingModeChoice();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Read the club's rating mode off the main thread, then let the admin pick another
+     */
+    private void showRatingModeChoice() {
+        final LiveData<Integer> mode = ClubRepository.getInstance(this).getRatingMode();
+        mode.observe(this, new Observer<Integer>() {
+            @Override
+            public void onChanged(final Integer current) {
+                mode.removeObserver(this);
+                String[] modes = {getString(R.string.rating_mode_elo), getString(R.string.rating_mode_glicko2)};
+                int checked = current == DatabaseHelper.RATING_MODE_GLICKO2 ? 1 : 0;
+                new AlertDialog.Builder(AdminActivity.this)
+                        .setTitle(R.string.rating_mode)
+                        .setSingleChoiceItems(modes, checked, new DialogInterface.OnClickListener() {
+                            @Override
+                            public void onClick(DialogInterface dialog, int which) {
+                                dialog.dismiss();
+                                int selected = which == 1
+                                        ? DatabaseHelper.RATING_MODE_GLICKO2 : DatabaseHelper.RATING_MODE_ELO;
+                                if (selected != current) {
+                                    setRatingMode(selected);
+                                }
+                            }
+                        })
+                        .setNegativeButton("Cancel", null)
+                        .show();
+            }
+        });
+    }
+
+    /**
+     * Switch the rating mode; every game is re-rated on the writer thread before this reports back
+     */
+    private void setRatingMode(int mode) {
+        final LiveData<Boolean> change = ClubRepository.getInstance(this).setRatingMode(mode);
+        change.observe(this, new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean changed) {
+                change.removeObserver(this);
+                Toast.makeText(AdminActivity.this, Boolean.TRUE.equals(changed)
+                        ? R.string.rating_mode_changed : R.string.rating_mode_failed, Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
     /**
      * ViewPager adapter for Admin tabs
      */
@@ -13,20 +13,21 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.chessclub.app.R;
-import com.chessclub.app.database.DatabaseHelper;
-import com.chessclub.app.database.GameDao;
-import com.chessclub.app.database.PlayerDao;
+import com.chessclub.app.database.PagedGameList;
 import com.chessclub.app.model.Game;
-import com.chessclub.app.model.Player;
+import com.chessclub.app.model.GameWithPlayers;
+import com.chessclub.app.repository.ClubRepository;
 
 import java.text.SimpleDateFormat;
-import java.util.List;
 import java.util.Locale;
 
 /**
@@ -38,16 +39,13 @@ public class GameManagementFragment extends Fragment {
     private TextView tvEmptyState;
     
     private GameAdminAdapter adapter;
-    private GameDao gameDao;
-    private PlayerDao playerDao;
-    private List<Game> games;
+    private ClubRepository repository;
+    private PagedGameList games;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        DatabaseHelper dbHelper = DatabaseHelper.getInstance(requireContext());
-        gameDao = dbHelper.getGameDao();
-        playerDao = dbHelper.getPlayerDao();
+        repository = ClubRepository.getInstance(requireContext());
     }
 
     @Nullable
@@ -71,36 +69,60 @@ public class GameManagementFragment extends Fragment {
             }
         });
         
+        return view;
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        
         // Load data
         loadGames();
-        
-        return view;
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (games != null) {
+            games.close();
+            games = null;
+        }
     }
 
     /**
-     * Load games from database
+     * Load games from database, page by page as the list scrolls
      */
     private void loadGames() {
-        games = gameDao.getAllGames();
-        
-        if (games.isEmpty()) {
+        if (games != null) {
+            games.refresh();
+            return;
+        }
+        games = repository.getAllGames();
+        adapter = new GameAdminAdapter(games, new GameAdminAdapter.GameAdminListener() {
+            @Override
+            public void onDeleteGame(Game game) {
+                showDeleteGameConfirmation(game);
+            }
+        });
+        recyclerView.setAdapter(adapter);
+        games.isEmpty().observe(getViewLifecycleOwner(), new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean empty) {
+                showGames(empty);
+            }
+        });
+    }
+
+    /**
+     * Show the game list, or the empty state if there are no games
+     */
+    private void showGames(boolean empty) {
+        if (empty) {
             recyclerView.setVisibility(View.GONE);
             tvEmptyState.setVisibility(View.VISIBLE);
         } else {
             recyclerView.setVisibility(View.VISIBLE);
             tvEmptyState.setVisibility(View.GONE);
-            
-            if (adapter == null) {
-                adapter = new GameAdminAdapter(games, playerDao, new GameAdminAdapter.GameAdminListener() {
-                    @Override
-                    public void onDeleteGame(Game game) {
-                        showDeleteGameConfirmation(game);
-                    }
-                });
-                recyclerView.setAdapter(adapter);
-            } else {
-                adapter.updateGames(games);
-            }
         }
         
         if (swipeRefreshLayout.isRefreshing()) {
@@ -127,75 +149,30 @@ public class GameManagementFragment extends Fragment {
     }
 
     /**
-     * Delete a game
+     * Delete a game; the database reverts its ELO and stats changes in the same transaction
      * @param game Game to delete
      */
     private void deleteGame(Game game) {
-        // Get players involved
-        Player whitePlayer = playerDao.getPlayerById(game.getWhitePlayerId());
-        Player blackPlayer = playerDao.getPlayerById(game.getBlackPlayerId());
-        
-        if (whitePlayer == null || blackPlayer == null) {
-            Toast.makeText(getContext(), "Error: Player not found", Toast.LENGTH_SHORT).show();
-            return;
-        }
-        
-        // Revert ELO and stats changes
-        revertGameStats(whitePlayer, blackPlayer, game);
-        
-        // Delete game
-        int rowsAffected = gameDao.deleteGame(game.getId());
-        
-        if (rowsAffected > 0) {
-            Toast.makeText(getContext(), "Game deleted successfully", Toast.LENGTH_SHORT).show();
-            loadGames();
-        } else {
-            Toast.makeText(getContext(), "Failed to delete game", Toast.LENGTH_SHORT).show();
-        }
-    }
-
-    /**
-     * Revert player stats (ELO, wins, losses, draws) after game deletion
-     * @param whitePlayer White player
-     * @param blackPlayer Black player
-     * @param game Game to revert
-     */
-    private void revertGameStats(Player whitePlayer, Player blackPlayer, Game game) {
-        // Revert ELO changes
-        whitePlayer.setElo(whitePlayer.getElo() - game.getWhiteEloChange());
-        blackPlayer.setElo(blackPlayer.getElo() - game.getBlackEloChange());
-        
-        // Decrement games played
-        whitePlayer.setGamesPlayed(whitePlayer.getGamesPlayed() - 1);
-        blackPlayer.setGamesPlayed(blackPlayer.getGamesPlayed() - 1);
-        
-        // Revert win/loss/draw stats
-        switch (game.getResult()) {
-            case WHITE_WIN:
-                whitePlayer.setWins(whitePlayer.getWins() - 1);
-                blackPlayer.setLosses(blackPlayer.getLosses() - 1);
-                break;
-            case BLACK_WIN:
-                blackPlayer.setWins(blackPlayer.getWins() - 1);
-                whitePlayer.setLosses(whitePlayer.getLosses() - 1);
-                break;
-            case DRAW:
-                whitePlayer.setDraws(whitePlayer.getDraws() - 1);
-                blackPlayer.setDraws(blackPlayer.getDraws() - 1);
-                break;
-        }
-        
-        // Update players in database
-        playerDao.updatePlayer(whitePlayer);
-        playerDao.updatePlayer(blackPlayer);
+        final LiveData<Boolean> deletion = repository.deleteGame(game.getId());
+        deletion.observe(getViewLifecycleOwner(), new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean deleted) {
+                deletion.removeObserver(this);
+                if (Boolean.TRUE.equals(deleted)) {
+                    // The observed game list refreshes itself after the write
+                    Toast.makeText(getContext(), "Game deleted successfully", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Failed to delete game", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     /**
-     * Adapter for displaying games in admin view
+     * Adapter for displaying games in admin view, bound from a paged list of games
      */
     public static class GameAdminAdapter extends RecyclerView.Adapter<GameAdminAdapter.ViewHolder> {
-        private List<Game> games;
-        private PlayerDao playerDao;
+        private final PagedGameList games;
         private GameAdminListener listener;
         private SimpleDateFormat dateFormat;
 
@@ -203,11 +180,11 @@ public class GameManagementFragment extends Fragment {
             void onDeleteGame(Game game);
         }
 
-        public GameAdminAdapter(List<Game> games, PlayerDao playerDao, GameAdminListener listener) {
+        public GameAdminAdapter(PagedGameList games, GameAdminListener listener) {
             this.games = games;
-            this.playerDao = playerDao;
             this.listener = listener;
             this.dateFormat = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
+            games.setUpdateCallback(new AdapterListUpdateCallback(this));
         }
 
         @NonNull
@@ -220,19 +197,16 @@ public class GameManagementFragment extends Fragment {
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            Game game = games.get(position);
-            
-            // Get player names
-            Player whitePlayer = playerDao.getPlayerById(game.getWhitePlayerId());
-            Player blackPlayer = playerDao.getPlayerById(game.getBlackPlayerId());
-            
-            if (whitePlayer == null || blackPlayer == null) {
+            GameWithPlayers item = games.get(position);
+            if (item == null) {
+                holder.clear();
                 return;
             }
+            final Game game = item.getGame();
             
             // Set player names
-            holder.tvWhitePlayer.setText(whitePlayer.getName() + " (" + whitePlayer.getElo() + ")");
-            holder.tvBlackPlayer.setText(blackPlayer.getName() + " (" + blackPlayer.getElo() + ")");
+            holder.tvWhitePlayer.setText(item.getWhitePlayerName() + " (" + item.getWhitePlayerElo() + ")");
+            holder.tvBlackPlayer.setText(item.getBlackPlayerName() + " (" + item.getBlackPlayerElo() + ")");
             
             // Set result
             String resultText;
@@ -272,12 +246,7 @@ public class GameManagementFragment extends Fragment {
 
         @Override
         public int getItemCount() {
-            return games == null ? 0 : games.size();
-        }
-
-        public void updateGames(List<Game> newGames) {
-            this.games = newGames;
-            notifyDataSetChanged();
+            return games.size();
         }
 
         static class ViewHolder extends RecyclerView.ViewHolder {
@@ -299,6 +268,19 @@ public class GameManagementFragment extends Fragment {
                 tvBlackEloChange = itemView.findViewById(R.id.tv_black_elo_change);
                 btnDelete = itemView.findViewById(R.id.btn_delete);
             }
+
+            /**
+             * Show an empty placeholder row while its page loads
+             */
+            void clear() {
+                tvWhitePlayer.setText("");
+                tvBlackPlayer.setText("");
+                tvResult.setText("");
+                tvDate.setText("");
+                tvWhiteEloChange.setText("");
+                tvBlackEloChange.setText("");
+                btnDelete.setOnClickListener(null);
+            }
         }
     }
 }
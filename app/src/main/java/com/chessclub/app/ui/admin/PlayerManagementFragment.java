@@ -10,20 +10,24 @@ import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.CheckBox;
 import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.chessclub.app.R;
-import com.chessclub.app.database.DatabaseHelper;
-import com.chessclub.app.database.PlayerDao;
 import com.chessclub.app.model.Player;
+import com.chessclub.app.repository.ClubRepository;
+import com.chessclub.app.ui.rankings.PlayerAdapter;
 import com.chessclub.app.utils.PinHasher;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
@@ -38,13 +42,14 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
     private SwipeRefreshLayout swipeRefreshLayout;
     
     private PlayerAdminAdapter adapter;
-    private PlayerDao playerDao;
+    private ClubRepository repository;
+    private LiveData<List<Player>> playersLiveData;
     private List<Player> players;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        playerDao = DatabaseHelper.getInstance(requireContext()).getPlayerDao();
+        repository = ClubRepository.getInstance(requireContext());
     }
 
     @Nullable
@@ -76,17 +81,38 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
             }
         });
         
+        return view;
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        
         // Load data
         loadPlayers();
-        
-        return view;
     }
 
     /**
      * Load players from database
      */
     private void loadPlayers() {
-        players = playerDao.getAllPlayers();
+        if (playersLiveData != null) {
+            playersLiveData.removeObservers(getViewLifecycleOwner());
+        }
+        playersLiveData = repository.getPlayers(null);
+        playersLiveData.observe(getViewLifecycleOwner(), new Observer<List<Player>>() {
+            @Override
+            public void onChanged(List<Player> loadedPlayers) {
+                showPlayers(loadedPlayers);
+            }
+        });
+    }
+
+    /**
+     * Display loaded players
+     */
+    private void showPlayers(List<Player> loadedPlayers) {
+        players = loadedPlayers;
         
         if (adapter == null) {
             adapter = new PlayerAdminAdapter(players, this);
@@ -186,14 +212,18 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
         player.setAdmin(isAdmin);
         
         // Add to database
-        long playerId = playerDao.addPlayer(player);
-        
-        if (playerId > 0) {
-            Toast.makeText(getContext(), "Player added successfully", Toast.LENGTH_SHORT).show();
-            loadPlayers();
-        } else {
-            Toast.makeText(getContext(), "Failed to add player", Toast.LENGTH_SHORT).show();
-        }
+        final LiveData<Long> insertion = repository.addPlayer(player);
+        insertion.observe(getViewLifecycleOwner(), new Observer<Long>() {
+            @Override
+            public void onChanged(Long playerId) {
+                insertion.removeObserver(this);
+                if (playerId != null && playerId > 0) {
+                    Toast.makeText(getContext(), "Player added successfully", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Failed to add player", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     /**
@@ -244,28 +274,34 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
                     return;
                 }
                 
-                // Update player
-                player.setName(name);
-                player.setEmail(email);
-                player.setPhoneNumber(phone);
-                player.setAdmin(isAdmin);
+                // Edit a copy: the player belongs to the adapter's current list, which must not
+                // change under DiffUtil or keep unsaved values if the update fails
+                Player edited = new Player(player);
+                edited.setName(name);
+                edited.setEmail(email);
+                edited.setPhoneNumber(phone);
+                edited.setAdmin(isAdmin);
                 
                 // Update PIN if provided
                 if (!TextUtils.isEmpty(pin)) {
                     String hashedPin = PinHasher.hashPin(pin);
-                    player.setPinCode(hashedPin);
+                    edited.setPinCode(hashedPin);
                 }
                 
-                // Save to database
-                int rowsAffected = playerDao.updatePlayer(player);
-                
-                if (rowsAffected > 0) {
-                    Toast.makeText(getContext(), "Player updated successfully", Toast.LENGTH_SHORT).show();
-                    loadPlayers();
-                    dialog.dismiss();
-                } else {
-                    Toast.makeText(getContext(), "Failed to update player", Toast.LENGTH_SHORT).show();
-                }
+                // Save to database; the list reloads with the saved player once it is written
+                final LiveData<Boolean> update = repository.updatePlayer(edited);
+                update.observe(getViewLifecycleOwner(), new Observer<Boolean>() {
+                    @Override
+                    public void onChanged(Boolean updated) {
+                        update.removeObserver(this);
+                        if (Boolean.TRUE.equals(updated)) {
+                            Toast.makeText(getContext(), "Player updated successfully", Toast.LENGTH_SHORT).show();
+                            dialog.dismiss();
+                        } else {
+                            Toast.makeText(getContext(), "Failed to update player", Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                });
             }
         });
     }
@@ -293,14 +329,18 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
      * @param player Player to delete
      */
     private void deletePlayer(Player player) {
-        int rowsAffected = playerDao.deletePlayer(player.getId());
-        
-        if (rowsAffected > 0) {
-            Toast.makeText(getContext(), "Player deleted successfully", Toast.LENGTH_SHORT).show();
-            loadPlayers();
-        } else {
-            Toast.makeText(getContext(), "Failed to delete player", Toast.LENGTH_SHORT).show();
-        }
+        final LiveData<Boolean> deletion = repository.deletePlayer(player.getId());
+        deletion.observe(getViewLifecycleOwner(), new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean deleted) {
+                deletion.removeObserver(this);
+                if (Boolean.TRUE.equals(deleted)) {
+                    Toast.makeText(getContext(), "Player deleted successfully", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Failed to delete player", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     @Override
@@ -314,10 +354,9 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
     }
 
     /**
-     * Adapter for displaying players in admin view
+     * Adapter for displaying players in admin view; new lists are diffed on a background thread
      */
-    public static class PlayerAdminAdapter extends RecyclerView.Adapter<PlayerAdminAdapter.ViewHolder> {
-        private List<Player> players;
+    public static class PlayerAdminAdapter extends ListAdapter<Player, PlayerAdminAdapter.ViewHolder> {
         private PlayerAdminListener listener;
 
         public interface PlayerAdminListener {
@@ -326,8 +365,15 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
         }
 
         public PlayerAdminAdapter(List<Player> players, PlayerAdminListener listener) {
-            this.players = players;
+            super(PlayerAdapter.DIFF_CALLBACK);
             this.listener = listener;
+            setHasStableIds(true);
+            submitList(players);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return getItem(position).getId();
         }
 
         @NonNull
@@ -340,7 +386,7 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
 
         @Override
         public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-            Player player = players.get(position);
+            final Player player = getItem(position);
             
             holder.tvName.setText(player.getName());
             holder.tvElo.setText(String.valueOf(player.getElo()));
@@ -374,14 +420,8 @@ public class PlayerManagementFragment extends Fragment implements PlayerAdminAda
             });
         }
 
-        @Override
-        public int getItemCount() {
-            return players == null ? 0 : players.size();
-        }
-
         public void updatePlayers(List<Player> newPlayers) {
-            this.players = newPlayers;
-            notifyDataSetChanged();
+            submitList(newPlayers);
         }
 
         static class ViewHolder extends RecyclerView.ViewHolder {
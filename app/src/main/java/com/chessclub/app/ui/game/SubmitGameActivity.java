@@ -3,27 +3,22 @@ package com.chessclub.app.ui.game;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
-import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 
 import com.chessclub.app.R;
-import com.chessclub.app.database.DatabaseHelper;
-import com.chessclub.app.database.GameDao;
-import com.chessclub.app.database.PlayerDao;
 import com.chessclub.app.model.Game;
 import com.chessclub.app.model.Player;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.chessclub.app.repository.ClubRepository;
+import com.chessclub.app.ui.picker.PlayerPicker;
 
 /**
  * Activity for submitting new chess games
@@ -33,15 +28,13 @@ public class SubmitGameActivity extends AppCompatActivity {
     private static final String KEY_LOGGED_IN_USER_ID = "loggedInUserId";
 
     private Toolbar toolbar;
-    private Spinner spinnerWhitePlayer;
-    private Spinner spinnerBlackPlayer;
+    private PlayerPicker whitePlayerPicker;
+    private PlayerPicker blackPlayerPicker;
     private RadioGroup radioGroupResult;
     private Button btnSubmit;
     private TextView tvError;
     
-    private PlayerDao playerDao;
-    private GameDao gameDao;
-    private List<Player> players;
+    private ClubRepository repository;
     private int whitePlayerId = -1;
     private int blackPlayerId = -1;
     private int currentPlayerId = -1;
@@ -51,10 +44,8 @@ public class SubmitGameActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_submit_game);
         
-        // Initialize database
-        DatabaseHelper dbHelper = DatabaseHelper.getInstance(this);
-        playerDao = dbHelper.getPlayerDao();
-        gameDao = dbHelper.getGameDao();
+        // Initialize database access
+        repository = ClubRepository.getInstance(this);
         
         // Get current user ID
         SharedPreferences prefs = getSharedPreferences(PREF_NAME, MODE_PRIVATE);
@@ -62,8 +53,6 @@ public class SubmitGameActivity extends AppCompatActivity {
         
         // Initialize views
         toolbar = findViewById(R.id.toolbar);
-        spinnerWhitePlayer = findViewById(R.id.spinner_white_player);
-        spinnerBlackPlayer = findViewById(R.id.spinner_black_player);
         radioGroupResult = findViewById(R.id.radio_group_result);
         btnSubmit = findViewById(R.id.btn_submit);
         tvError = findViewById(R.id.tv_error);
@@ -73,11 +62,11 @@ public class SubmitGameActivity extends AppCompatActivity {
         getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         getSupportActionBar().setTitle("Submit Game");
         
-        // Load players for spinners
-        loadPlayers();
+        // Set up player search
+        setupPlayerPickers();
         
-        // Set up spinner listeners
-        setupSpinnerListeners();
+        // Default the white player to the current user
+        loadCurrentPlayer();
         
         // Set up submit button
         btnSubmit.setOnClickListener(new View.OnClickListener() {
@@ -89,76 +78,44 @@ public class SubmitGameActivity extends AppCompatActivity {
     }
 
     /**
-     * Load players from database and populate spinners
+     * Set up search pickers for both players, with the current user's recent opponents first
      */
-    private void loadPlayers() {
-        players = playerDao.getAllPlayers();
-        
-        if (players.isEmpty()) {
-            showError("No players found in the system");
-            btnSubmit.setEnabled(false);
-            return;
-        }
-        
-        // Create adapters for spinners
-        List<String> playerNames = new ArrayList<>();
-        for (Player player : players) {
-            playerNames.add(player.getName() + " (" + player.getElo() + ")");
-        }
-        
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(
-                this, android.R.layout.simple_spinner_item, playerNames);
-        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        
-        spinnerWhitePlayer.setAdapter(adapter);
-        spinnerBlackPlayer.setAdapter(adapter);
-        
-        // Try to set current user as white player by default
-        if (currentPlayerId != -1) {
-            for (int i = 0; i < players.size(); i++) {
-                if (players.get(i).getId() == currentPlayerId) {
-                    spinnerWhitePlayer.setSelection(i);
-                    break;
-                }
-            }
-        }
-        
-        // Set opponent as black player (next player in list)
-        if (players.size() > 1) {
-            int nextIndex = (spinnerWhitePlayer.getSelectedItemPosition() + 1) % players.size();
-            spinnerBlackPlayer.setSelection(nextIndex);
-        }
+    private void setupPlayerPickers() {
+        whitePlayerPicker = new PlayerPicker(findViewById(R.id.picker_white_player), this, repository,
+                new PlayerPicker.OnPlayerSelectedListener() {
+                    @Override
+                    public void onPlayerSelected(Player player) {
+                        whitePlayerId = player != null ? player.getId() : -1;
+                        validatePlayerSelection();
+                    }
+                });
+        blackPlayerPicker = new PlayerPicker(findViewById(R.id.picker_black_player), this, repository,
+                new PlayerPicker.OnPlayerSelectedListener() {
+                    @Override
+                    public void onPlayerSelected(Player player) {
+                        blackPlayerId = player != null ? player.getId() : -1;
+                        validatePlayerSelection();
+                    }
+                });
+        whitePlayerPicker.pinRecentOpponents(currentPlayerId);
+        blackPlayerPicker.pinRecentOpponents(currentPlayerId);
     }
 
     /**
-     * Set up listeners for player selection spinners
+     * Pick the current user as the white player unless a player was already picked
      */
-    private void setupSpinnerListeners() {
-        spinnerWhitePlayer.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            @Override
-            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                whitePlayerId = players.get(position).getId();
-                validatePlayerSelection();
-            }
-
-            @Override
-            public void onNothingSelected(AdapterView<?> parent) {
-                whitePlayerId = -1;
-                validatePlayerSelection();
-            }
-        });
-
-        spinnerBlackPlayer.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            @Override
-            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                blackPlayerId = players.get(position).getId();
-                validatePlayerSelection();
-            }
-
+    private void loadCurrentPlayer() {
+        if (currentPlayerId == -1) {
+            return;
+        }
+        final LiveData<Player> currentPlayer = repository.getPlayer(currentPlayerId);
+        currentPlayer.observe(this, new Observer<Player>() {
             @Override
-            public void onNothingSelected(AdapterView<?> parent) {
-                blackPlayerId = -1;
-                validatePlayerSelection();
+            public void onChanged(Player player) {
+                currentPlayer.removeObserver(this);
+                if (player != null && whitePlayerPicker.getSelectedPlayer() == null) {
+                    whitePlayerPicker.select(player);
+                }
             }
         });
     }
@@ -197,17 +154,34 @@ public class SubmitGameActivity extends AppCompatActivity {
         }
         
         // Determine result
-        Game.Result result;
+        int result;
         if (selectedRadioId == R.id.radio_white_win) {
-            result = Game.Result.WHITE_WIN;
+            result = Game.WHITE_WINS;
         } else if (selectedRadioId == R.id.radio_black_win) {
-            result = Game.Result.BLACK_WIN;
+            result = Game.BLACK_WINS;
         } else {
-            result = Game.Result.DRAW;
+            result = Game.DRAW;
         }
         
-        // Record game in database
-        long gameId = gameDao.recordGameWithEloUpdate(whitePlayerId, blackPlayerId, result);
+        // Record game in database on the writer thread
+        btnSubmit.setEnabled(false);
+        final LiveData<Long> submission = repository.createGame(whitePlayerId, blackPlayerId, result);
+        submission.observe(this, new Observer<Long>() {
+            @Override
+            public void onChanged(Long gameId) {
+                submission.removeObserver(this);
+                // A failed write reports null
+                onGameSubmitted(gameId != null ? gameId : -1);
+            }
+        });
+    }
+
+    /**
+     * Handle the result of recording a game
+     * @param gameId ID of the recorded game, or -1 on failure
+     */
+    private void onGameSubmitted(long gameId) {
+        btnSubmit.setEnabled(true);
         
         if (gameId > 0) {
             // Show success message
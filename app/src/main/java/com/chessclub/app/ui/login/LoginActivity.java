@@ -2,61 +2,63 @@ package com.chessclub.app.ui.login;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.StrictMode;
 import android.view.View;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.EditText;
-import android.widget.Spinner;
 import android.widget.Toast;
 
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
 
+import com.chessclub.app.BuildConfig;
 import com.chessclub.app.MainActivity;
 import com.chessclub.app.R;
-import com.chessclub.app.database.PlayerDao;
 import com.chessclub.app.model.Player;
-
-import java.util.List;
+import com.chessclub.app.repository.ClubRepository;
+import com.chessclub.app.ui.picker.PlayerPicker;
 
 public class LoginActivity extends AppCompatActivity {
     
-    private Spinner spinnerPlayer;
+    private PlayerPicker playerPicker;
     private EditText etPin;
     private Button btnLogin;
     
-    private PlayerDao playerDao;
-    private List<Player> playerList;
+    private ClubRepository repository;
     private Player selectedPlayer;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        
+        // Flag any disk access left on the main thread during development
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+        
         setContentView(R.layout.activity_login);
         
         // Initialize views
-        spinnerPlayer = findViewById(R.id.spinner_player);
         etPin = findViewById(R.id.et_pin);
         btnLogin = findViewById(R.id.btn_login);
         
-        // Initialize DAO
-        playerDao = new PlayerDao(this);
-        
-        // Load players
-        loadPlayers();
+        // Initialize repository
+        repository = ClubRepository.getInstance(this);
         
-        // Set up spinner
-        spinnerPlayer.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
-            @Override
-            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-                selectedPlayer = playerList.get(position);
-            }
-            
-            @Override
-            public void onNothingSelected(AdapterView<?> parent) {
-                selectedPlayer = null;
-            }
-        });
+        // Set up player search; the club's most recently active players are listed first
+        playerPicker = new PlayerPicker(findViewById(R.id.picker_player), this, repository,
+                new PlayerPicker.OnPlayerSelectedListener() {
+                    @Override
+                    public void onPlayerSelected(Player player) {
+                        selectedPlayer = player;
+                    }
+                });
+        playerPicker.pinRecentOpponents(-1);
         
         // Set up login button
         btnLogin.setOnClickListener(new View.OnClickListener() {
@@ -70,20 +72,8 @@ public class LoginActivity extends AppCompatActivity {
     @Override
     protected void onResume() {
         super.onResume();
-        // Reload players in case of changes
-        loadPlayers();
-    }
-    
-    private void loadPlayers() {
-        playerList = playerDao.getAllPlayers("name");
-        
-        // Create adapter
-        ArrayAdapter<Player> adapter = new ArrayAdapter<>(
-                this, android.R.layout.simple_spinner_item, playerList);
-        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
-        
-        // Set adapter
-        spinnerPlayer.setAdapter(adapter);
+        // Search again in case players changed
+        playerPicker.refresh();
     }
     
     private void login() {
@@ -99,22 +89,47 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
         
-        // Authenticate player
-        boolean authenticated = playerDao.authenticatePlayer(selectedPlayer.getId(), pin);
-        
+        // Authenticate player off the main thread
+        final Player player = selectedPlayer;
+        btnLogin.setEnabled(false);
+        final LiveData<Boolean> result = repository.authenticatePlayer(player.getId(), pin);
+        result.observe(this, new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean authenticated) {
+                result.removeObserver(this);
+                btnLogin.setEnabled(true);
+                onAuthenticated(player, authenticated);
+            }
+        });
+    }
+    
+    private void onAuthenticated(Player player, boolean authenticated) {
         if (authenticated) {
             // Clear PIN field
             etPin.setText("");
             
-            // Start MainActivity
-            Intent intent = new Intent(this, MainActivity.class);
-            intent.putExtra("playerId", selectedPlayer.getId());
-            intent.putExtra("isAdmin", selectedPlayer.isAdmin());
-            startActivity(intent);
+            // The login list holds only IDs and names, so load the full player for its admin flag
+            final LiveData<Player> fullPlayer = repository.getPlayer(player.getId());
+            fullPlayer.observe(this, new Observer<Player>() {
+                @Override
+                public void onChanged(Player loggedIn) {
+                    fullPlayer.removeObserver(this);
+                    if (loggedIn != null) {
+                        startMainActivity(loggedIn);
+                    }
+                }
+            });
         } else {
             Toast.makeText(this, "Invalid PIN", Toast.LENGTH_SHORT).show();
             etPin.setError("Invalid PIN");
             etPin.requestFocus();
         }
     }
+    
+    private void startMainActivity(Player player) {
+        Intent intent = new Intent(this, MainActivity.class);
+        intent.putExtra("playerId", player.getId());
+        intent.putExtra("isAdmin", player.isAdmin());
+        startActivity(intent);
+    }
 }
@@ -0,0 +1,45 @@
+package com.chessclub.app.ui.picker;
+
+import com.chessclub.app.model.Player;
+import com.chessclub.app.utils.PlayerNames;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Search results narrowed in memory, kept in the order DatabaseHelper.searchPlayers reads them
+ */
+final class PlayerMatches {
+
+    private PlayerMatches() {
+    }
+
+    /**
+     * Filter a complete page to the matches of a longer query, in the order the database
+     * returns them: names starting with the query, then names containing it, each by name
+     */
+    static List<Player> narrow(List<Player> players, String newQuery) {
+        String folded = PlayerNames.foldCase(newQuery);
+        List<Player> prefixMatches = new ArrayList<>();
+        List<Player> otherMatches = new ArrayList<>();
+        for (Player player : players) {
+            String name = PlayerNames.foldCase(player.getName());
+            if (name.startsWith(folded)) {
+                prefixMatches.add(player);
+            } else if (name.contains(folded)) {
+                otherMatches.add(player);
+            }
+        }
+        // Names containing the query may come from either group of the previous page
+        Collections.sort(otherMatches, new Comparator<Player>() {
+            @Override
+            public int compare(Player a, Player b) {
+                return PlayerNames.compare(a.getName(), b.getName());
+            }
+        });
+        prefixMatches.addAll(otherMatches);
+        return prefixMatches;
+    }
+}
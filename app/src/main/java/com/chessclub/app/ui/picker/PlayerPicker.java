@@ -0,0 +1,241 @@
+package com.chessclub.app.ui.picker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.widget.EditText;
+
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.chessclub.app.R;
+import com.chessclub.app.model.Player;
+import com.chessclub.app.repository.ClubRepository;
+import com.chessclub.app.utils.PlayerNames;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Search-as-you-type player picker, bound to a view_player_picker layout.
+ * The result list only ever holds the pinned players and one page of matches, so the picker
+ * opens in the same time whatever the size of the club. Typing is debounced, and each search
+ * runs on the database read pool against the name index. A query extending the previous one
+ * is narrowed from the previous page in memory when that page already held every match.
+ */
+public class PlayerPicker {
+    private static final long DEBOUNCE_MS = 200;
+    private static final int PAGE_SIZE = 50;
+    private static final int PINNED_COUNT = 5;
+
+    /**
+     * Told when a player is picked, or with null when the pick is cleared by editing the search
+     */
+    public interface OnPlayerSelectedListener {
+        void onPlayerSelected(Player player);
+    }
+
+    private final EditText etSearch;
+    private final RecyclerView recyclerView;
+    private final PlayerPickerAdapter adapter;
+    private final LifecycleOwner owner;
+    private final ClubRepository repository;
+    private final OnPlayerSelectedListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private Player selectedPlayer;
+    private String query = "";
+    // Players shown first when they match, e.g. recent opponents
+    private List<Player> pinnedPlayers = new ArrayList<>();
+    // Last page of matches read from the database, and whether it held every match
+    private String pageQuery;
+    private List<Player> page;
+    private boolean pageComplete;
+    private LiveData<List<Player>> pendingSearch;
+    // Set while the search box is filled in by a pick, so it is not searched
+    private boolean settingText;
+
+    private final Runnable searchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            search();
+        }
+    };
+
+    /**
+     * @param root Root of an included view_player_picker layout
+     */
+    public PlayerPicker(View root, LifecycleOwner owner, ClubRepository repository,
+                        OnPlayerSelectedListener listener) {
+        this.owner = owner;
+        this.repository = repository;
+        this.listener = listener;
+        etSearch = root.findViewById(R.id.et_player_search);
+        recyclerView = root.findViewById(R.id.recycler_player_results);
+
+        adapter = new PlayerPickerAdapter(new PlayerPickerAdapter.OnPlayerClickListener() {
+            @Override
+            public void onPlayerClick(Player player) {
+                select(player);
+            }
+        });
+        recyclerView.setLayoutManager(new LinearLayoutManager(root.getContext()));
+        recyclerView.setAdapter(adapter);
+
+        etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (!settingText) {
+                    onQueryChanged(s.toString().trim());
+                }
+            }
+        });
+        etSearch.setOnFocusChangeListener(new View.OnFocusChangeListener() {
+            @Override
+            public void onFocusChange(View v, boolean hasFocus) {
+                if (hasFocus && selectedPlayer == null) {
+                    open();
+                }
+            }
+        });
+    }
+
+    /**
+     * Pin a player's most recent opponents to the top of the results, or the club's most
+     * recently active players when playerId is -1
+     */
+    public void pinRecentOpponents(int playerId) {
+        final LiveData<List<Player>> recent = repository.getRecentOpponents(playerId, PINNED_COUNT);
+        recent.observe(owner, new Observer<List<Player>>() {
+            @Override
+            public void onChanged(List<Player> players) {
+                recent.removeObserver(this);
+                pinnedPlayers = players;
+                if (page != null) {
+                    showMatches(page);
+                }
+            }
+        });
+    }
+
+    /**
+     * Pick a player, filling in the search box and closing the results
+     */
+    public void select(Player player) {
+        handler.removeCallbacks(searchRunnable);
+        cancelPendingSearch();
+        selectedPlayer = player;
+        settingText = true;
+        etSearch.setText(player.getName());
+        settingText = false;
+        recyclerView.setVisibility(View.GONE);
+        etSearch.clearFocus();
+        listener.onPlayerSelected(player);
+    }
+
+    public Player getSelectedPlayer() {
+        return selectedPlayer;
+    }
+
+    /**
+     * Forget the cached page, e.g. when the screen resumes after players may have changed
+     */
+    public void refresh() {
+        page = null;
+        pageQuery = null;
+        if (recyclerView.getVisibility() == View.VISIBLE) {
+            search();
+        }
+    }
+
+    private void open() {
+        recyclerView.setVisibility(View.VISIBLE);
+        if (page == null) {
+            search();
+        }
+    }
+
+    private void onQueryChanged(String newQuery) {
+        if (selectedPlayer != null) {
+            selectedPlayer = null;
+            listener.onPlayerSelected(null);
+        }
+        query = newQuery;
+        recyclerView.setVisibility(View.VISIBLE);
+        handler.removeCallbacks(searchRunnable);
+        handler.postDelayed(searchRunnable, DEBOUNCE_MS);
+    }
+
+    private void search() {
+        cancelPendingSearch();
+        final String searched = query;
+        if (page != null && pageComplete
+                && PlayerNames.foldCase(searched).startsWith(PlayerNames.foldCase(pageQuery))) {
+            // Every match of the longer query is on the page, which holds at most PAGE_SIZE players
+            setPage(searched, PlayerMatches.narrow(page, searched), true);
+            return;
+        }
+
+        pendingSearch = repository.searchPlayers(searched, PAGE_SIZE);
+        pendingSearch.observe(owner, new Observer<List<Player>>() {
+            @Override
+            public void onChanged(List<Player> players) {
+                cancelPendingSearch();
+                setPage(searched, players, players.size() < PAGE_SIZE);
+            }
+        });
+    }
+
+    /**
+     * Stop waiting for a search; a query still running is cancelled once it loses its observer
+     */
+    private void cancelPendingSearch() {
+        if (pendingSearch != null) {
+            pendingSearch.removeObservers(owner);
+            pendingSearch = null;
+        }
+    }
+
+    private void setPage(String searched, List<Player> players, boolean complete) {
+        pageQuery = searched;
+        page = players;
+        pageComplete = complete;
+        showMatches(players);
+    }
+
+    /**
+     * Show the pinned players matching the query, then the other matches
+     */
+    private void showMatches(List<Player> matches) {
+        String folded = PlayerNames.foldCase(query);
+        List<Player> shown = new ArrayList<>(pinnedPlayers.size() + matches.size());
+        Set<Integer> shownIds = new HashSet<>();
+        for (Player player : pinnedPlayers) {
+            if (PlayerNames.foldCase(player.getName()).contains(folded)) {
+                shown.add(player);
+                shownIds.add(player.getId());
+            }
+        }
+        for (Player player : matches) {
+            if (!shownIds.contains(player.getId())) {
+                shown.add(player);
+            }
+        }
+        adapter.submitList(shown);
+    }
+}
@@ -0,0 +1,90 @@
+package com.chessclub.app.ui.picker;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.chessclub.app.R;
+import com.chessclub.app.model.Player;
+
+import java.util.Objects;
+
+/**
+ * Adapter for the results of a player picker: one row per player with their name and rating
+ */
+public class PlayerPickerAdapter extends ListAdapter<Player, PlayerPickerAdapter.PickViewHolder> {
+
+    /**
+     * Told when a player row is tapped
+     */
+    public interface OnPlayerClickListener {
+        void onPlayerClick(Player player);
+    }
+
+    private static final DiffUtil.ItemCallback<Player> DIFF_CALLBACK = new DiffUtil.ItemCallback<Player>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Player oldItem, @NonNull Player newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Player oldItem, @NonNull Player newItem) {
+            return oldItem.getElo() == newItem.getElo()
+                    && Objects.equals(oldItem.getName(), newItem.getName());
+        }
+    };
+
+    private final OnPlayerClickListener listener;
+
+    public PlayerPickerAdapter(OnPlayerClickListener listener) {
+        super(DIFF_CALLBACK);
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
+    @NonNull
+    @Override
+    public PickViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.item_player_pick, parent, false);
+        return new PickViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PickViewHolder holder, int position) {
+        final Player player = getItem(position);
+        holder.tvName.setText(player.getName());
+        holder.tvElo.setText(String.valueOf(player.getElo()));
+        holder.itemView.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                listener.onPlayerClick(player);
+            }
+        });
+    }
+
+    /**
+     * ViewHolder for player results
+     */
+    static class PickViewHolder extends RecyclerView.ViewHolder {
+        TextView tvName;
+        TextView tvElo;
+
+        public PickViewHolder(@NonNull View itemView) {
+            super(itemView);
+            tvName = itemView.findViewById(R.id.tv_name);
+            tvElo = itemView.findViewById(R.id.tv_elo);
+        }
+    }
+}
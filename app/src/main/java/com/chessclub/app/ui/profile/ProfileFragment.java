@@ -2,6 +2,7 @@ package com.chessclub.app.ui.profile;
 
 import android.app.AlertDialog;
 import android.content.DialogInterface;
+import android.graphics.Typeface;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
@@ -9,26 +10,37 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.LinearLayout;
 import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.chessclub.app.MainActivity;
+import com.chessclub.app.MainViewModel;
 import com.chessclub.app.R;
-import com.chessclub.app.database.DatabaseHelper;
-import com.chessclub.app.database.PlayerDao;
 import com.chessclub.app.model.Player;
+import com.chessclub.app.model.PlayerRank;
+import com.chessclub.app.model.RankMove;
+import com.chessclub.app.repository.ClubRepository;
 import com.chessclub.app.utils.PinHasher;
 
+import java.util.List;
+
 /**
  * Fragment for displaying and editing player profile
  */
 public class ProfileFragment extends Fragment {
     private TextView tvName;
     private TextView tvElo;
+    private TextView tvRank;
+    private TextView tvRankMove;
+    private LinearLayout llPlayersAround;
     private TextView tvStats;
     private TextView tvWinRate;
     private TextView tvGamesPlayed;
@@ -39,14 +51,18 @@ public class ProfileFragment extends Fragment {
     private Button btnLogout;
     
     private Player currentPlayer;
-    private PlayerDao playerDao;
+    private PlayerRank currentRank;
+    private List<Player> playersAround;
+    private ClubRepository repository;
+    private MainViewModel viewModel;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         
         // Initialize database access
-        playerDao = DatabaseHelper.getInstance(requireContext()).getPlayerDao();
+        repository = ClubRepository.getInstance(requireContext());
+        viewModel = new ViewModelProvider(requireActivity()).get(MainViewModel.class);
     }
 
     @Nullable
@@ -57,6 +73,9 @@ public class ProfileFragment extends Fragment {
         // Initialize views
         tvName = view.findViewById(R.id.tv_name);
         tvElo = view.findViewById(R.id.tv_elo);
+        tvRank = view.findViewById(R.id.tv_rank);
+        tvRankMove = view.findViewById(R.id.tv_rank_move);
+        llPlayersAround = view.findViewById(R.id.ll_players_around);
         tvStats = view.findViewById(R.id.tv_stats);
         tvWinRate = view.findViewById(R.id.tv_win_rate);
         tvGamesPlayed = view.findViewById(R.id.tv_games_played);
@@ -66,9 +85,6 @@ public class ProfileFragment extends Fragment {
         btnSaveProfile = view.findViewById(R.id.btn_save_profile);
         btnLogout = view.findViewById(R.id.btn_logout);
         
-        // Load player data
-        loadPlayerData();
-        
         // Set up button listeners
         btnChangePin.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -95,23 +111,48 @@ public class ProfileFragment extends Fragment {
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        loadPlayerData(); // Refresh data when returning to this fragment
-    }
-
-    /**
-     * Load current player data from MainActivity
-     */
-    private void loadPlayerData() {
-        MainActivity activity = (MainActivity) getActivity();
-        if (activity != null) {
-            currentPlayer = activity.getCurrentPlayer();
-            
-            if (currentPlayer != null) {
-                displayPlayerData();
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        
+        // Display the current player cached in the activity-scoped ViewModel
+        viewModel.getCurrentPlayer().observe(getViewLifecycleOwner(), new Observer<Player>() {
+            @Override
+            public void onChanged(Player player) {
+                currentPlayer = player;
+                if (currentPlayer != null) {
+                    displayPlayerData();
+                }
             }
-        }
+        });
+        
+        // Rank comes from the leaderboard index, so it needs no sorted player list
+        viewModel.getCurrentPlayerRank().observe(getViewLifecycleOwner(), new Observer<PlayerRank>() {
+            @Override
+            public void onChanged(PlayerRank rank) {
+                currentRank = rank;
+                if (rank != null) {
+                    tvRank.setText(getString(R.string.rank_of, rank.getRank(), rank.getPlayerCount()));
+                }
+                displayPlayersAround();
+            }
+        });
+        
+        // The window of the leaderboard around the player, also from the index
+        viewModel.getPlayersAroundCurrentPlayer().observe(getViewLifecycleOwner(), new Observer<List<Player>>() {
+            @Override
+            public void onChanged(List<Player> players) {
+                playersAround = players;
+                displayPlayersAround();
+            }
+        });
+        
+        // Told by the rank index when the player's last game moved them
+        viewModel.getCurrentPlayerRankMove().observe(getViewLifecycleOwner(), new Observer<RankMove>() {
+            @Override
+            public void onChanged(RankMove move) {
+                displayRankMove(move);
+            }
+        });
     }
 
     /**
@@ -131,6 +172,50 @@ public class ProfileFragment extends Fragment {
         etPhone.setText(currentPlayer.getPhoneNumber());
     }
 
+    /**
+     * List the players ranked around the current player, with their ranks
+     */
+    private void displayPlayersAround() {
+        llPlayersAround.removeAllViews();
+        if (currentRank == null || playersAround == null) {
+            return;
+        }
+        int index = -1;
+        for (int i = 0; i < playersAround.size(); i++) {
+            if (playersAround.get(i).getId() == currentRank.getPlayerId()) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            return;
+        }
+        
+        // The window holds consecutive ranks
+        int firstRank = currentRank.getRank() - index;
+        for (int i = 0; i < playersAround.size(); i++) {
+            Player player = playersAround.get(i);
+            TextView row = new TextView(requireContext());
+            row.setText(getString(R.string.rank_row, firstRank + i, player.getName(), player.getElo()));
+            if (i == index) {
+                row.setTypeface(null, Typeface.BOLD);
+            }
+            llPlayersAround.addView(row);
+        }
+    }
+
+    /**
+     * Show where the player's last game moved them from, if it moved them
+     */
+    private void displayRankMove(RankMove move) {
+        if (move == null || move.getNewRank() == move.getOldRank()) {
+            tvRankMove.setVisibility(View.GONE);
+            return;
+        }
+        int message = move.getNewRank() < move.getOldRank() ? R.string.rank_move_up : R.string.rank_move_down;
+        tvRankMove.setText(getString(message, move.getOldRank()));
+        tvRankMove.setVisibility(View.VISIBLE);
+    }
+
     /**
      * Show dialog to change PIN
      */
@@ -213,16 +298,19 @@ public class ProfileFragment extends Fragment {
      * @param newPin New PIN
      */
     private void changePin(String newPin) {
-        boolean success = playerDao.updatePlayerPinCode(currentPlayer.getId(), newPin);
-        
-        if (success) {
-            Toast.makeText(getContext(), "PIN changed successfully", Toast.LENGTH_SHORT).show();
-            
-            // Update current player object with new PIN
-            currentPlayer = playerDao.getPlayerById(currentPlayer.getId());
-        } else {
-            Toast.makeText(getContext(), "Failed to change PIN", Toast.LENGTH_SHORT).show();
-        }
+        final LiveData<Boolean> change = repository.changePlayerPin(currentPlayer.getId(), newPin);
+        change.observe(getViewLifecycleOwner(), new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean success) {
+                change.removeObserver(this);
+                if (Boolean.TRUE.equals(success)) {
+                    // The ViewModel reloads the current player after the write
+                    Toast.makeText(getContext(), "PIN changed successfully", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Failed to change PIN", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     /**
@@ -232,18 +320,24 @@ public class ProfileFragment extends Fragment {
         String email = etEmail.getText().toString().trim();
         String phone = etPhone.getText().toString().trim();
         
-        // Update player object
-        currentPlayer.setEmail(email);
-        currentPlayer.setPhoneNumber(phone);
+        // Update a copy, leaving the observed player as loaded until the saved one is delivered
+        Player edited = new Player(currentPlayer);
+        edited.setEmail(email);
+        edited.setPhoneNumber(phone);
         
         // Save to database
-        int rowsAffected = playerDao.updatePlayer(currentPlayer);
-        
-        if (rowsAffected > 0) {
-            Toast.makeText(getContext(), "Profile updated successfully", Toast.LENGTH_SHORT).show();
-        } else {
-            Toast.makeText(getContext(), "Failed to update profile", Toast.LENGTH_SHORT).show();
-        }
+        final LiveData<Boolean> update = repository.updatePlayer(edited);
+        update.observe(getViewLifecycleOwner(), new Observer<Boolean>() {
+            @Override
+            public void onChanged(Boolean updated) {
+                update.removeObserver(this);
+                if (Boolean.TRUE.equals(updated)) {
+                    Toast.makeText(getContext(), "Profile updated successfully", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(getContext(), "Failed to update profile", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
     }
 
     /**
@@ -1,30 +1,64 @@
 package com.chessclub.app.ui.rankings;
 
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.chessclub.app.R;
 import com.chessclub.app.model.Player;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
- * Adapter for displaying player items in a RecyclerView
+ * Adapter for displaying player items in a RecyclerView.
+ * New lists are diffed on a background thread, so a refresh only rebinds players whose
+ * data changed, animates rank changes as moves, and updates just the rank of rows it shifted.
  */
-public class PlayerAdapter extends RecyclerView.Adapter<PlayerAdapter.PlayerViewHolder> {
-    private List<Player> players;
+public class PlayerAdapter extends ListAdapter<Player, PlayerAdapter.PlayerViewHolder> {
+    // Payload for rows whose data is unchanged but whose position in the ranking moved
+    private static final Object PAYLOAD_RANK = new Object();
+
+    /**
+     * Players are the same item if they have the same ID, and unchanged if every shown field matches
+     */
+    public static final DiffUtil.ItemCallback<Player> DIFF_CALLBACK = new DiffUtil.ItemCallback<Player>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Player oldItem, @NonNull Player newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Player oldItem, @NonNull Player newItem) {
+            return oldItem.getElo() == newItem.getElo()
+                    && oldItem.getWins() == newItem.getWins()
+                    && oldItem.getDraws() == newItem.getDraws()
+                    && oldItem.getLosses() == newItem.getLosses()
+                    && oldItem.isAdmin() == newItem.isAdmin()
+                    && Objects.equals(oldItem.getName(), newItem.getName());
+        }
+    };
 
     /**
      * Constructor
      * @param players List of players to display
      */
     public PlayerAdapter(List<Player> players) {
-        this.players = players;
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+        submitList(players);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     @NonNull
@@ -35,9 +69,18 @@ public class PlayerAdapter extends RecyclerView.Adapter<PlayerAdapter.PlayerView
         return new PlayerViewHolder(view);
     }
 
+    @Override
+    public void onBindViewHolder(@NonNull PlayerViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && allRankPayloads(payloads)) {
+            holder.tvRank.setText(String.valueOf(position + 1));
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+
     @Override
     public void onBindViewHolder(@NonNull PlayerViewHolder holder, int position) {
-        Player player = players.get(position);
+        Player player = getItem(position);
         
         // Set position number (ranking)
         holder.tvRank.setText(String.valueOf(position + 1));
@@ -60,18 +103,46 @@ public class PlayerAdapter extends RecyclerView.Adapter<PlayerAdapter.PlayerView
         holder.tvGamesPlayed.setText(String.valueOf(player.getGamesPlayed()));
     }
 
-    @Override
-    public int getItemCount() {
-        return players == null ? 0 : players.size();
-    }
-
     /**
      * Update the adapter with new players data
      * @param newPlayers New list of players
      */
     public void updatePlayers(List<Player> newPlayers) {
-        this.players = newPlayers;
-        notifyDataSetChanged();
+        final List<Player> previous = getCurrentList();
+        submitList(newPlayers, new Runnable() {
+            @Override
+            public void run() {
+                notifyRankShifts(previous);
+            }
+        });
+    }
+
+    /**
+     * Rebind the rank of every player now at a different position than in the previous list.
+     * The diff only rebinds changed players, but the rank shown is positional.
+     */
+    private void notifyRankShifts(List<Player> previous) {
+        SparseIntArray previousPositions = new SparseIntArray(previous.size());
+        for (int i = 0; i < previous.size(); i++) {
+            previousPositions.put(previous.get(i).getId(), i);
+        }
+        
+        List<Player> current = getCurrentList();
+        for (int i = 0; i < current.size(); i++) {
+            int previousPosition = previousPositions.get(current.get(i).getId(), -1);
+            if (previousPosition != -1 && previousPosition != i) {
+                notifyItemChanged(i, PAYLOAD_RANK);
+            }
+        }
+    }
+
+    private static boolean allRankPayloads(List<Object> payloads) {
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_RANK) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
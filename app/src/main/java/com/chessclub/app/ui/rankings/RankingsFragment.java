@@ -12,13 +12,15 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.chessclub.app.MainViewModel;
 import com.chessclub.app.R;
-import com.chessclub.app.database.DatabaseHelper;
-import com.chessclub.app.database.PlayerDao;
+import com.chessclub.app.model.LeaderboardSnapshot;
 import com.chessclub.app.model.Player;
 
 import java.util.List;
@@ -31,7 +33,7 @@ public class RankingsFragment extends Fragment {
     private PlayerAdapter playerAdapter;
     private TextView tvEmptyState;
     
-    private PlayerDao playerDao;
+    private MainViewModel viewModel;
     private List<Player> players;
     
     // Sorting options
@@ -39,6 +41,7 @@ public class RankingsFragment extends Fragment {
     private static final int SORT_BY_NAME = 1;
     private static final int SORT_BY_GAMES = 2;
     private static final int SORT_BY_WINS = 3;
+    private static final int SORT_BY_WIN_RATE = 4;
     
     private int currentSortMethod = SORT_BY_ELO;
     private boolean ascendingOrder = false;
@@ -48,8 +51,8 @@ public class RankingsFragment extends Fragment {
         super.onCreate(savedInstanceState);
         setHasOptionsMenu(true);
         
-        // Initialize database access
-        playerDao = DatabaseHelper.getInstance(requireContext()).getPlayerDao();
+        // Leaderboard is cached in the activity-scoped ViewModel across tab switches
+        viewModel = new ViewModelProvider(requireActivity()).get(MainViewModel.class);
     }
 
     @Nullable
@@ -64,16 +67,23 @@ public class RankingsFragment extends Fragment {
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.addItemDecoration(new DividerItemDecoration(getContext(), DividerItemDecoration.VERTICAL));
         
-        // Load data
-        loadPlayers();
-        
         return view;
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        loadPlayers(); // Refresh data when returning to this fragment
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        
+        // Redraw whenever the cached leaderboard changes
+        viewModel.getLeaderboard().observe(getViewLifecycleOwner(), new Observer<List<Player>>() {
+            @Override
+            public void onChanged(List<Player> loadedPlayers) {
+                showPlayers(loadedPlayers);
+            }
+        });
+        
+        // Load data
+        loadPlayers();
     }
 
     @Override
@@ -122,9 +132,18 @@ public class RankingsFragment extends Fragment {
             }
             loadPlayers();
             return true;
-        } else if (itemId == R.id.action_refresh) {
+        } else if (itemId == R.id.action_sort_win_rate) {
+            if (currentSortMethod == SORT_BY_WIN_RATE) {
+                ascendingOrder = !ascendingOrder;
+            } else {
+                currentSortMethod = SORT_BY_WIN_RATE;
+                ascendingOrder = false; // Default to descending for win rate
+            }
             loadPlayers();
             return true;
+        } else if (itemId == R.id.action_refresh) {
+            viewModel.refreshLeaderboard();
+            return true;
         }
         
         return super.onOptionsItemSelected(item);
@@ -134,27 +153,37 @@ public class RankingsFragment extends Fragment {
      * Load players based on current sort method
      */
     private void loadPlayers() {
-        String sortColumn;
+        int sortKey;
         
-        // Determine sort column
+        // Determine sort key
         switch (currentSortMethod) {
             case SORT_BY_NAME:
-                sortColumn = DatabaseHelper.COLUMN_PLAYER_NAME;
+                sortKey = LeaderboardSnapshot.SORT_BY_NAME;
                 break;
             case SORT_BY_GAMES:
-                sortColumn = DatabaseHelper.COLUMN_PLAYER_GAMES_PLAYED;
+                sortKey = LeaderboardSnapshot.SORT_BY_GAMES_PLAYED;
                 break;
             case SORT_BY_WINS:
-                sortColumn = DatabaseHelper.COLUMN_PLAYER_WINS;
+                sortKey = LeaderboardSnapshot.SORT_BY_WINS;
+                break;
+            case SORT_BY_WIN_RATE:
+                sortKey = LeaderboardSnapshot.SORT_BY_WIN_RATE;
                 break;
             case SORT_BY_ELO:
             default:
-                sortColumn = DatabaseHelper.COLUMN_PLAYER_ELO;
+                sortKey = LeaderboardSnapshot.SORT_BY_ELO;
                 break;
         }
         
-        // Load players with selected sorting
-        players = playerDao.getAllPlayersSorted(sortColumn, ascendingOrder);
+        // Sorted in memory from the cached snapshot; the database is only read when players change
+        viewModel.setLeaderboardOrder(sortKey, ascendingOrder);
+    }
+
+    /**
+     * Display loaded players
+     */
+    private void showPlayers(List<Player> loadedPlayers) {
+        players = loadedPlayers;
         
         if (players.isEmpty()) {
             recyclerView.setVisibility(View.GONE);
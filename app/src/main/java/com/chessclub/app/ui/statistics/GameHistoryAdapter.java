@@ -7,37 +7,37 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.chessclub.app.R;
-import com.chessclub.app.database.PlayerDao;
+import com.chessclub.app.database.PagedGameList;
 import com.chessclub.app.model.Game;
-import com.chessclub.app.model.Player;
+import com.chessclub.app.model.GameWithPlayers;
 
 import java.text.SimpleDateFormat;
-import java.util.List;
 import java.util.Locale;
 
 /**
- * Adapter for displaying game history in a RecyclerView
+ * Adapter for displaying game history in a RecyclerView.
+ * Rows come from a paged list, which loads pages as they are bound and reports
+ * changed ranges to the adapter; rows whose page is still loading show blank.
  */
 public class GameHistoryAdapter extends RecyclerView.Adapter<GameHistoryAdapter.GameViewHolder> {
-    private List<Game> games;
+    private final PagedGameList games;
     private int currentPlayerId;
-    private PlayerDao playerDao;
     private SimpleDateFormat dateFormat;
 
     /**
      * Constructor
-     * @param games List of games
+     * @param games Paged history of the current player's games
      * @param currentPlayerId ID of current player
-     * @param playerDao PlayerDao for player data
      */
-    public GameHistoryAdapter(List<Game> games, int currentPlayerId, PlayerDao playerDao) {
+    public GameHistoryAdapter(PagedGameList games, int currentPlayerId) {
         this.games = games;
         this.currentPlayerId = currentPlayerId;
-        this.playerDao = playerDao;
         this.dateFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
+        games.setUpdateCallback(new AdapterListUpdateCallback(this));
     }
 
     @NonNull
@@ -50,24 +50,15 @@ public class GameHistoryAdapter extends RecyclerView.Adapter<GameHistoryAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull GameViewHolder holder, int position) {
-        Game game = games.get(position);
-        
-        // Get player names
-        Player whitePlayer = playerDao.getPlayerById(game.getWhitePlayerId());
-        Player blackPlayer = playerDao.getPlayerById(game.getBlackPlayerId());
-        
-        if (whitePlayer == null || blackPlayer == null) {
+        GameWithPlayers item = games.get(position);
+        if (item == null) {
+            holder.clear();
             return;
         }
+        Game game = item.getGame();
         
         // Set opponent name (other player)
-        String opponentName;
-        if (currentPlayerId == game.getWhitePlayerId()) {
-            opponentName = blackPlayer.getName();
-        } else {
-            opponentName = whitePlayer.getName();
-        }
-        holder.tvOpponent.setText(opponentName);
+        holder.tvOpponent.setText(item.getOpponentName(currentPlayerId));
         
         // Set result text and color
         String resultText;
@@ -112,7 +103,7 @@ public class GameHistoryAdapter extends RecyclerView.Adapter<GameHistoryAdapter.
 
     @Override
     public int getItemCount() {
-        return games == null ? 0 : games.size();
+        return games.size();
     }
 
     /**
@@ -133,5 +124,16 @@ public class GameHistoryAdapter extends RecyclerView.Adapter<GameHistoryAdapter.
             tvEloChange = itemView.findViewById(R.id.tv_elo_change);
             tvPlayedAs = itemView.findViewById(R.id.tv_played_as);
         }
+
+        /**
+         * Show an empty placeholder row
+         */
+        void clear() {
+            tvOpponent.setText("");
+            tvResult.setText("");
+            tvDate.setText("");
+            tvEloChange.setText("");
+            tvPlayedAs.setText("");
+        }
     }
 }
@@ -10,23 +10,20 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.Observer;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.DividerItemDecoration;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.chessclub.app.MainActivity;
+import com.chessclub.app.MainViewModel;
 import com.chessclub.app.R;
-import com.chessclub.app.database.DatabaseHelper;
-import com.chessclub.app.database.GameDao;
-import com.chessclub.app.database.PlayerDao;
-import com.chessclub.app.model.Game;
+import com.chessclub.app.database.PagedGameList;
 import com.chessclub.app.model.Player;
 
 import org.eazegraph.lib.charts.PieChart;
 import org.eazegraph.lib.models.PieModel;
 
-import java.util.List;
-
 /**
  * Fragment for displaying player statistics and game history
  */
@@ -43,19 +40,16 @@ public class StatisticsFragment extends Fragment {
     
     private GameHistoryAdapter gameHistoryAdapter;
     private Player currentPlayer;
-    private List<Game> playerGames;
+    private PagedGameList playerGames;
     
-    private PlayerDao playerDao;
-    private GameDao gameDao;
+    private MainViewModel viewModel;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         
-        // Initialize database access
-        DatabaseHelper dbHelper = DatabaseHelper.getInstance(requireContext());
-        playerDao = dbHelper.getPlayerDao();
-        gameDao = dbHelper.getGameDao();
+        // Player stats and history are cached in the activity-scoped ViewModel
+        viewModel = new ViewModelProvider(requireActivity()).get(MainViewModel.class);
     }
 
     @Nullable
@@ -78,33 +72,43 @@ public class StatisticsFragment extends Fragment {
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
         recyclerView.addItemDecoration(new DividerItemDecoration(getContext(), DividerItemDecoration.VERTICAL));
         
-        // Load data
-        loadPlayerData();
-        
         return view;
     }
 
     @Override
-    public void onResume() {
-        super.onResume();
-        loadPlayerData(); // Refresh data when returning to this fragment
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        
+        // Display player stats
+        viewModel.getCurrentPlayer().observe(getViewLifecycleOwner(), new Observer<Player>() {
+            @Override
+            public void onChanged(Player player) {
+                currentPlayer = player;
+                if (currentPlayer != null) {
+                    displayPlayerStats();
+                }
+            }
+        });
+        
+        // Display game history, paged in as the list scrolls
+        playerGames = viewModel.getPlayerGames();
+        if (playerGames != null) {
+            gameHistoryAdapter = new GameHistoryAdapter(playerGames, viewModel.getCurrentPlayerId());
+            recyclerView.setAdapter(gameHistoryAdapter);
+            playerGames.isEmpty().observe(getViewLifecycleOwner(), new Observer<Boolean>() {
+                @Override
+                public void onChanged(Boolean empty) {
+                    showGameHistory(empty);
+                }
+            });
+        }
     }
 
-    /**
-     * Load current player data from MainActivity
-     */
-    private void loadPlayerData() {
-        MainActivity activity = (MainActivity) getActivity();
-        if (activity != null) {
-            currentPlayer = activity.getCurrentPlayer();
-            
-            if (currentPlayer != null) {
-                // Display player stats
-                displayPlayerStats();
-                
-                // Load game history
-                loadGameHistory();
-            }
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        if (playerGames != null) {
+            playerGames.setUpdateCallback(null);
         }
     }
 
@@ -151,21 +155,15 @@ public class StatisticsFragment extends Fragment {
     }
 
     /**
-     * Load game history for current player
+     * Show the game history, or the empty state if the player has no games
      */
-    private void loadGameHistory() {
-        playerGames = gameDao.getGamesForPlayer(currentPlayer.getId());
-        
-        if (playerGames.isEmpty()) {
+    private void showGameHistory(boolean empty) {
+        if (empty) {
             recyclerView.setVisibility(View.GONE);
             tvEmptyState.setVisibility(View.VISIBLE);
         } else {
             recyclerView.setVisibility(View.VISIBLE);
             tvEmptyState.setVisibility(View.GONE);
-            
-            // Set up adapter for game history
-            gameHistoryAdapter = new GameHistoryAdapter(playerGames, currentPlayer.getId(), playerDao);
-            recyclerView.setAdapter(gameHistoryAdapter);
         }
     }
 }
@@ -0,0 +1,96 @@
+package com.chessclub.app.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared executors for database work, so nothing touches disk on the main thread.
+ * Reads run on a small bounded pool; all writes go through a single writer thread
+ * so mutations are applied one at a time in submission order.
+ */
+public class AppExecutors {
+    private static final int READ_THREADS = 2;
+
+    private static AppExecutors instance;
+
+    private final ExecutorService diskRead;
+    private final ExecutorService diskWrite;
+    private final Executor mainThread;
+
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    private AppExecutors() {
+        ThreadPoolExecutor readPool = new ThreadPoolExecutor(READ_THREADS, READ_THREADS,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("db-read"));
+        readPool.allowCoreThreadTimeOut(true);
+        diskRead = readPool;
+
+        ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new NamedThreadFactory("db-write"));
+        writer.allowCoreThreadTimeOut(true);
+        diskWrite = writer;
+
+        mainThread = new MainThreadExecutor();
+    }
+
+    /**
+     * Executor for database queries
+     */
+    public ExecutorService diskRead() {
+        return diskRead;
+    }
+
+    /**
+     * Single-threaded executor for database writes
+     */
+    public ExecutorService diskWrite() {
+        return diskWrite;
+    }
+
+    /**
+     * Executor posting to the main thread
+     */
+    public Executor mainThread() {
+        return mainThread;
+    }
+
+    private static class MainThreadExecutor implements Executor {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(Runnable command) {
+            handler.post(command);
+        }
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.chessclub.app.utils;
 
+/**
+ * Static Elo helpers with the default K-factor; rating code should depend on RatingSystem instead.
+ * The double-precision methods are the reference the fixed-point EloRatingSystem is checked
+ * and benchmarked against.
+ */
 public class EloCalculator {
-    private static final int K_FACTOR = 32;
-    private static final double DRAW_SCORE = 0.5;
-    private static final double WIN_SCORE = 1.0;
-    private static final double LOSS_SCORE = 0.0;
+    private static final int K_FACTOR = EloRatingSystem.DEFAULT_K_FACTOR;
+    private static final RatingSystem DEFAULT_SYSTEM = new EloRatingSystem();
 
     /**
      * Calculate the expected score for a player against their opponent
@@ -48,22 +51,6 @@ public class EloCalculator {
      * @return An array with [whiteEloChange, blackEloChange]
      */
     public static int[] calculateGameEloChanges(int whiteRating, int blackRating, int result) {
-        double whiteScore, blackScore;
-        
-        if (result == 1) { // WHITE_WINS
-            whiteScore = WIN_SCORE;
-            blackScore = LOSS_SCORE;
-        } else if (result == 2) { // BLACK_WINS
-            whiteScore = LOSS_SCORE;
-            blackScore = WIN_SCORE;
-        } else { // DRAW
-            whiteScore = DRAW_SCORE;
-            blackScore = DRAW_SCORE;
-        }
-        
-        int whiteChange = calculateEloChange(whiteRating, blackRating, whiteScore);
-        int blackChange = calculateEloChange(blackRating, whiteRating, blackScore);
-        
-        return new int[] {whiteChange, blackChange};
+        return DEFAULT_SYSTEM.rateGame(whiteRating, blackRating, result);
     }
 }
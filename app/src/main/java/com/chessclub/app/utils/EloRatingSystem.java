@@ -0,0 +1,99 @@
+package com.chessclub.app.utils;
+
+import com.chessclub.app.model.Game;
+
+/**
+ * Standard Elo ratings with a fixed K-factor, the club's default rating system.
+ * Expected scores come from a lookup table over the integer rating difference and the
+ * rating changes are computed in 16.16 fixed point, so rating a game costs a table read
+ * and a few integer operations instead of two Math.pow calls. The loser's change is the
+ * exact negation of the winner's, so every game is zero-sum.
+ */
+public class EloRatingSystem implements RatingSystem {
+    public static final int DEFAULT_K_FACTOR = 32;
+
+    // Scores are fixed-point fractions of SCORE_ONE
+    public static final int SCORE_ONE = 1 << 16;
+    private static final int SCORE_HALF = SCORE_ONE / 2;
+
+    // Differences beyond this are clamped: the expected score there is under 1%,
+    // too little to change a rounded rating change at the default K-factor
+    private static final int MAX_DIFFERENCE = 800;
+    // Expected score of the higher rated side, indexed by the absolute rating difference
+    private static final int[] EXPECTED_SCORES = new int[MAX_DIFFERENCE + 1];
+
+    static {
+        for (int difference = 0; difference <= MAX_DIFFERENCE; difference++) {
+            EXPECTED_SCORES[difference] = (int) Math.round(
+                    SCORE_ONE / (1.0 + Math.pow(10.0, -difference / 400.0)));
+        }
+    }
+
+    private final int kFactor;
+
+    public EloRatingSystem() {
+        this(DEFAULT_K_FACTOR);
+    }
+
+    public EloRatingSystem(int kFactor) {
+        this.kFactor = kFactor;
+    }
+
+    public int getKFactor() {
+        return kFactor;
+    }
+
+    /**
+     * Expected score of a player against an opponent, as a fixed-point fraction of SCORE_ONE.
+     * The scores of both sides always add up to exactly SCORE_ONE.
+     */
+    public static int expectedScore(int playerRating, int opponentRating) {
+        int difference = playerRating - opponentRating;
+        if (difference >= 0) {
+            return EXPECTED_SCORES[Math.min(difference, MAX_DIFFERENCE)];
+        }
+        return SCORE_ONE - EXPECTED_SCORES[Math.min(-difference, MAX_DIFFERENCE)];
+    }
+
+    @Override
+    public int[] rateGame(int whiteRating, int blackRating, int result) {
+        int whiteChange = whiteChange(whiteRating, blackRating, result);
+        return new int[] {whiteChange, -whiteChange};
+    }
+
+    @Override
+    public void rateGames(int[] ratings, int[] whiteSlots, int[] blackSlots, int[] results,
+                          int[] whiteChanges, int[] blackChanges, int count) {
+        for (int i = 0; i < count; i++) {
+            int white = whiteSlots[i];
+            int black = blackSlots[i];
+            int whiteChange = whiteChange(ratings[white], ratings[black], results[i]);
+            whiteChanges[i] = whiteChange;
+            blackChanges[i] = -whiteChange;
+            ratings[white] += whiteChange;
+            ratings[black] -= whiteChange;
+        }
+    }
+
+    /**
+     * White's rating change, rounded half away from zero so that black's is its exact negation
+     */
+    private int whiteChange(int whiteRating, int blackRating, int result) {
+        int change = kFactor * (whiteScore(result) - expectedScore(whiteRating, blackRating));
+        if (change >= 0) {
+            return (change + SCORE_HALF) >> 16;
+        }
+        return -((-change + SCORE_HALF) >> 16);
+    }
+
+    private static int whiteScore(int result) {
+        switch (result) {
+            case Game.WHITE_WINS:
+                return SCORE_ONE;
+            case Game.BLACK_WINS:
+                return 0;
+            default:
+                return SCORE_HALF;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.chessclub.app.utils;
+
+import com.chessclub.app.model.Game;
+
+/**
+ * Glicko-2 rating engine (Glickman, "Example of the Glicko-2 system").
+ * Games are rated in rating periods: every game of a period is rated from the ratings at
+ * its start, and each player who played is updated once at its end. Players are addressed
+ * by slot in caller-owned arrays, and all per-period scratch space is kept and reused,
+ * so rating a long history allocates nothing once the arrays have grown to size.
+ * Not thread-safe; use one instance per thread.
+ */
+public class Glicko2 {
+    public static final double DEFAULT_DEVIATION = 350.0;
+    public static final double DEFAULT_VOLATILITY = 0.06;
+    // Constrains volatility change over time; Glickman suggests 0.3 to 1.2
+    public static final double DEFAULT_TAU = 0.5;
+
+    // Conversion between the rating scale and the Glicko-2 scale
+    private static final double SCALE = 173.7178;
+    private static final double CENTER = 1500.0;
+    private static final double CONVERGENCE_TOLERANCE = 0.000001;
+
+    private final double tau;
+
+    // Per-game scratch: each side's g of the opponent and expected score
+    private double[] whiteG = new double[0];
+    private double[] whiteExpected = new double[0];
+    private double[] blackG = new double[0];
+    private double[] blackExpected = new double[0];
+
+    // Per-player scratch, valid for slots stamped with the current period
+    private int[] stamps = new int[0];
+    private double[] varianceSums = new double[0];
+    private double[] scoreSums = new double[0];
+    private double[] newPhiSquared = new double[0];
+    private double[] contributionSums = new double[0];
+    private int[] roundedSums = new int[0];
+    private int[] playedSlots = new int[0];
+    private int period;
+
+    public Glicko2() {
+        this(DEFAULT_TAU);
+    }
+
+    public Glicko2(double tau) {
+        this.tau = tau;
+    }
+
+    /**
+     * Grow a deviation for rating periods in which the player did not play
+     * @param deviation Deviation after the player's last rated period
+     * @param volatility Volatility after the player's last rated period
+     * @param idlePeriods Number of periods without games
+     * @return The deviation at the start of the next period the player plays in
+     */
+    public static double inflateDeviation(double deviation, double volatility, int idlePeriods) {
+        if (idlePeriods <= 0) {
+            return deviation;
+        }
+        double phi = deviation / SCALE;
+        double phiSquared = Math.min(phi * phi + idlePeriods * volatility * volatility,
+                (DEFAULT_DEVIATION / SCALE) * (DEFAULT_DEVIATION / SCALE));
+        return Math.sqrt(phiSquared) * SCALE;
+    }
+
+    /**
+     * Rate one rating period. The arrays describing players are updated in place for every
+     * player who played; the other slots are left untouched. Each game's rating changes are
+     * that game's share of its players' period changes, rounded so that a player's changes
+     * in the period add up exactly to the change of their stored integer rating.
+     * @param ratings Rating of each player slot
+     * @param deviations Rating deviation of each player slot, on the rating scale
+     * @param volatilities Volatility of each player slot
+     * @param whiteSlots Slot of the white player of each game
+     * @param blackSlots Slot of the black player of each game
+     * @param results Result of each game (Game.WHITE_WINS, Game.BLACK_WINS, or Game.DRAW)
+     * @param whiteChanges Receives the white player's rating change for each game
+     * @param blackChanges Receives the black player's rating change for each game
+     * @param count Number of games in the period, from index 0
+     */
+    public void ratePeriod(int[] ratings, double[] deviations, double[] volatilities,
+                           int[] whiteSlots, int[] blackSlots, int[] results,
+                           int[] whiteChanges, int[] blackChanges, int count) {
+        ensureCapacity(ratings.length, count);
+        period++;
+        int playedCount = 0;
+
+        // Expected scores from the ratings at the start of the period
+        for (int i = 0; i < count; i++) {
+            int white = whiteSlots[i];
+            int black = blackSlots[i];
+            double whiteMu = (ratings[white] - CENTER) / SCALE;
+            double blackMu = (ratings[black] - CENTER) / SCALE;
+            whiteG[i] = g(deviations[black] / SCALE);
+            blackG[i] = g(deviations[white] / SCALE);
+            whiteExpected[i] = expected(whiteMu, blackMu, whiteG[i]);
+            blackExpected[i] = expected(blackMu, whiteMu, blackG[i]);
+
+            double whiteScore = whiteScore(results[i]);
+            playedCount = accumulate(white, whiteG[i], whiteExpected[i], whiteScore, playedCount);
+            playedCount = accumulate(black, blackG[i], blackExpected[i], 1.0 - whiteScore, playedCount);
+        }
+
+        // New volatility and deviation of everyone who played
+        for (int p = 0; p < playedCount; p++) {
+            int slot = playedSlots[p];
+            double phi = deviations[slot] / SCALE;
+            double variance = 1.0 / varianceSums[slot];
+            double delta = variance * scoreSums[slot];
+            double sigma = newVolatility(phi, volatilities[slot], variance, delta);
+            double phiStar = phi * phi + sigma * sigma;
+            newPhiSquared[slot] = 1.0 / (1.0 / phiStar + 1.0 / variance);
+            volatilities[slot] = sigma;
+            deviations[slot] = Math.sqrt(newPhiSquared[slot]) * SCALE;
+        }
+
+        // Split each player's rating change over their games, rounding the running sum
+        for (int i = 0; i < count; i++) {
+            double whiteScore = whiteScore(results[i]);
+            whiteChanges[i] = share(whiteSlots[i], whiteG[i] * (whiteScore - whiteExpected[i]));
+            blackChanges[i] = share(blackSlots[i], blackG[i] * ((1.0 - whiteScore) - blackExpected[i]));
+        }
+        for (int p = 0; p < playedCount; p++) {
+            int slot = playedSlots[p];
+            ratings[slot] += roundedSums[slot];
+        }
+    }
+
+    private int accumulate(int slot, double g, double expected, double score, int playedCount) {
+        if (stamps[slot] != period) {
+            stamps[slot] = period;
+            varianceSums[slot] = 0;
+            scoreSums[slot] = 0;
+            contributionSums[slot] = 0;
+            roundedSums[slot] = 0;
+            playedSlots[playedCount++] = slot;
+        }
+        varianceSums[slot] += g * g * expected * (1.0 - expected);
+        scoreSums[slot] += g * (score - expected);
+        return playedCount;
+    }
+
+    private int share(int slot, double weightedScore) {
+        contributionSums[slot] += SCALE * newPhiSquared[slot] * weightedScore;
+        int rounded = (int) Math.round(contributionSums[slot]);
+        int change = rounded - roundedSums[slot];
+        roundedSums[slot] = rounded;
+        return change;
+    }
+
+    /**
+     * Solve for the new volatility with the Illinois variant of regula falsi
+     */
+    private double newVolatility(double phi, double sigma, double variance, double delta) {
+        double phiSquared = phi * phi;
+        double deltaSquared = delta * delta;
+        double a = Math.log(sigma * sigma);
+
+        double lower = a;
+        double upper;
+        if (deltaSquared > phiSquared + variance) {
+            upper = Math.log(deltaSquared - phiSquared - variance);
+        } else {
+            int k = 1;
+            while (volatilityFunction(a - k * tau, a, phiSquared, variance, deltaSquared) < 0) {
+                k++;
+            }
+            upper = a - k * tau;
+        }
+
+        double fLower = volatilityFunction(lower, a, phiSquared, variance, deltaSquared);
+        double fUpper = volatilityFunction(upper, a, phiSquared, variance, deltaSquared);
+        while (Math.abs(upper - lower) > CONVERGENCE_TOLERANCE) {
+            double c = lower + (lower - upper) * fLower / (fUpper - fLower);
+            double fC = volatilityFunction(c, a, phiSquared, variance, deltaSquared);
+            if (fC * fUpper <= 0) {
+                lower = upper;
+                fLower = fUpper;
+            } else {
+                fLower /= 2;
+            }
+            upper = c;
+            fUpper = fC;
+        }
+        return Math.exp(lower / 2);
+    }
+
+    private double volatilityFunction(double x, double a, double phiSquared, double variance,
+                                      double deltaSquared) {
+        double ex = Math.exp(x);
+        double denominator = phiSquared + variance + ex;
+        return ex * (deltaSquared - phiSquared - variance - ex) / (2 * denominator * denominator)
+                - (x - a) / (tau * tau);
+    }
+
+    private static double g(double phi) {
+        return 1.0 / Math.sqrt(1.0 + 3.0 * phi * phi / (Math.PI * Math.PI));
+    }
+
+    private static double expected(double mu, double opponentMu, double opponentG) {
+        return 1.0 / (1.0 + Math.exp(-opponentG * (mu - opponentMu)));
+    }
+
+    private static double whiteScore(int result) {
+        switch (result) {
+            case Game.WHITE_WINS:
+                return 1.0;
+            case Game.BLACK_WINS:
+                return 0.0;
+            default:
+                return 0.5;
+        }
+    }
+
+    private void ensureCapacity(int playerCount, int gameCount) {
+        if (whiteG.length < gameCount) {
+            int size = Math.max(gameCount, whiteG.length * 2);
+            whiteG = new double[size];
+            whiteExpected = new double[size];
+            blackG = new double[size];
+            blackExpected = new double[size];
+        }
+        if (stamps.length < playerCount) {
+            int size = Math.max(playerCount, stamps.length * 2);
+            // Fresh stamps are 0, never the current period once it has been incremented
+            stamps = new int[size];
+            varianceSums = new double[size];
+            scoreSums = new double[size];
+            newPhiSquared = new double[size];
+            contributionSums = new double[size];
+            roundedSums = new int[size];
+            playedSlots = new int[size];
+        }
+    }
+}
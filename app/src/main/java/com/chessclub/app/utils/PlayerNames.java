@@ -0,0 +1,61 @@
+package com.chessclub.app.utils;
+
+/**
+ * Name matching that agrees with the database, where player names are compared with
+ * SQLite's NOCASE collation and LIKE, both of which ignore the case of ASCII letters only
+ */
+public final class PlayerNames {
+
+    private PlayerNames() {
+    }
+
+    /**
+     * Lower-case ASCII letters only, leaving every other character as it is
+     */
+    public static String foldCase(String name) {
+        char[] chars = name.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] >= 'A' && chars[i] <= 'Z') {
+                chars[i] += 'a' - 'A';
+            }
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Compare names as the name index orders them
+     */
+    public static int compare(String a, String b) {
+        return compareFolded(foldCase(a), foldCase(b));
+    }
+
+    /**
+     * Compare names already passed through foldCase. SQLite compares UTF-8 bytes, which is
+     * code point order, so characters above U+FFFF sort after every other character; as
+     * surrogate pairs, String.compareTo would put them before U+E000 to U+FFFF.
+     */
+    public static int compareFolded(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                return codePointRank(x) - codePointRank(y);
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Move surrogates above the other chars, keeping every other order the same
+     */
+    private static int codePointRank(char c) {
+        if (c >= 0xE000) {
+            return c - 0x800;
+        }
+        if (c >= 0xD800) {
+            return c + 0x2000;
+        }
+        return c;
+    }
+}
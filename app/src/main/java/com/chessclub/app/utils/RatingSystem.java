@@ -0,0 +1,32 @@
+package com.chessclub.app.utils;
+
+/**
+ * A way of rating players from game results, e.g. Elo.
+ * Results use the Game constants: Game.WHITE_WINS, Game.BLACK_WINS or Game.DRAW.
+ */
+public interface RatingSystem {
+
+    /**
+     * Calculate the rating changes for both players in one game
+     * @param whiteRating The white player's rating before the game
+     * @param blackRating The black player's rating before the game
+     * @param result The game result
+     * @return An array with [whiteChange, blackChange]
+     */
+    int[] rateGame(int whiteRating, int blackRating, int result);
+
+    /**
+     * Rate a sequence of games in one call, in order, without allocating per game.
+     * Players are addressed by slot in the ratings array, which is updated in place,
+     * so each game is rated from the ratings left by the games before it.
+     * @param ratings Rating of each player slot, updated as games are rated
+     * @param whiteSlots Slot of the white player of each game
+     * @param blackSlots Slot of the black player of each game
+     * @param results Result of each game
+     * @param whiteChanges Receives the white player's rating change for each game
+     * @param blackChanges Receives the black player's rating change for each game
+     * @param count Number of games to rate, from index 0
+     */
+    void rateGames(int[] ratings, int[] whiteSlots, int[] blackSlots, int[] results,
+                   int[] whiteChanges, int[] blackChanges, int count);
+}
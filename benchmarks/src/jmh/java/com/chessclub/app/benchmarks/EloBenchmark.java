@@ -0,0 +1,84 @@
+package com.chessclub.app.benchmarks;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.utils.EloCalculator;
+import com.chessclub.app.utils.EloRatingSystem;
+import com.chessclub.app.utils.RatingSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rating one game: the double-precision Math.pow path against the fixed-point lookup table,
+ * directly and through the EloCalculator facade the app calls
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EloBenchmark {
+    private static final int GAMES = 4096;
+
+    private final int[] whiteRatings = new int[GAMES];
+    private final int[] blackRatings = new int[GAMES];
+    private final int[] results = new int[GAMES];
+    private final RatingSystem fixedPoint = new EloRatingSystem();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < GAMES; i++) {
+            whiteRatings[i] = 800 + random.nextInt(1600);
+            blackRatings[i] = 800 + random.nextInt(1600);
+            results[i] = random.nextInt(3);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public int doublePrecision() {
+        int sum = 0;
+        for (int i = 0; i < GAMES; i++) {
+            double whiteScore = results[i] == Game.WHITE_WINS ? 1.0 : results[i] == Game.BLACK_WINS ? 0.0 : 0.5;
+            sum += EloCalculator.calculateEloChange(whiteRatings[i], blackRatings[i], whiteScore);
+            sum += EloCalculator.calculateEloChange(blackRatings[i], whiteRatings[i], 1.0 - whiteScore);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public int calculateGameEloChanges() {
+        int sum = 0;
+        for (int i = 0; i < GAMES; i++) {
+            int[] changes = EloCalculator.calculateGameEloChanges(whiteRatings[i], blackRatings[i], results[i]);
+            sum += changes[0] - changes[1];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GAMES)
+    public int fixedPoint() {
+        int sum = 0;
+        for (int i = 0; i < GAMES; i++) {
+            int[] changes = fixedPoint.rateGame(whiteRatings[i], blackRatings[i], results[i]);
+            sum += changes[0] - changes[1];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,67 @@
+package com.chessclub.app.benchmarks;
+
+import com.chessclub.app.utils.PinHasher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a PIN at registration and checking one at login
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PinHasherBenchmark {
+    private static final int PINS = 256;
+
+    private final String[] pins = new String[PINS];
+    private final String[] hashes = new String[PINS];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < PINS; i++) {
+            pins[i] = String.format("%04d", random.nextInt(10000));
+            hashes[i] = PinHasher.hashPin(pins[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PINS)
+    public int hashPin() {
+        int sum = 0;
+        for (int i = 0; i < PINS; i++) {
+            sum += PinHasher.hashPin(pins[i]).length();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PINS)
+    public int verifyPin() {
+        int matches = 0;
+        for (int i = 0; i < PINS; i++) {
+            // Half the attempts use another PIN's hash, like mistyped logins
+            String hash = (i & 1) == 0 ? hashes[i] : hashes[(i + 1) % PINS];
+            if (PinHasher.verifyPin(pins[i], hash)) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,97 @@
+package com.chessclub.app.database;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.model.Player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping cursor rows to models, per row, over synthetic in-memory cursors so that only the
+ * mapper is measured: players with every column and with the leaderboard projection, and
+ * games into new objects and into one reused instance.
+ * Lives in the database package because the mappers are package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MapperBenchmark {
+    private static final int ROWS = 1024;
+
+    private SyntheticCursor fullPlayers;
+    private SyntheticCursor leaderboardPlayers;
+    private SyntheticCursor games;
+    private final Game reusedGame = new Game();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        fullPlayers = SyntheticCursor.players(random, ROWS, SyntheticCursor.PLAYER_COLUMNS);
+        leaderboardPlayers = SyntheticCursor.players(random, ROWS, DatabaseHelper.LEADERBOARD_COLUMNS);
+        games = SyntheticCursor.games(random, ROWS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int mapFullPlayers() {
+        return mapPlayers(fullPlayers);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int mapLeaderboardPlayers() {
+        return mapPlayers(leaderboardPlayers);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int mapGames() {
+        games.reset();
+        GameMapper mapper = new GameMapper(games);
+        int sum = 0;
+        while (games.moveToNext()) {
+            Game game = mapper.map(games);
+            sum += game.getWhitePlayerId() + game.getWhiteEloChange();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int fillGames() {
+        games.reset();
+        GameMapper mapper = new GameMapper(games);
+        int sum = 0;
+        while (games.moveToNext()) {
+            Game game = mapper.fill(games, reusedGame);
+            sum += game.getWhitePlayerId() + game.getWhiteEloChange();
+        }
+        return sum;
+    }
+
+    private static int mapPlayers(SyntheticCursor cursor) {
+        cursor.reset();
+        PlayerMapper mapper = new PlayerMapper(cursor);
+        int sum = 0;
+        while (cursor.moveToNext()) {
+            Player player = mapper.map(cursor);
+            sum += player.getElo() + player.getName().length();
+        }
+        return sum;
+    }
+}
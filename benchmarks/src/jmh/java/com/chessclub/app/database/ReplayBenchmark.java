@@ -0,0 +1,90 @@
+package com.chessclub.app.database;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.utils.EloRatingSystem;
+import com.chessclub.app.utils.Glicko2;
+import com.chessclub.app.utils.RatingSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaying the full game history of a generated club through RatingReplayer's rating core:
+ * Elo in fixed-size batches and Glicko-2 in daily rating periods. Only the rating work is
+ * measured; the SQLite reads and writes around it need a device.
+ * Lives in the database package because RatingReplayer is package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReplayBenchmark {
+    private static final int PLAYERS = 500;
+    private static final int START_RATING = 1200;
+
+    // Generated player ids run from 1 to PLAYERS + 1, so each id is its own slot
+    private static final RatingReplayer.Slots SLOTS = new RatingReplayer.Slots() {
+        @Override
+        public int slotOf(int playerId) {
+            return playerId;
+        }
+    };
+
+    // Nothing is stored, so that only the rating work is measured
+    private static final RatingReplayer.Writer NO_WRITES = new RatingReplayer.Writer() {
+        @Override
+        public int writeBatch(RatingReplayer.Batch batch, int[] running) {
+            return 0;
+        }
+
+        @Override
+        public void writeCheckpoint(int slot, long period, double deviation, double volatility) {
+        }
+    };
+
+    @Param({"10000", "100000", "1000000"})
+    public int games;
+
+    private List<Game> history;
+
+    private final RatingSystem elo = new EloRatingSystem();
+    private final Glicko2 glicko2 = new Glicko2();
+    private final TimeZone timeZone = TimeZone.getTimeZone("UTC");
+    private final int[] ratings = new int[PLAYERS + 2];
+
+    @Setup
+    public void setUp() {
+        history = new ClubDataGenerator(42, PLAYERS, games).generateGames();
+    }
+
+    @Benchmark
+    public int eloReplay() {
+        Arrays.fill(ratings, START_RATING);
+        RatingReplayer.rateInBatches(elo, history.iterator(), SLOTS, ratings, NO_WRITES);
+        return ratings[2];
+    }
+
+    @Benchmark
+    public int glicko2Replay() {
+        Arrays.fill(ratings, START_RATING);
+        RatingReplayer.PeriodState state = new RatingReplayer.PeriodState(ratings);
+        RatingReplayer.rateInPeriods(glicko2, history.iterator(), SLOTS, timeZone, state, NO_WRITES);
+        return ratings[2];
+    }
+}
@@ -0,0 +1,404 @@
+package com.chessclub.app.database;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.model.Player;
+import com.chessclub.app.utils.EloCalculator;
+import com.chessclub.app.utils.EloRatingSystem;
+import com.chessclub.app.utils.PinHasher;
+import com.chessclub.app.utils.RatingSystem;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes a synthetic club into a SQLite file with the app's schema, for load and scaling
+ * tests. The same seed always produces the same file.
+ *
+ * Every player has a hidden playing strength, and game results are drawn from the
+ * EloCalculator expected score between the two strengths, with draws likelier between
+ * close players. Activity is skewed: a few members play most of the games. Games are
+ * spread over two club evenings a week, and rated in order with the app's Elo system, so
+ * ratings, win/draw/loss counts and the rating history match what the app would have
+ * recorded. The default admin (PIN 1234) is player 1, like on a fresh install.
+ *
+ * Usage: ClubDataGenerator output.db players games [seed]
+ * Copy the file over the app's database/chessclub.db to use it on a device.
+ */
+public final class ClubDataGenerator {
+    private static final int BATCH_SIZE = 1000;
+    private static final int START_RATING = 1200;
+
+    // Club evenings over at most ten years; big clubs play more games per evening
+    private static final long START_DATE = 1420135200000L; // 2015-01-01 18:00 UTC
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+    private static final long EVENING_MILLIS = 4L * 60 * 60 * 1000;
+    private static final int MAX_EVENINGS = 10 * 52 * 2;
+    private static final int MIN_GAMES_PER_EVENING = 24;
+
+    private static final String[] FIRST_NAMES = {"Alex", "Ana", "Boris", "Chen", "Dara", "Elena",
+            "Farid", "Grace", "Hugo", "Ines", "Jonas", "Kira", "Liam", "Maya", "Nikolai", "Olga",
+            "Pavel", "Quinn", "Rosa", "Sam", "Tara", "Umar", "Vera", "Wen", "Yusuf", "Zoe"};
+    private static final String[] LAST_NAMES = {"Anand", "Byrne", "Costa", "Dubois", "Evans",
+            "Fischer", "Garcia", "Hansen", "Ivanova", "Jensen", "Kowalski", "Larsen", "Moreau",
+            "Nakamura", "Okafor", "Petrov", "Rossi", "Schmidt", "Tanaka", "Usman", "Varga",
+            "Weber", "Xu", "Yilmaz", "Zhang"};
+
+    private final Random random;
+    private final int playerCount;
+    private final int gameCount;
+    private final RatingSystem ratingSystem = new EloRatingSystem();
+
+    // Per player, indexed by id; index 0 is unused and 1 is the admin
+    private final int[] strengths;
+    private final double[] cumulativeActivity;
+    private final int[] ratings;
+    private final int[] wins;
+    private final int[] draws;
+    private final int[] losses;
+
+    // One batch of games waiting to be rated
+    private final int[] whiteIds = new int[BATCH_SIZE];
+    private final int[] blackIds = new int[BATCH_SIZE];
+    private final int[] results = new int[BATCH_SIZE];
+    private final long[] dates = new long[BATCH_SIZE];
+    private final int[] whiteChanges = new int[BATCH_SIZE];
+    private final int[] blackChanges = new int[BATCH_SIZE];
+
+    /**
+     * @param seed Seed of every random choice
+     * @param playerCount Number of players besides the admin, at least 2
+     * @param gameCount Number of games
+     */
+    public ClubDataGenerator(long seed, int playerCount, int gameCount) {
+        if (playerCount < 2) {
+            throw new IllegalArgumentException("A club needs at least 2 players");
+        }
+        this.random = new Random(seed);
+        this.playerCount = playerCount;
+        this.gameCount = gameCount;
+        int size = playerCount + 2;
+        strengths = new int[size];
+        cumulativeActivity = new double[size];
+        ratings = new int[size];
+        wins = new int[size];
+        draws = new int[size];
+        losses = new int[size];
+    }
+
+    public static void main(String[] args) throws SQLException {
+        if (args.length < 3) {
+            System.err.println("Usage: ClubDataGenerator output.db players games [seed]");
+            System.exit(2);
+        }
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 42;
+        ClubDataGenerator generator = new ClubDataGenerator(seed, Integer.parseInt(args[1]),
+                Integer.parseInt(args[2]));
+        long start = System.nanoTime();
+        generator.write(new File(args[0]));
+        System.out.println("Wrote " + args[1] + " players and " + args[2] + " games to " + args[0]
+                + " in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+
+    /**
+     * Generate the club into a new database file, replacing any file already there
+     */
+    public void write(File file) throws SQLException {
+        if (file.exists() && !file.delete()) {
+            throw new SQLException("Cannot replace " + file);
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getPath());
+        try {
+            Statement statement = connection.createStatement();
+            // The file is rebuilt from scratch on any failure, so skip the journal
+            statement.execute("PRAGMA journal_mode = OFF");
+            statement.execute("PRAGMA synchronous = OFF");
+            connection.setAutoCommit(false);
+
+            statement.execute(DatabaseHelper.CREATE_PLAYER_TABLE);
+            statement.execute(DatabaseHelper.CREATE_GAME_TABLE);
+            statement.execute(DatabaseHelper.CREATE_RATING_HISTORY_TABLE);
+            // Generated clubs are Elo rated, so the Glicko-2 checkpoints start empty
+            statement.execute(DatabaseHelper.CREATE_RATING_PERIOD_TABLE);
+            statement.execute(DatabaseHelper.CREATE_SETTINGS_TABLE);
+            statement.execute(DatabaseHelper.INSERT_SETTINGS_ROW);
+
+            writeGames(connection, generateGames());
+            writePlayers(connection);
+
+            // Indexes are cheaper to build once over the loaded tables than to maintain per row
+            for (String index : DatabaseHelper.PLAYER_INDEXES) {
+                statement.execute(index);
+            }
+            for (String index : DatabaseHelper.GAME_INDEXES) {
+                statement.execute(index);
+            }
+            for (String index : DatabaseHelper.RATING_HISTORY_INDEXES) {
+                statement.execute(index);
+            }
+            for (String index : DatabaseHelper.RATING_PERIOD_INDEXES) {
+                statement.execute(index);
+            }
+            statement.execute("PRAGMA user_version = " + DatabaseHelper.DATABASE_VERSION);
+            connection.commit();
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Generate the club's games in memory, in (date, id) order and with the Elo changes that
+     * write stores, e.g. to replay them in a benchmark without a database file.
+     * A generator produces one club: call either this or write, once.
+     */
+    public List<Game> generateGames() {
+        createPlayers();
+        List<Game> games = new ArrayList<>(gameCount);
+        int evenings = Math.max(1, Math.min(MAX_EVENINGS, gameCount / MIN_GAMES_PER_EVENING));
+        long evening = START_DATE;
+        for (int e = 0; e < evenings; e++) {
+            // Spread the games evenly over the evenings, each at a random time in the evening
+            int eveningGames = (int) ((long) gameCount * (e + 1) / evenings - (long) gameCount * e / evenings);
+            long[] times = new long[eveningGames];
+            for (int i = 0; i < eveningGames; i++) {
+                times[i] = evening + (long) (random.nextDouble() * EVENING_MILLIS);
+            }
+            Arrays.sort(times);
+
+            int count = 0;
+            for (int i = 0; i < eveningGames; i++) {
+                addGame(count++, times[i]);
+                if (count == BATCH_SIZE) {
+                    rateBatch(games, count);
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                rateBatch(games, count);
+            }
+            evening = nextEvening(evening, e);
+        }
+        return games;
+    }
+
+    private void createPlayers() {
+        double activity = 0;
+        for (int id = 2; id < strengths.length; id++) {
+            strengths[id] = Math.max(400, Math.min(2600, (int) (1200 + random.nextGaussian() * 250)));
+            // Log-normal activity: most members play now and then, a few play every evening
+            activity += Math.exp(random.nextGaussian() * 1.2);
+            cumulativeActivity[id] = activity;
+        }
+        Arrays.fill(ratings, START_RATING);
+    }
+
+    private void writeGames(Connection connection, List<Game> games) throws SQLException {
+        PreparedStatement insertGame = connection.prepareStatement("INSERT INTO "
+                + DatabaseHelper.TABLE_GAMES + " ("
+                + DatabaseHelper.COL_GAME_ID + ", " + DatabaseHelper.COL_GAME_WHITE_ID + ", "
+                + DatabaseHelper.COL_GAME_BLACK_ID + ", " + DatabaseHelper.COL_GAME_RESULT + ", "
+                + DatabaseHelper.COL_GAME_DATE + ", " + DatabaseHelper.COL_GAME_WHITE_ELO_CHANGE + ", "
+                + DatabaseHelper.COL_GAME_BLACK_ELO_CHANGE + ") VALUES (?, ?, ?, ?, ?, ?, ?)");
+        PreparedStatement insertHistory = connection.prepareStatement("INSERT INTO "
+                + DatabaseHelper.TABLE_RATING_HISTORY + " ("
+                + DatabaseHelper.COL_HISTORY_PLAYER_ID + ", " + DatabaseHelper.COL_HISTORY_GAME_ID + ", "
+                + DatabaseHelper.COL_HISTORY_DATE + ", " + DatabaseHelper.COL_HISTORY_RATING_BEFORE + ", "
+                + DatabaseHelper.COL_HISTORY_RATING_AFTER + ") VALUES (?, ?, ?, ?, ?)");
+        // Walk the rated games again from the start ratings to log each step
+        int[] recorded = new int[ratings.length];
+        Arrays.fill(recorded, START_RATING);
+        try {
+            for (Game game : games) {
+                int white = game.getWhitePlayerId();
+                int black = game.getBlackPlayerId();
+                insertGame.setInt(1, game.getId());
+                insertGame.setInt(2, white);
+                insertGame.setInt(3, black);
+                insertGame.setInt(4, game.getResult());
+                insertGame.setLong(5, game.getDate());
+                insertGame.setInt(6, game.getWhiteEloChange());
+                insertGame.setInt(7, game.getBlackEloChange());
+                insertGame.addBatch();
+
+                addHistory(insertHistory, white, game.getId(), game.getDate(), recorded[white], game.getWhiteEloChange());
+                addHistory(insertHistory, black, game.getId(), game.getDate(), recorded[black], game.getBlackEloChange());
+                recorded[white] += game.getWhiteEloChange();
+                recorded[black] += game.getBlackEloChange();
+                if (game.getId() % BATCH_SIZE == 0) {
+                    insertGame.executeBatch();
+                    insertHistory.executeBatch();
+                }
+            }
+            insertGame.executeBatch();
+            insertHistory.executeBatch();
+        } finally {
+            insertGame.close();
+            insertHistory.close();
+        }
+    }
+
+    private void addGame(int index, long date) {
+        int white = pickPlayer();
+        int black = pickPlayer();
+        while (black == white) {
+            black = pickPlayer();
+        }
+        double whiteExpected = EloCalculator.calculateExpectedScore(strengths[white], strengths[black]);
+        // Draws are likeliest between equal players, up to a quarter of their games
+        double drawChance = 0.25 * (1.0 - Math.abs(2.0 * whiteExpected - 1.0));
+        double roll = random.nextDouble();
+        int result;
+        if (roll < drawChance) {
+            result = Game.DRAW;
+        } else if (roll < drawChance + whiteExpected - drawChance / 2) {
+            result = Game.WHITE_WINS;
+        } else {
+            result = Game.BLACK_WINS;
+        }
+        whiteIds[index] = white;
+        blackIds[index] = black;
+        results[index] = result;
+        dates[index] = date;
+    }
+
+    /**
+     * Pick a player with probability proportional to their activity
+     */
+    private int pickPlayer() {
+        double target = random.nextDouble() * cumulativeActivity[cumulativeActivity.length - 1];
+        int low = 2;
+        int high = cumulativeActivity.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeActivity[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Club evenings are Tuesdays and Fridays, with an evening skipped now and then
+     */
+    private long nextEvening(long evening, int index) {
+        long next = evening + ((index & 1) == 0 ? 3 : 4) * DAY_MILLIS;
+        if (random.nextInt(20) == 0) {
+            next += 7 * DAY_MILLIS;
+        }
+        return next;
+    }
+
+    /**
+     * Rate a batch of games in order and append them to the club's games
+     */
+    private void rateBatch(List<Game> games, int count) {
+        ratingSystem.rateGames(ratings, whiteIds, blackIds, results, whiteChanges, blackChanges, count);
+        for (int i = 0; i < count; i++) {
+            int white = whiteIds[i];
+            int black = blackIds[i];
+            games.add(new Game(games.size() + 1, white, black, results[i], dates[i],
+                    whiteChanges[i], blackChanges[i]));
+            if (results[i] == Game.WHITE_WINS) {
+                wins[white]++;
+                losses[black]++;
+            } else if (results[i] == Game.BLACK_WINS) {
+                losses[white]++;
+                wins[black]++;
+            } else {
+                draws[white]++;
+                draws[black]++;
+            }
+        }
+    }
+
+    private static void addHistory(PreparedStatement insertHistory, int playerId, int gameId, long date,
+                                   int ratingBefore, int change) throws SQLException {
+        insertHistory.setInt(1, playerId);
+        insertHistory.setInt(2, gameId);
+        insertHistory.setLong(3, date);
+        insertHistory.setInt(4, ratingBefore);
+        insertHistory.setInt(5, ratingBefore + change);
+        insertHistory.addBatch();
+    }
+
+    private void writePlayers(Connection connection) throws SQLException {
+        PreparedStatement insertPlayer = connection.prepareStatement("INSERT INTO "
+                + DatabaseHelper.TABLE_PLAYERS + " ("
+                + DatabaseHelper.COL_PLAYER_ID + ", " + DatabaseHelper.COL_PLAYER_NAME + ", "
+                + DatabaseHelper.COL_PLAYER_PIN_HASH + ", " + DatabaseHelper.COL_PLAYER_ELO + ", "
+                + DatabaseHelper.COL_PLAYER_WINS + ", " + DatabaseHelper.COL_PLAYER_DRAWS + ", "
+                + DatabaseHelper.COL_PLAYER_LOSSES + ", " + DatabaseHelper.COL_PLAYER_IS_ADMIN + ", "
+                + DatabaseHelper.COL_PLAYER_EMAIL + ", " + DatabaseHelper.COL_PLAYER_PHONE + ", "
+                + DatabaseHelper.COL_PLAYER_GAMES_PLAYED + ", " + DatabaseHelper.COL_PLAYER_WIN_RATE
+                + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        // Hashing is the slow part of a player row and there are only 10000 PINs
+        String[] pinHashes = new String[10000];
+        try {
+            for (int id = 1; id < ratings.length; id++) {
+                boolean admin = id == 1;
+                int pin = admin ? 1234 : random.nextInt(pinHashes.length);
+                if (pinHashes[pin] == null) {
+                    pinHashes[pin] = PinHasher.hashPin(String.format("%04d", pin));
+                }
+                String name = admin ? "Admin" : playerName(id - 2);
+                insertPlayer.setInt(1, id);
+                insertPlayer.setString(2, name);
+                insertPlayer.setString(3, pinHashes[pin]);
+                insertPlayer.setInt(4, ratings[id]);
+                insertPlayer.setInt(5, wins[id]);
+                insertPlayer.setInt(6, draws[id]);
+                insertPlayer.setInt(7, losses[id]);
+                insertPlayer.setInt(8, admin ? 1 : 0);
+                // Contact details are optional, so only some members have them
+                if (!admin && random.nextInt(2) == 0) {
+                    insertPlayer.setString(9, name.toLowerCase().replace(' ', '.') + "@example.com");
+                } else {
+                    insertPlayer.setNull(9, Types.VARCHAR);
+                }
+                if (!admin && random.nextInt(3) == 0) {
+                    insertPlayer.setString(10, String.format("555-%07d", random.nextInt(10000000)));
+                } else {
+                    insertPlayer.setNull(10, Types.VARCHAR);
+                }
+                insertPlayer.setInt(11, wins[id] + draws[id] + losses[id]);
+                insertPlayer.setInt(12, Player.winRateOf(wins[id], draws[id], losses[id]));
+                insertPlayer.addBatch();
+                if (id % BATCH_SIZE == 0) {
+                    insertPlayer.executeBatch();
+                }
+            }
+            insertPlayer.executeBatch();
+        } finally {
+            insertPlayer.close();
+        }
+    }
+
+    /**
+     * A unique name for the player with the given index, numbered once the combinations run out
+     */
+    private static String playerName(int index) {
+        int combinations = FIRST_NAMES.length * LAST_NAMES.length;
+        String name = FIRST_NAMES[index % FIRST_NAMES.length] + " "
+                + LAST_NAMES[(index / FIRST_NAMES.length) % LAST_NAMES.length];
+        if (index >= combinations) {
+            name += " " + (index / combinations + 1);
+        }
+        return name;
+    }
+}
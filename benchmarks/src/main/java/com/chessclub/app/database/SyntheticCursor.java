@@ -0,0 +1,417 @@
+package com.chessclub.app.database;
+
+import android.content.ContentResolver;
+import android.database.CharArrayBuffer;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DataSetObserver;
+import android.net.Uri;
+import android.os.Bundle;
+
+import com.chessclub.app.model.Player;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Read-only in-memory cursor over columns of longs, doubles or strings, so row mappers can
+ * be measured on a plain JVM without SQLite. Only the reading methods the mappers use are
+ * implemented; everything else throws.
+ * Like a cursor over a CursorWindow, it returns a new String on every read, and it can tell
+ * how many column lookups it served and how large a window its rows would fill.
+ */
+final class SyntheticCursor implements Cursor {
+    // Android's CursorWindow keeps a 4-byte offset per row and a 12-byte slot per field;
+    // numbers live in their slot, strings are stored after it as UTF-8 ending in a NUL
+    static final int WINDOW_ROW_BYTES = 4;
+    static final int WINDOW_FIELD_BYTES = 12;
+    // The default size of a CursorWindow, config_cursorWindowSize
+    static final int DEFAULT_WINDOW_BYTES = 2 * 1024 * 1024;
+
+    // Every column of the players table, as SELECT * returns them
+    static final String[] PLAYER_COLUMNS = {
+            DatabaseHelper.COL_PLAYER_ID, DatabaseHelper.COL_PLAYER_NAME,
+            DatabaseHelper.COL_PLAYER_PIN_HASH, DatabaseHelper.COL_PLAYER_ELO,
+            DatabaseHelper.COL_PLAYER_WINS, DatabaseHelper.COL_PLAYER_DRAWS,
+            DatabaseHelper.COL_PLAYER_LOSSES, DatabaseHelper.COL_PLAYER_IS_ADMIN,
+            DatabaseHelper.COL_PLAYER_EMAIL, DatabaseHelper.COL_PLAYER_PHONE,
+            DatabaseHelper.COL_PLAYER_RATING_DEVIATION, DatabaseHelper.COL_PLAYER_VOLATILITY,
+            DatabaseHelper.COL_PLAYER_GAMES_PLAYED, DatabaseHelper.COL_PLAYER_WIN_RATE};
+
+    private final String[] columnNames;
+    // Each column is a long[], double[] or String[] with one value per row
+    private final Object[] columns;
+    private final int count;
+    private int position = -1;
+    private int columnLookups;
+    private boolean closed;
+
+    SyntheticCursor(String[] columnNames, Object[] columns, int count) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+        this.count = count;
+    }
+
+    /**
+     * A cursor over generated players with the given columns of the players table, in order
+     */
+    static SyntheticCursor players(Random random, int rows, String[] projection) {
+        long[] ids = new long[rows];
+        String[] names = new String[rows];
+        String[] pinHashes = new String[rows];
+        long[] elos = new long[rows];
+        long[] wins = new long[rows];
+        long[] draws = new long[rows];
+        long[] losses = new long[rows];
+        long[] admins = new long[rows];
+        String[] emails = new String[rows];
+        String[] phones = new String[rows];
+        double[] deviations = new double[rows];
+        double[] volatilities = new double[rows];
+        long[] gamesPlayed = new long[rows];
+        long[] winRates = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            ids[i] = i + 1;
+            names[i] = "Player " + (i + 1);
+            pinHashes[i] = String.format("%016x%016x%016x%016x", random.nextLong(),
+                    random.nextLong(), random.nextLong(), random.nextLong());
+            elos[i] = 800 + random.nextInt(1600);
+            wins[i] = random.nextInt(200);
+            draws[i] = random.nextInt(100);
+            losses[i] = random.nextInt(200);
+            admins[i] = i == 0 ? 1 : 0;
+            // Contact details are optional, so some rows have none
+            emails[i] = (i & 1) == 0 ? "player" + (i + 1) + "@example.com" : null;
+            phones[i] = (i & 2) == 0 ? "555-" + (1000 + i) : null;
+            deviations[i] = 50 + random.nextDouble() * 300;
+            volatilities[i] = 0.06;
+            gamesPlayed[i] = wins[i] + draws[i] + losses[i];
+            winRates[i] = Player.winRateOf((int) wins[i], (int) draws[i], (int) losses[i]);
+        }
+
+        Map<String, Object> table = new HashMap<>();
+        table.put(DatabaseHelper.COL_PLAYER_ID, ids);
+        table.put(DatabaseHelper.COL_PLAYER_NAME, names);
+        table.put(DatabaseHelper.COL_PLAYER_PIN_HASH, pinHashes);
+        table.put(DatabaseHelper.COL_PLAYER_ELO, elos);
+        table.put(DatabaseHelper.COL_PLAYER_WINS, wins);
+        table.put(DatabaseHelper.COL_PLAYER_DRAWS, draws);
+        table.put(DatabaseHelper.COL_PLAYER_LOSSES, losses);
+        table.put(DatabaseHelper.COL_PLAYER_IS_ADMIN, admins);
+        table.put(DatabaseHelper.COL_PLAYER_EMAIL, emails);
+        table.put(DatabaseHelper.COL_PLAYER_PHONE, phones);
+        table.put(DatabaseHelper.COL_PLAYER_RATING_DEVIATION, deviations);
+        table.put(DatabaseHelper.COL_PLAYER_VOLATILITY, volatilities);
+        table.put(DatabaseHelper.COL_PLAYER_GAMES_PLAYED, gamesPlayed);
+        table.put(DatabaseHelper.COL_PLAYER_WIN_RATE, winRates);
+
+        Object[] columns = new Object[projection.length];
+        for (int i = 0; i < projection.length; i++) {
+            columns[i] = table.get(projection[i]);
+            if (columns[i] == null) {
+                throw new IllegalArgumentException("No player column " + projection[i]);
+            }
+        }
+        return new SyntheticCursor(projection.clone(), columns, rows);
+    }
+
+    /**
+     * A cursor over generated games with every column of the games table
+     */
+    static SyntheticCursor games(Random random, int rows) {
+        long[] ids = new long[rows];
+        long[] whiteIds = new long[rows];
+        long[] blackIds = new long[rows];
+        long[] results = new long[rows];
+        long[] dates = new long[rows];
+        long[] whiteChanges = new long[rows];
+        long[] blackChanges = new long[rows];
+        long date = 1700000000000L;
+        for (int i = 0; i < rows; i++) {
+            ids[i] = i + 1;
+            whiteIds[i] = 1 + random.nextInt(rows);
+            blackIds[i] = 1 + random.nextInt(rows);
+            results[i] = random.nextInt(3);
+            date += random.nextInt(6 * 60 * 60 * 1000);
+            dates[i] = date;
+            whiteChanges[i] = random.nextInt(33) - 16;
+            blackChanges[i] = -whiteChanges[i];
+        }
+        return new SyntheticCursor(new String[]{
+                DatabaseHelper.COL_GAME_ID, DatabaseHelper.COL_GAME_WHITE_ID,
+                DatabaseHelper.COL_GAME_BLACK_ID, DatabaseHelper.COL_GAME_RESULT,
+                DatabaseHelper.COL_GAME_DATE, DatabaseHelper.COL_GAME_WHITE_ELO_CHANGE,
+                DatabaseHelper.COL_GAME_BLACK_ELO_CHANGE},
+                new Object[]{ids, whiteIds, blackIds, results, dates, whiteChanges, blackChanges},
+                rows);
+    }
+
+    /**
+     * Rewind to before the first row, so one cursor can be mapped repeatedly
+     */
+    void reset() {
+        position = -1;
+    }
+
+    /**
+     * Get how many times a column index was looked up by name
+     */
+    int columnLookups() {
+        return columnLookups;
+    }
+
+    /**
+     * Get the bytes all rows would fill in a CursorWindow
+     */
+    long windowBytes() {
+        long bytes = (long) count * (WINDOW_ROW_BYTES + columns.length * WINDOW_FIELD_BYTES);
+        for (Object column : columns) {
+            if (column instanceof String[]) {
+                for (String value : (String[]) column) {
+                    if (value != null) {
+                        bytes += value.getBytes(StandardCharsets.UTF_8).length + 1;
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public int getPosition() {
+        return position;
+    }
+
+    @Override
+    public boolean move(int offset) {
+        return moveToPosition(position + offset);
+    }
+
+    @Override
+    public boolean moveToPosition(int position) {
+        if (position < 0) {
+            this.position = -1;
+            return false;
+        }
+        if (position >= count) {
+            this.position = count;
+            return false;
+        }
+        this.position = position;
+        return true;
+    }
+
+    @Override
+    public boolean moveToFirst() {
+        return moveToPosition(0);
+    }
+
+    @Override
+    public boolean moveToLast() {
+        return moveToPosition(count - 1);
+    }
+
+    @Override
+    public boolean moveToNext() {
+        return moveToPosition(position + 1);
+    }
+
+    @Override
+    public boolean moveToPrevious() {
+        return moveToPosition(position - 1);
+    }
+
+    @Override
+    public boolean isFirst() {
+        return count > 0 && position == 0;
+    }
+
+    @Override
+    public boolean isLast() {
+        return count > 0 && position == count - 1;
+    }
+
+    @Override
+    public boolean isBeforeFirst() {
+        return count == 0 || position == -1;
+    }
+
+    @Override
+    public boolean isAfterLast() {
+        return count == 0 || position == count;
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        columnLookups++;
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        int index = getColumnIndex(columnName);
+        if (index < 0) {
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        }
+        return index;
+    }
+
+    @Override
+    public String getColumnName(int columnIndex) {
+        return columnNames[columnIndex];
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return columnNames.clone();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public byte[] getBlob(int columnIndex) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getString(int columnIndex) {
+        Object column = columns[columnIndex];
+        if (column instanceof String[]) {
+            // A window holds UTF-8 bytes, so each read decodes a new String
+            String value = ((String[]) column)[position];
+            return value == null ? null : new String(value.toCharArray());
+        }
+        if (column instanceof long[]) {
+            return String.valueOf(((long[]) column)[position]);
+        }
+        return String.valueOf(((double[]) column)[position]);
+    }
+
+    @Override
+    public void copyStringToBuffer(int columnIndex, CharArrayBuffer buffer) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public short getShort(int columnIndex) {
+        return (short) getLong(columnIndex);
+    }
+
+    @Override
+    public int getInt(int columnIndex) {
+        return (int) getLong(columnIndex);
+    }
+
+    @Override
+    public long getLong(int columnIndex) {
+        Object column = columns[columnIndex];
+        if (column instanceof long[]) {
+            return ((long[]) column)[position];
+        }
+        return (long) getDouble(columnIndex);
+    }
+
+    @Override
+    public float getFloat(int columnIndex) {
+        return (float) getDouble(columnIndex);
+    }
+
+    @Override
+    public double getDouble(int columnIndex) {
+        Object column = columns[columnIndex];
+        if (column instanceof double[]) {
+            return ((double[]) column)[position];
+        }
+        if (column instanceof long[]) {
+            return ((long[]) column)[position];
+        }
+        return Double.parseDouble(((String[]) column)[position]);
+    }
+
+    @Override
+    public int getType(int columnIndex) {
+        Object column = columns[columnIndex];
+        if (column instanceof long[]) {
+            return FIELD_TYPE_INTEGER;
+        }
+        if (column instanceof double[]) {
+            return FIELD_TYPE_FLOAT;
+        }
+        return isNull(columnIndex) ? FIELD_TYPE_NULL : FIELD_TYPE_STRING;
+    }
+
+    @Override
+    public boolean isNull(int columnIndex) {
+        Object column = columns[columnIndex];
+        return column instanceof String[] && ((String[]) column)[position] == null;
+    }
+
+    @Override
+    public void deactivate() {
+    }
+
+    @Override
+    public boolean requery() {
+        return false;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void registerContentObserver(ContentObserver observer) {
+    }
+
+    @Override
+    public void unregisterContentObserver(ContentObserver observer) {
+    }
+
+    @Override
+    public void registerDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+    }
+
+    @Override
+    public void setNotificationUri(ContentResolver cr, Uri uri) {
+    }
+
+    @Override
+    public boolean getWantsAllOnMoveCalls() {
+        return false;
+    }
+
+    @Override
+    public Bundle getExtras() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Bundle respond(Bundle extras) {
+        throw new UnsupportedOperationException();
+    }
+}
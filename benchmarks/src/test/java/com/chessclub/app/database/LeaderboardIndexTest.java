@@ -0,0 +1,216 @@
+package com.chessclub.app.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the rank index against a brute-force sort of the same ratings, highest first and
+ * by id among equal ratings, through random writes, drops and rebuilds: every rank, the
+ * size, top-N, windows and the rank changes told to observers.
+ */
+public class LeaderboardIndexTest {
+    private static final int PLAYERS = 300;
+    private static final int OPERATIONS = 20000;
+
+    @Test
+    public void matchesSortedRatingsThroughRandomWrites() {
+        Random random = new Random(42);
+        LeaderboardIndex index = new LeaderboardIndex();
+        RecordingObserver observer = new RecordingObserver();
+        index.addObserver(observer);
+        // The players table, which the index mirrors
+        Map<Integer, Integer> table = new HashMap<>();
+        rebuild(index, table);
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int playerId = 1 + random.nextInt(PLAYERS);
+            List<Integer> before = sorted(table);
+            Integer oldRating = table.get(playerId);
+            observer.clear();
+
+            int operation = random.nextInt(20);
+            if (operation < 8) {
+                int rating = randomRating(random);
+                table.put(playerId, rating);
+                index.put(playerId, rating);
+                if (oldRating == null) {
+                    observer.assertOnlyReset();
+                } else if (oldRating != rating) {
+                    observer.assertOnlyMove(playerId, before.indexOf(playerId) + 1,
+                            sorted(table).indexOf(playerId) + 1);
+                } else {
+                    observer.assertNothing();
+                }
+            } else if (operation < 16) {
+                // Rating writes reach the table whether or not the player is indexed
+                int delta = random.nextInt(81) - 40;
+                if (oldRating != null) {
+                    table.put(playerId, oldRating + delta);
+                }
+                index.applyRatingDelta(playerId, delta);
+                if (oldRating != null && delta != 0) {
+                    observer.assertOnlyMove(playerId, before.indexOf(playerId) + 1,
+                            sorted(table).indexOf(playerId) + 1);
+                } else {
+                    observer.assertNothing();
+                }
+            } else if (operation < 19) {
+                table.remove(playerId);
+                index.remove(playerId);
+                if (oldRating != null) {
+                    observer.assertOnlyReset();
+                } else {
+                    observer.assertNothing();
+                }
+            } else {
+                index.invalidate();
+                observer.assertOnlyReset();
+                assertFalse(index.isLoaded());
+                // Writes while the index is dropped are only in the table
+                for (int j = random.nextInt(5); j > 0; j--) {
+                    int id = 1 + random.nextInt(PLAYERS);
+                    int rating = randomRating(random);
+                    table.put(id, rating);
+                    index.put(id, rating);
+                }
+                rebuild(index, table);
+            }
+
+            assertMatches(index, sorted(table), random);
+        }
+    }
+
+    @Test
+    public void buildRacingWithAWriteIsNotInstalled() {
+        LeaderboardIndex index = new LeaderboardIndex();
+        long generation = index.getGeneration();
+        index.put(1, 1500);
+        assertFalse(index.rebuildIfUnchanged(new int[]{1}, new int[]{1400}, 1, generation));
+        assertFalse(index.isLoaded());
+        assertTrue(index.rebuildIfUnchanged(new int[]{1}, new int[]{1500}, 1, index.getGeneration()));
+        assertEquals(1, index.rankOf(1));
+    }
+
+    private static void assertMatches(LeaderboardIndex index, List<Integer> expected, Random random) {
+        assertTrue(index.isLoaded());
+        assertEquals(expected.size(), index.size());
+        for (int playerId = 0; playerId <= PLAYERS + 1; playerId++) {
+            int position = expected.indexOf(playerId);
+            assertEquals("Rank of " + playerId, position < 0 ? -1 : position + 1, index.rankOf(playerId));
+        }
+
+        int n = random.nextInt(expected.size() + 10);
+        assertArrayEquals("Top " + n, toArray(expected.subList(0, Math.min(n, expected.size()))),
+                index.topN(n));
+
+        int playerId = 1 + random.nextInt(PLAYERS);
+        int k = random.nextInt(6);
+        int rank = expected.indexOf(playerId) + 1;
+        int[] window = rank == 0 ? new int[0] : toArray(expected.subList(Math.max(0, rank - 1 - k),
+                Math.min(expected.size(), rank + k)));
+        assertArrayEquals("Window of " + k + " around " + playerId, window, index.window(playerId, k));
+    }
+
+    /**
+     * Rebuild the index from the table, as DatabaseHelper does after a drop
+     */
+    private static void rebuild(LeaderboardIndex index, Map<Integer, Integer> table) {
+        int[] ids = new int[table.size()];
+        int[] ratings = new int[table.size()];
+        int count = 0;
+        for (Map.Entry<Integer, Integer> player : table.entrySet()) {
+            ids[count] = player.getKey();
+            ratings[count] = player.getValue();
+            count++;
+        }
+        assertTrue(index.rebuildIfUnchanged(ids, ratings, count, index.getGeneration()));
+    }
+
+    /**
+     * Player ids by rating, highest first, and by id among equal ratings
+     */
+    private static List<Integer> sorted(final Map<Integer, Integer> table) {
+        List<Integer> ids = new ArrayList<>(table.keySet());
+        Collections.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byRating = Integer.compare(table.get(b), table.get(a));
+                return byRating != 0 ? byRating : Integer.compare(a, b);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * Mostly a narrow range, so many players tie, and sometimes ratings beyond the index's
+     * buckets, which share the end buckets
+     */
+    private static int randomRating(Random random) {
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return -200 + random.nextInt(200);
+        }
+        if (kind == 1) {
+            return 4096 + random.nextInt(200);
+        }
+        return 1150 + random.nextInt(100);
+    }
+
+    private static int[] toArray(List<Integer> ids) {
+        int[] array = new int[ids.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+
+    private static final class RecordingObserver implements LeaderboardIndex.RankObserver {
+        private final List<int[]> moves = new ArrayList<>();
+        private int resets;
+
+        @Override
+        public void onRankChanged(int playerId, int oldRank, int newRank) {
+            moves.add(new int[]{playerId, oldRank, newRank});
+        }
+
+        @Override
+        public void onRanksReset() {
+            resets++;
+        }
+
+        void clear() {
+            moves.clear();
+            resets = 0;
+        }
+
+        void assertOnlyMove(int playerId, int oldRank, int newRank) {
+            assertEquals(0, resets);
+            assertEquals(1, moves.size());
+            assertEquals(Arrays.toString(new int[]{playerId, oldRank, newRank}),
+                    Arrays.toString(moves.get(0)));
+        }
+
+        void assertOnlyReset() {
+            assertEquals(1, resets);
+            assertEquals(0, moves.size());
+        }
+
+        void assertNothing() {
+            assertEquals(0, resets);
+            assertEquals(0, moves.size());
+        }
+    }
+}
@@ -0,0 +1,428 @@
+package com.chessclub.app.database;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.utils.EloRatingSystem;
+import com.chessclub.app.utils.Glicko2;
+import com.chessclub.app.utils.RatingSystem;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that replaying Elo forward after a game is deleted or corrected leaves exactly the
+ * deltas, rating history and final ratings of rating the changed history from scratch.
+ * The club lives in memory and the replay follows DatabaseHelper: ratings are checkpointed
+ * as each player's stored rating minus their deltas from the changed game on, read before
+ * the change, then the tail is re-rated by rateInBatches into a writer that stores into the
+ * club what RatingReplayer stores into its tables. Glicko-2 replays are checked to rate each
+ * day's games together, as one period.
+ */
+public class RatingReplayerTest {
+    private static final int PLAYERS = 40;
+    // Several batches, so replays start and end mid-batch
+    private static final int GAMES = 3 * RatingReplayer.BATCH_SIZE + 77;
+    private static final int START_RATING = 1200;
+    // Players added to a generated club by a test
+    private static final int NEWCOMER = PLAYERS + 1;
+    private static final int EARLY_LEAVER = PLAYERS + 2;
+    private static final double VOLATILITY_TOLERANCE = 0.001;
+
+    private final RatingSystem elo = new EloRatingSystem();
+
+    @Test
+    public void deletingAGameMatchesRatingTheRestFromScratch() {
+        for (int cut : cuts()) {
+            Club club = ratedClub(new Random(cut), GAMES);
+            Checkpoint checkpoint = club.ratingsBefore(cut);
+
+            club.delete(cut);
+            club.replayFrom(cut, checkpoint);
+
+            assertSameRatings("Deleting game " + cut, club, fromScratch(club));
+        }
+    }
+
+    @Test
+    public void correctingAResultMatchesRatingFromScratch() {
+        for (int cut : cuts()) {
+            Club club = ratedClub(new Random(cut), GAMES);
+            Game corrected = club.games.get(cut);
+            Checkpoint checkpoint = club.ratingsBefore(cut);
+
+            corrected.setResult((corrected.getResult() + 1) % 3);
+            club.replayFrom(cut, checkpoint);
+
+            assertSameRatings("Correcting game " + cut, club, fromScratch(club));
+        }
+    }
+
+    @Test
+    public void playerWithNoGamesAfterTheCutFallsBackToTheCheckpoint() {
+        Club club = new Club();
+        ratedClub(new Random(7), GAMES).copyGamesTo(club);
+        int cut = GAMES / 2;
+        // A newcomer whose only game is the one deleted, so they play nothing after the cut,
+        // and a player whose games all come before it, who is not replayed at all
+        club.games.get(cut).setBlackPlayerId(NEWCOMER);
+        for (int i = 0; i < 10; i++) {
+            club.games.get(i).setBlackPlayerId(EARLY_LEAVER);
+        }
+        club.rateAll();
+        int earlyRating = club.ratings[EARLY_LEAVER];
+
+        Checkpoint checkpoint = club.ratingsBefore(cut);
+        assertEquals(START_RATING, checkpoint.ratings[checkpoint.slotOf(NEWCOMER)]);
+        assertTrue(checkpoint.slotOf(EARLY_LEAVER) < 0);
+
+        club.delete(cut);
+        club.replayFrom(cut, checkpoint);
+
+        // The newcomer's stored rating minus the deleted game's delta
+        assertEquals(START_RATING, club.ratings[NEWCOMER]);
+        assertEquals(earlyRating, club.ratings[EARLY_LEAVER]);
+        assertSameRatings("Deleting the newcomer's game", club, fromScratch(club));
+    }
+
+    @Test
+    public void onlyChangedDeltasAreRewritten() {
+        Club club = ratedClub(new Random(3), GAMES);
+        Club unchanged = fromScratch(club);
+        int cut = GAMES / 3;
+        Checkpoint checkpoint = club.ratingsBefore(cut);
+
+        // Replaying an unchanged tail rewrites nothing
+        assertEquals(0, club.replayFrom(cut, checkpoint));
+        assertSameRatings("Unchanged replay", club, unchanged);
+    }
+
+    @Test
+    public void historyChainsEachPlayersGamesToTheirRating() {
+        Club club = ratedClub(new Random(11), GAMES);
+        assertHistoryChains("Rated", club);
+
+        // A replay rewrites the rows of every replayed game, so the chain survives a deletion
+        int cut = GAMES / 4;
+        Checkpoint checkpoint = club.ratingsBefore(cut);
+        club.delete(cut);
+        club.replayFrom(cut, checkpoint);
+        assertHistoryChains("Replayed", club);
+    }
+
+    @Test
+    public void glicko2RatesEachDaysGamesAsOnePeriod() {
+        long day = 1420070400000L;
+        long nextDay = day + 24 * 60 * 60 * 1000L;
+        // Slots are player ids less one; the first day has three games, the next one
+        List<Game> games = Arrays.asList(
+                new Game(1, 1, 2, Game.WHITE_WINS, day + 1000, 0, 0),
+                new Game(2, 2, 3, Game.DRAW, day + 2000, 0, 0),
+                new Game(3, 1, 3, Game.BLACK_WINS, day + 3000, 0, 0),
+                new Game(4, 1, 4, Game.WHITE_WINS, nextDay + 1000, 0, 0));
+        RatingReplayer.Slots slots = new RatingReplayer.Slots() {
+            @Override
+            public int slotOf(int playerId) {
+                return playerId - 1;
+            }
+        };
+        RatingReplayer.PeriodState state = new RatingReplayer.PeriodState(new int[]{1500, 1500, 1500, 1500});
+        PeriodWriter writer = new PeriodWriter();
+
+        RatingReplayer.rateInPeriods(new Glicko2(), games.iterator(), slots, TimeZone.getTimeZone("UTC"),
+                state, writer);
+
+        // One update per day: a batch of the day's games, and a checkpoint per player who played
+        assertEquals(Arrays.asList(3, 1), writer.batchSizes);
+        long period = day / (24 * 60 * 60 * 1000L);
+        assertEquals(Arrays.asList(period + ":0", period + ":1", period + ":2", (period + 1) + ":0",
+                (period + 1) + ":3"), writer.checkpoints);
+
+        // The first day's games are rated together from the ratings at its start
+        int[] ratings = {1500, 1500, 1500};
+        double[] deviations = {Glicko2.DEFAULT_DEVIATION, Glicko2.DEFAULT_DEVIATION, Glicko2.DEFAULT_DEVIATION};
+        double[] volatilities = {Glicko2.DEFAULT_VOLATILITY, Glicko2.DEFAULT_VOLATILITY,
+                Glicko2.DEFAULT_VOLATILITY};
+        int[] whiteChanges = new int[3];
+        int[] blackChanges = new int[3];
+        new Glicko2().ratePeriod(ratings, deviations, volatilities, new int[]{0, 1, 0}, new int[]{1, 2, 2},
+                new int[]{Game.WHITE_WINS, Game.DRAW, Game.BLACK_WINS}, whiteChanges, blackChanges, 3);
+        assertArrayEquals(whiteChanges, Arrays.copyOf(writer.whiteChanges.get(0), 3));
+        assertArrayEquals(blackChanges, Arrays.copyOf(writer.blackChanges.get(0), 3));
+        assertEquals(ratings[1], state.ratings[1]);
+        assertEquals(ratings[2], state.ratings[2]);
+
+        // Rated game by game, the draw would start from the first game's result instead
+        int[] oneByOne = {1500, 1500, 1500};
+        double[] oneByOneDeviations = {Glicko2.DEFAULT_DEVIATION, Glicko2.DEFAULT_DEVIATION,
+                Glicko2.DEFAULT_DEVIATION};
+        double[] oneByOneVolatilities = {Glicko2.DEFAULT_VOLATILITY, Glicko2.DEFAULT_VOLATILITY,
+                Glicko2.DEFAULT_VOLATILITY};
+        Glicko2 separate = new Glicko2();
+        separate.ratePeriod(oneByOne, oneByOneDeviations, oneByOneVolatilities, new int[]{0}, new int[]{1},
+                new int[]{Game.WHITE_WINS}, new int[1], new int[1], 1);
+        int[] drawChanges = new int[1];
+        separate.ratePeriod(oneByOne, oneByOneDeviations, oneByOneVolatilities, new int[]{1}, new int[]{2},
+                new int[]{Game.DRAW}, drawChanges, new int[1], 1);
+        assertFalse(drawChanges[0] == writer.whiteChanges.get(0)[1]);
+
+        // The next day goes on from the first day's state, and rates player 4 from the defaults
+        assertEquals(Glicko2.DEFAULT_VOLATILITY, state.volatilities[3], VOLATILITY_TOLERANCE);
+        assertTrue(state.deviations[0] < deviations[0]);
+        assertEquals(ratings[0] + writer.whiteChanges.get(1)[0], state.ratings[0]);
+    }
+
+    private static void assertSameRatings(String change, Club replayed, Club expected) {
+        assertEquals(change, expected.games.size(), replayed.games.size());
+        for (int i = 0; i < expected.games.size(); i++) {
+            Game game = replayed.games.get(i);
+            Game scratch = expected.games.get(i);
+            assertEquals(change + ", white change of game " + game.getId(),
+                    scratch.getWhiteEloChange(), game.getWhiteEloChange());
+            assertEquals(change + ", black change of game " + game.getId(),
+                    scratch.getBlackEloChange(), game.getBlackEloChange());
+            assertArrayEquals(change + ", history of game " + game.getId(),
+                    expected.history.get(game.getId()), replayed.history.get(game.getId()));
+        }
+        assertArrayEquals(change + ", final ratings", expected.ratings, replayed.ratings);
+    }
+
+    /**
+     * Each history row starts from the rating the player's previous row ended at, or the start
+     * rating, moves by the game's delta, and the last row ends at the stored rating
+     */
+    private static void assertHistoryChains(String stage, Club rated) {
+        int[] last = new int[rated.ratings.length];
+        Arrays.fill(last, START_RATING);
+        for (Game game : rated.games) {
+            int[] rows = rated.history.get(game.getId());
+            assertEquals(stage + ", white of game " + game.getId(), game.getWhitePlayerId(), rows[0]);
+            assertEquals(stage + ", black of game " + game.getId(), game.getBlackPlayerId(), rows[3]);
+            assertEquals(stage + ", white before game " + game.getId(), last[rows[0]], rows[1]);
+            assertEquals(stage + ", black before game " + game.getId(), last[rows[3]], rows[4]);
+            assertEquals(rows[1] + game.getWhiteEloChange(), rows[2]);
+            assertEquals(rows[4] + game.getBlackEloChange(), rows[5]);
+            last[rows[0]] = rows[2];
+            last[rows[3]] = rows[5];
+        }
+        assertArrayEquals(stage + ", final ratings", rated.ratings, last);
+    }
+
+    /**
+     * Games to change: the first, the last, batch edges and a few in between
+     */
+    private static int[] cuts() {
+        return new int[]{0, 1, 100, RatingReplayer.BATCH_SIZE - 1, RatingReplayer.BATCH_SIZE,
+                RatingReplayer.BATCH_SIZE + 1, GAMES / 2, GAMES - RatingReplayer.BATCH_SIZE, GAMES - 1};
+    }
+
+    private Club ratedClub(Random random, int count) {
+        Club club = new Club();
+        long date = 1420135200000L;
+        for (int i = 0; i < count; i++) {
+            int white = 1 + random.nextInt(PLAYERS);
+            int black = 1 + random.nextInt(PLAYERS - 1);
+            if (black >= white) {
+                black++;
+            }
+            // Some games share a date, so the (date, id) order matters
+            date += random.nextInt(4) == 0 ? 0 : random.nextInt(60 * 60 * 1000);
+            club.games.add(new Game(i + 1, white, black, random.nextInt(3), date, 0, 0));
+        }
+        club.rateAll();
+        return club;
+    }
+
+    private Club fromScratch(Club club) {
+        Club scratch = new Club();
+        club.copyGamesTo(scratch);
+        scratch.rateAll();
+        return scratch;
+    }
+
+    /**
+     * Games in (date, id) order with their stored deltas, each game's rating history and
+     * each player's stored rating, by id
+     */
+    private final class Club {
+        final List<Game> games = new ArrayList<>();
+        final Map<Integer, int[]> history = new HashMap<>();
+        final int[] ratings = new int[EARLY_LEAVER + 1];
+
+        /**
+         * Rate every game from the start ratings, as if recorded one by one
+         */
+        void rateAll() {
+            Arrays.fill(ratings, START_RATING);
+            RatingReplayer.Slots identity = new RatingReplayer.Slots() {
+                @Override
+                public int slotOf(int playerId) {
+                    return playerId;
+                }
+            };
+            RatingReplayer.rateInBatches(elo, games.iterator(), identity, ratings,
+                    new ClubWriter(this, null));
+        }
+
+        /**
+         * Each replayed player's stored rating minus their deltas from a game on, as
+         * RatingReplayer.ratingsBefore reads it
+         */
+        Checkpoint ratingsBefore(int cut) {
+            TreeSet<Integer> ids = new TreeSet<>();
+            for (Game game : games.subList(cut, games.size())) {
+                ids.add(game.getWhitePlayerId());
+                ids.add(game.getBlackPlayerId());
+            }
+            Checkpoint checkpoint = new Checkpoint(ids.size());
+            int slot = 0;
+            for (int id : ids) {
+                checkpoint.players[slot] = id;
+                checkpoint.ratings[slot] = ratings[id];
+                slot++;
+            }
+            for (Game game : games.subList(cut, games.size())) {
+                checkpoint.ratings[checkpoint.slotOf(game.getWhitePlayerId())] -= game.getWhiteEloChange();
+                checkpoint.ratings[checkpoint.slotOf(game.getBlackPlayerId())] -= game.getBlackEloChange();
+            }
+            return checkpoint;
+        }
+
+        /**
+         * Replay the games from a position on, from a checkpoint taken before the change, and
+         * store the replayed players' final ratings
+         * @return The number of games whose deltas were rewritten
+         */
+        int replayFrom(int cut, final Checkpoint checkpoint) {
+            RatingReplayer.Slots slots = new RatingReplayer.Slots() {
+                @Override
+                public int slotOf(int playerId) {
+                    return checkpoint.slotOf(playerId);
+                }
+            };
+            int[] slotRatings = checkpoint.ratings.clone();
+            int rewritten = RatingReplayer.rateInBatches(elo, games.subList(cut, games.size()).iterator(),
+                    slots, slotRatings, new ClubWriter(this, checkpoint.players));
+            for (int slot = 0; slot < slotRatings.length; slot++) {
+                ratings[checkpoint.players[slot]] = slotRatings[slot];
+            }
+            return rewritten;
+        }
+
+        void delete(int position) {
+            Game game = games.remove(position);
+            history.remove(game.getId());
+        }
+
+        void copyGamesTo(Club club) {
+            for (Game game : games) {
+                club.games.add(new Game(game.getId(), game.getWhitePlayerId(), game.getBlackPlayerId(),
+                        game.getResult(), game.getDate(), 0, 0));
+            }
+        }
+    }
+
+    /**
+     * Ratings of the players a replay covers, by slot; slots are in player id order, like
+     * the keys of the SparseIntArray ratingsBefore returns
+     */
+    private static final class Checkpoint {
+        final int[] players;
+        final int[] ratings;
+
+        Checkpoint(int count) {
+            players = new int[count];
+            ratings = new int[count];
+        }
+
+        int slotOf(int playerId) {
+            int slot = Arrays.binarySearch(players, playerId);
+            return slot < 0 ? -1 : slot;
+        }
+    }
+
+    /**
+     * Stores rated batches into a club as RatingReplayer's own writer does: a game's deltas
+     * only when they changed, and both players' ratings before and after every game
+     */
+    private static final class ClubWriter implements RatingReplayer.Writer {
+        private final Club club;
+        // Player id of each slot, or null when slots are player ids
+        private final int[] slotPlayers;
+        private final Map<Integer, Game> gamesById = new HashMap<>();
+
+        ClubWriter(Club club, int[] slotPlayers) {
+            this.club = club;
+            this.slotPlayers = slotPlayers;
+            for (Game game : club.games) {
+                gamesById.put(game.getId(), game);
+            }
+        }
+
+        @Override
+        public int writeBatch(RatingReplayer.Batch batch, int[] running) {
+            int rewritten = 0;
+            for (int i = 0; i < batch.count; i++) {
+                int white = batch.whiteSlots[i];
+                int black = batch.blackSlots[i];
+                if (batch.whiteChanges[i] != batch.storedWhiteChanges[i]
+                        || batch.blackChanges[i] != batch.storedBlackChanges[i]) {
+                    Game game = gamesById.get(batch.gameIds[i]);
+                    game.setWhiteEloChange(batch.whiteChanges[i]);
+                    game.setBlackEloChange(batch.blackChanges[i]);
+                    rewritten++;
+                }
+                club.history.put(batch.gameIds[i], new int[]{
+                        playerOf(white), running[white], running[white] + batch.whiteChanges[i],
+                        playerOf(black), running[black], running[black] + batch.blackChanges[i]});
+                running[white] += batch.whiteChanges[i];
+                running[black] += batch.blackChanges[i];
+            }
+            return rewritten;
+        }
+
+        @Override
+        public void writeCheckpoint(int slot, long period, double deviation, double volatility) {
+            throw new AssertionError("Elo has no rating periods");
+        }
+
+        private int playerOf(int slot) {
+            return slotPlayers == null ? slot : slotPlayers[slot];
+        }
+    }
+
+    /**
+     * Records each rated period: its batch of games with their changes, and its checkpoints
+     * as "period:slot"
+     */
+    private static final class PeriodWriter implements RatingReplayer.Writer {
+        final List<Integer> batchSizes = new ArrayList<>();
+        final List<int[]> whiteChanges = new ArrayList<>();
+        final List<int[]> blackChanges = new ArrayList<>();
+        final List<String> checkpoints = new ArrayList<>();
+
+        @Override
+        public int writeBatch(RatingReplayer.Batch batch, int[] running) {
+            batchSizes.add(batch.count);
+            whiteChanges.add(Arrays.copyOf(batch.whiteChanges, batch.count));
+            blackChanges.add(Arrays.copyOf(batch.blackChanges, batch.count));
+            return batch.count;
+        }
+
+        @Override
+        public void writeCheckpoint(int slot, long period, double deviation, double volatility) {
+            checkpoints.add(period + ":" + slot);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.chessclub.app.database;
+
+import com.chessclub.app.model.Game;
+import com.chessclub.app.model.Player;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks what resolving columns once per cursor and the lean player projections save when
+ * listing a club of 10k players: column lookups, heap allocated per mapped row, and the
+ * space the rows fill in a CursorWindow. Runs on a plain JVM over synthetic cursors.
+ */
+public class RowMapperTest {
+    private static final int PLAYERS = 10000;
+    private static final int GAMES = 10000;
+
+    @Test
+    public void mappersLookUpColumnsOncePerCursor() {
+        SyntheticCursor players = SyntheticCursor.players(new Random(42), PLAYERS,
+                SyntheticCursor.PLAYER_COLUMNS);
+        PlayerMapper playerMapper = new PlayerMapper(players);
+        int playerLookups = players.columnLookups();
+        mapAll(players, playerMapper);
+        assertEquals(playerLookups, players.columnLookups());
+        assertTrue(playerLookups <= players.getColumnCount());
+
+        SyntheticCursor games = SyntheticCursor.games(new Random(42), GAMES);
+        GameMapper gameMapper = new GameMapper(games);
+        int gameLookups = games.columnLookups();
+        while (games.moveToNext()) {
+            gameMapper.map(games);
+        }
+        assertEquals(gameLookups, games.columnLookups());
+        assertEquals(games.getColumnCount(), gameLookups);
+    }
+
+    @Test
+    public void leaderboardRowsAllocateLessThanFullRows() {
+        assumeTrue(allocationCounted());
+        long full = bytesPerPlayer(SyntheticCursor.PLAYER_COLUMNS);
+        long leaderboard = bytesPerPlayer(DatabaseHelper.LEADERBOARD_COLUMNS);
+        long names = bytesPerPlayer(DatabaseHelper.NAME_COLUMNS);
+
+        // The PIN hash and contact details are no longer decoded into Strings for every row
+        assertTrue("Leaderboard row " + leaderboard + " B, full row " + full + " B",
+                leaderboard * 3 < full * 2);
+        assertTrue("Name row " + names + " B, leaderboard row " + leaderboard + " B",
+                names <= leaderboard);
+    }
+
+    @Test
+    public void filledGamesAllocateNothingPerRow() {
+        assumeTrue(allocationCounted());
+        SyntheticCursor games = SyntheticCursor.games(new Random(42), GAMES);
+        GameMapper mapper = new GameMapper(games);
+        Game game = new Game();
+        fillAll(games, mapper, game);
+
+        games.reset();
+        long before = allocatedBytes();
+        fillAll(games, mapper, game);
+        long allocated = allocatedBytes() - before;
+        assertTrue("Filling " + GAMES + " games allocated " + allocated + " B", allocated < GAMES);
+    }
+
+    @Test
+    public void leanProjectionsFitOneWindow() {
+        long full = windowBytes(SyntheticCursor.PLAYER_COLUMNS);
+        long leaderboard = windowBytes(DatabaseHelper.LEADERBOARD_COLUMNS);
+        long names = windowBytes(DatabaseHelper.NAME_COLUMNS);
+
+        // SELECT * overflows the default window, so the list would be read in several fills
+        assertTrue("All columns fill " + full + " B", full > SyntheticCursor.DEFAULT_WINDOW_BYTES);
+        assertTrue("The leaderboard fills " + leaderboard + " B",
+                leaderboard < SyntheticCursor.DEFAULT_WINDOW_BYTES / 2);
+        assertTrue("The login list fills " + names + " B", names < leaderboard / 2);
+    }
+
+    /**
+     * Get the heap allocated for each player mapped from the given projection, once the
+     * mapping code is loaded, into a list sized up front as the DAO's readAll does
+     */
+    private static long bytesPerPlayer(String[] projection) {
+        SyntheticCursor cursor = SyntheticCursor.players(new Random(42), PLAYERS, projection);
+        PlayerMapper mapper = new PlayerMapper(cursor);
+        mapAll(cursor, mapper);
+
+        cursor.reset();
+        List<Player> players = new ArrayList<>(PLAYERS);
+        long before = allocatedBytes();
+        while (cursor.moveToNext()) {
+            players.add(mapper.map(cursor));
+        }
+        long allocated = allocatedBytes() - before;
+        assertEquals(PLAYERS, players.size());
+        return allocated / PLAYERS;
+    }
+
+    private static long windowBytes(String[] projection) {
+        return SyntheticCursor.players(new Random(42), PLAYERS, projection).windowBytes();
+    }
+
+    private static List<Player> mapAll(SyntheticCursor cursor, PlayerMapper mapper) {
+        List<Player> players = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            players.add(mapper.map(cursor));
+        }
+        return players;
+    }
+
+    private static void fillAll(SyntheticCursor cursor, GameMapper mapper, Game game) {
+        while (cursor.moveToNext()) {
+            mapper.fill(cursor, game);
+        }
+    }
+
+    private static boolean allocationCounted() {
+        return ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .isThreadAllocatedMemoryEnabled();
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
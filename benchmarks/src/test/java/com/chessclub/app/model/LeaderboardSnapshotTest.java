@@ -0,0 +1,142 @@
+package com.chessclub.app.model;
+
+import com.chessclub.app.utils.PlayerNames;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks every sort key and direction of the snapshot against Collections.sort of the same
+ * players, over a club where most values tie and names repeat in different cases, and checks
+ * which changes hasSameRows notices.
+ */
+public class LeaderboardSnapshotTest {
+    private static final int PLAYERS = 600;
+    private static final String[] NAMES = {"Ana", "ana", "ANA", "Bruno", "bruno", "Émile", "émile",
+            "Zoë", "zoe", "Ana Costa", "ana costa", "_x", "[y]", "Ying", "ﬀ", "𝔸lex"};
+    private static final int[] KEYS = {LeaderboardSnapshot.SORT_BY_ELO, LeaderboardSnapshot.SORT_BY_NAME,
+            LeaderboardSnapshot.SORT_BY_GAMES_PLAYED, LeaderboardSnapshot.SORT_BY_WINS,
+            LeaderboardSnapshot.SORT_BY_WIN_RATE};
+
+    @Test
+    public void everyKeyAndDirectionMatchesCollectionsSort() {
+        List<Player> players = club(new Random(42));
+        LeaderboardSnapshot snapshot = LeaderboardSnapshot.of(players);
+
+        // Each key twice, so the second pass reads the kept order, in both directions
+        for (int pass = 0; pass < 2; pass++) {
+            for (int key : KEYS) {
+                List<Player> ascending = new ArrayList<>(players);
+                Collections.sort(ascending, comparatorFor(key));
+                List<Player> descending = new ArrayList<>(ascending);
+                // Ties keep id order ascending, so they come in reverse id order descending
+                Collections.reverse(descending);
+
+                assertSameOrder("Key " + key + " ascending", ascending, snapshot.sorted(key, true));
+                assertSameOrder("Key " + key + " descending", descending, snapshot.sorted(key, false));
+            }
+        }
+    }
+
+    @Test
+    public void hasSameRowsNoticesEveryColumn() {
+        List<Player> players = club(new Random(7));
+        LeaderboardSnapshot snapshot = LeaderboardSnapshot.of(players);
+
+        assertTrue(snapshot.hasSameRows(LeaderboardSnapshot.of(copy(players))));
+
+        List<Player> renamed = copy(players);
+        // Names the NOCASE index treats as equal are still a change to show
+        renamed.get(3).setName(renamed.get(3).getName().toUpperCase());
+        assertFalse(snapshot.hasSameRows(LeaderboardSnapshot.of(renamed)));
+
+        List<Player> rerated = copy(players);
+        rerated.get(10).setElo(rerated.get(10).getElo() + 1);
+        assertFalse(snapshot.hasSameRows(LeaderboardSnapshot.of(rerated)));
+
+        List<Player> won = copy(players);
+        won.get(20).setWins(won.get(20).getWins() + 1);
+        assertFalse(snapshot.hasSameRows(LeaderboardSnapshot.of(won)));
+
+        List<Player> drawn = copy(players);
+        drawn.get(30).setDraws(drawn.get(30).getDraws() + 1);
+        assertFalse(snapshot.hasSameRows(LeaderboardSnapshot.of(drawn)));
+
+        List<Player> lost = copy(players);
+        lost.get(40).setLosses(lost.get(40).getLosses() + 1);
+        assertFalse(snapshot.hasSameRows(LeaderboardSnapshot.of(lost)));
+
+        List<Player> removed = copy(players);
+        removed.remove(removed.size() - 1);
+        assertFalse(snapshot.hasSameRows(LeaderboardSnapshot.of(removed)));
+    }
+
+    private static void assertSameOrder(String order, List<Player> expected, List<Player> actual) {
+        assertEquals(order, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(order + " at " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    /**
+     * The order the snapshot promises for a key, ascending: by value, then by id
+     */
+    private static Comparator<Player> comparatorFor(final int key) {
+        return new Comparator<Player>() {
+            @Override
+            public int compare(Player a, Player b) {
+                int byValue;
+                switch (key) {
+                    case LeaderboardSnapshot.SORT_BY_ELO:
+                        byValue = Integer.compare(a.getElo(), b.getElo());
+                        break;
+                    case LeaderboardSnapshot.SORT_BY_NAME:
+                        byValue = PlayerNames.compare(a.getName(), b.getName());
+                        break;
+                    case LeaderboardSnapshot.SORT_BY_GAMES_PLAYED:
+                        byValue = Integer.compare(a.getWins() + a.getDraws() + a.getLosses(),
+                                b.getWins() + b.getDraws() + b.getLosses());
+                        break;
+                    case LeaderboardSnapshot.SORT_BY_WINS:
+                        byValue = Integer.compare(a.getWins(), b.getWins());
+                        break;
+                    default:
+                        byValue = Integer.compare(a.getWinRateFixed(), b.getWinRateFixed());
+                        break;
+                }
+                return byValue != 0 ? byValue : Integer.compare(a.getId(), b.getId());
+            }
+        };
+    }
+
+    /**
+     * Leaderboard rows in id order, with ratings and records from narrow ranges so most tie
+     */
+    private static List<Player> club(Random random) {
+        List<Player> players = new ArrayList<>(PLAYERS);
+        for (int id = 1; id <= PLAYERS; id++) {
+            players.add(new Player(id, NAMES[random.nextInt(NAMES.length)], null,
+                    1190 + random.nextInt(20), random.nextInt(6), random.nextInt(3), random.nextInt(6),
+                    false, null, null));
+        }
+        return players;
+    }
+
+    private static List<Player> copy(List<Player> players) {
+        List<Player> copies = new ArrayList<>(players.size());
+        for (Player player : players) {
+            copies.add(new Player(player));
+        }
+        return copies;
+    }
+}
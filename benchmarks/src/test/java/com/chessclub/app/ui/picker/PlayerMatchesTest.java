@@ -0,0 +1,152 @@
+package com.chessclub.app.ui.picker;
+
+import com.chessclub.app.model.Player;
+import com.chessclub.app.utils.PlayerNames;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that narrowing a complete page of search results in memory gives the same players,
+ * in the same order, as searching the database for the longer query. The searches run the
+ * queries of DatabaseHelper.searchPlayers on an in-memory SQLite database with the unique
+ * NOCASE name index.
+ */
+public class PlayerMatchesTest {
+    private static final String ALPHABET = "AaBbNnZz _%\\É€Ａ";
+    private static final String SUPPLEMENTARY = "𝔸";
+    private static final int PLAYERS = 3000;
+    // Larger than any result, so every search reads a complete page
+    private static final int LIMIT = PLAYERS + 1;
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE players(id INTEGER PRIMARY KEY, name TEXT NOT NULL)");
+        statement.execute("CREATE UNIQUE INDEX idx_players_name ON players(name COLLATE NOCASE)");
+        statement.close();
+        fillClub(new Random(42));
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void narrowingMatchesSearchingForTheLongerQuery() throws SQLException {
+        Random random = new Random(7);
+        for (int i = 0; i < 300; i++) {
+            String query = randomString(random, random.nextInt(3));
+            String longer = query + randomString(random, 1 + random.nextInt(2));
+            List<Player> page = search(query);
+
+            assertEquals("Narrowing '" + query + "' to '" + longer + "'",
+                    idsOf(search(longer)), idsOf(PlayerMatches.narrow(page, longer)));
+        }
+    }
+
+    @Test
+    public void narrowingIgnoresAsciiCaseOnly() throws SQLException {
+        List<Player> page = search("a");
+        assertEquals(idsOf(search("AB")), idsOf(PlayerMatches.narrow(page, "AB")));
+        assertEquals(idsOf(search("aÉ")), idsOf(PlayerMatches.narrow(page, "aÉ")));
+    }
+
+    /**
+     * Search as DatabaseHelper.searchPlayers does: names starting with the query by name,
+     * then names containing it elsewhere by name
+     */
+    private List<Player> search(String query) throws SQLException {
+        String upperBound = query + "\uDBFF\uDFFF";
+        String prefixRange = "name >= ? COLLATE NOCASE AND name < ? COLLATE NOCASE";
+        List<Player> players = query("SELECT id, name FROM players WHERE " + prefixRange
+                + " ORDER BY name COLLATE NOCASE LIMIT " + LIMIT, query, upperBound);
+        if (query.isEmpty()) {
+            return players;
+        }
+        String pattern = "%" + query.replace("\\", "\\\\").replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+        players.addAll(query("SELECT id, name FROM players WHERE name LIKE ? ESCAPE '\\' AND NOT ("
+                + prefixRange + ") ORDER BY name COLLATE NOCASE LIMIT " + (LIMIT - players.size()),
+                pattern, query, upperBound));
+        return players;
+    }
+
+    private List<Player> query(String sql, String... args) throws SQLException {
+        PreparedStatement statement = connection.prepareStatement(sql);
+        try {
+            for (int i = 0; i < args.length; i++) {
+                statement.setString(i + 1, args[i]);
+            }
+            ResultSet rows = statement.executeQuery();
+            List<Player> players = new ArrayList<>();
+            while (rows.next()) {
+                Player player = new Player();
+                player.setId(rows.getInt(1));
+                player.setName(rows.getString(2));
+                players.add(player);
+            }
+            return players;
+        } finally {
+            statement.close();
+        }
+    }
+
+    /**
+     * Names unique ignoring case, as the index requires, over a small alphabet so that
+     * queries match many of them
+     */
+    private void fillClub(Random random) throws SQLException {
+        PreparedStatement insert = connection.prepareStatement("INSERT INTO players(id, name) VALUES (?, ?)");
+        Set<String> folded = new HashSet<>();
+        int id = 1;
+        while (id <= PLAYERS) {
+            String name = randomString(random, 1 + random.nextInt(5));
+            if (folded.add(PlayerNames.foldCase(name))) {
+                insert.setInt(1, id++);
+                insert.setString(2, name);
+                insert.executeUpdate();
+            }
+        }
+        insert.close();
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder string = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(12) == 0) {
+                string.append(SUPPLEMENTARY);
+            } else {
+                string.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+        }
+        return string.toString();
+    }
+
+    private static List<Integer> idsOf(List<Player> players) {
+        List<Integer> ids = new ArrayList<>(players.size());
+        for (Player player : players) {
+            ids.add(player.getId());
+        }
+        return ids;
+    }
+}
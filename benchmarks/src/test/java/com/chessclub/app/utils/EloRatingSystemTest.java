@@ -0,0 +1,124 @@
+package com.chessclub.app.utils;
+
+import com.chessclub.app.model.Game;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the batch path of the Elo rating system against rating the same games one by one,
+ * and the fixed-point changes against the double-precision EloCalculator they replaced.
+ */
+public class EloRatingSystemTest {
+    private static final int PLAYERS = 50;
+    private static final int GAMES = 100000;
+
+    private final EloRatingSystem elo = new EloRatingSystem();
+
+    @Test
+    public void rateGamesMatchesRateGameOneByOne() {
+        Random random = new Random(42);
+        int[] whiteSlots = new int[GAMES];
+        int[] blackSlots = new int[GAMES];
+        int[] results = new int[GAMES];
+        for (int i = 0; i < GAMES; i++) {
+            whiteSlots[i] = random.nextInt(PLAYERS);
+            blackSlots[i] = (whiteSlots[i] + 1 + random.nextInt(PLAYERS - 1)) % PLAYERS;
+            results[i] = randomResult(random);
+        }
+        int[] ratings = startRatings(random);
+        int[] oneByOne = ratings.clone();
+
+        int[] whiteChanges = new int[GAMES];
+        int[] blackChanges = new int[GAMES];
+        elo.rateGames(ratings, whiteSlots, blackSlots, results, whiteChanges, blackChanges, GAMES);
+
+        for (int i = 0; i < GAMES; i++) {
+            int[] changes = elo.rateGame(oneByOne[whiteSlots[i]], oneByOne[blackSlots[i]], results[i]);
+            assertEquals("White change of game " + i, changes[0], whiteChanges[i]);
+            assertEquals("Black change of game " + i, changes[1], blackChanges[i]);
+            oneByOne[whiteSlots[i]] += changes[0];
+            oneByOne[blackSlots[i]] += changes[1];
+        }
+        assertArrayEquals(oneByOne, ratings);
+    }
+
+    @Test
+    public void everyGameIsZeroSum() {
+        Random random = new Random(7);
+        int[] ratings = startRatings(random);
+        long total = 0;
+        for (int rating : ratings) {
+            total += rating;
+        }
+        for (int i = 0; i < GAMES; i++) {
+            int white = random.nextInt(PLAYERS);
+            int black = (white + 1 + random.nextInt(PLAYERS - 1)) % PLAYERS;
+            int[] changes = elo.rateGame(ratings[white], ratings[black], randomResult(random));
+            assertEquals("Game " + i, 0, changes[0] + changes[1]);
+            ratings[white] += changes[0];
+            ratings[black] += changes[1];
+        }
+        long after = 0;
+        for (int rating : ratings) {
+            after += rating;
+        }
+        assertEquals(total, after);
+    }
+
+    @Test
+    public void agreesWithEloCalculatorWithinOnePoint() {
+        int[] results = {Game.WHITE_WINS, Game.BLACK_WINS, Game.DRAW};
+        double[] whiteScores = {1.0, 0.0, 0.5};
+        // Every difference up to the table's clamp and well past it, from both sides
+        for (int difference = -1200; difference <= 1200; difference++) {
+            int white = 1500 + difference / 2;
+            int black = white - difference;
+            for (int r = 0; r < results.length; r++) {
+                int[] changes = elo.rateGame(white, black, results[r]);
+                int whiteReference = EloCalculator.calculateEloChange(white, black, whiteScores[r]);
+                int blackReference = EloCalculator.calculateEloChange(black, white, 1.0 - whiteScores[r]);
+                String game = white + " v " + black + ", result " + results[r];
+                assertTrue(game + ": white " + changes[0] + ", reference " + whiteReference,
+                        Math.abs(changes[0] - whiteReference) <= 1);
+                assertTrue(game + ": black " + changes[1] + ", reference " + blackReference,
+                        Math.abs(changes[1] - blackReference) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void rateGamesStopsAtCount() {
+        int[] ratings = {1500, 1400};
+        int[] whiteChanges = new int[2];
+        int[] blackChanges = new int[2];
+        elo.rateGames(ratings, new int[]{0, 0}, new int[]{1, 1}, new int[]{Game.WHITE_WINS, Game.WHITE_WINS},
+                whiteChanges, blackChanges, 1);
+
+        int[] first = elo.rateGame(1500, 1400, Game.WHITE_WINS);
+        assertArrayEquals(new int[]{1500 + first[0], 1400 + first[1]}, ratings);
+        assertEquals(0, whiteChanges[1]);
+        assertEquals(0, blackChanges[1]);
+    }
+
+    /**
+     * Ratings spread over a wide range, so some games pass the table's clamped differences
+     */
+    private static int[] startRatings(Random random) {
+        int[] ratings = new int[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            ratings[i] = 600 + random.nextInt(2000);
+        }
+        return ratings;
+    }
+
+    private static int randomResult(Random random) {
+        int result = random.nextInt(3);
+        return result == 0 ? Game.WHITE_WINS : result == 1 ? Game.BLACK_WINS : Game.DRAW;
+    }
+}
@@ -0,0 +1,104 @@
+package com.chessclub.app.utils;
+
+import com.chessclub.app.model.Game;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the Glicko-2 engine against the worked example in Glickman's "Example of the
+ * Glicko-2 system", and how it treats idle players and draws.
+ */
+public class Glicko2Test {
+    private static final double DEVIATION_TOLERANCE = 0.01;
+    private static final double VOLATILITY_TOLERANCE = 0.00001;
+
+    private final Glicko2 glicko2 = new Glicko2();
+
+    @Test
+    public void matchesGlickmansExample() {
+        // A 1500 player beats a 1400 and loses to a 1550 and a 1700 in one period
+        int[] ratings = {1500, 1400, 1550, 1700};
+        double[] deviations = {200, 30, 100, 300};
+        double[] volatilities = {0.06, 0.06, 0.06, 0.06};
+        int[] whiteChanges = new int[3];
+        int[] blackChanges = new int[3];
+
+        glicko2.ratePeriod(ratings, deviations, volatilities, new int[]{0, 0, 0}, new int[]{1, 2, 3},
+                new int[]{Game.WHITE_WINS, Game.BLACK_WINS, Game.BLACK_WINS},
+                whiteChanges, blackChanges, 3);
+
+        // r' = 1464.06, RD' = 151.52, sigma' = 0.05999
+        assertEquals(1464, ratings[0]);
+        assertEquals(151.52, deviations[0], DEVIATION_TOLERANCE);
+        assertEquals(0.05999, volatilities[0], VOLATILITY_TOLERANCE);
+        // The game changes add up to the stored rating's change
+        assertEquals(1464 - 1500, whiteChanges[0] + whiteChanges[1] + whiteChanges[2]);
+        assertTrue(whiteChanges[0] > 0);
+        assertTrue(whiteChanges[1] < 0);
+        assertTrue(whiteChanges[2] < 0);
+    }
+
+    @Test
+    public void idlePlayerOnlyGainsDeviation() {
+        int[] ratings = {1500, 1550, 1620};
+        double[] deviations = {200, 80, 120};
+        double[] volatilities = {0.06, 0.06, 0.07};
+
+        glicko2.ratePeriod(ratings, deviations, volatilities, new int[]{0}, new int[]{1},
+                new int[]{Game.WHITE_WINS}, new int[1], new int[1], 1);
+
+        // The player in slot 2 sat the period out and is left as they were
+        assertEquals(1620, ratings[2]);
+        assertEquals(120.0, deviations[2], 0.0);
+        assertEquals(0.07, volatilities[2], 0.0);
+
+        // Their deviation grows by their volatility for each idle period, up to the default
+        double phi = 120 / 173.7178;
+        assertEquals(Math.sqrt(phi * phi + 3 * 0.07 * 0.07) * 173.7178,
+                Glicko2.inflateDeviation(120, 0.07, 3), DEVIATION_TOLERANCE);
+        assertTrue(Glicko2.inflateDeviation(120, 0.07, 1) > 120);
+        assertEquals(120.0, Glicko2.inflateDeviation(120, 0.07, 0), 0.0);
+        assertEquals(Glicko2.DEFAULT_DEVIATION, Glicko2.inflateDeviation(340, 0.07, 100000),
+                DEVIATION_TOLERANCE);
+    }
+
+    @Test
+    public void drawMovesTheFavouriteDown() {
+        int[] ratings = {1700, 1500};
+        double[] deviations = {100, 100};
+        double[] volatilities = {0.06, 0.06};
+        int[] whiteChanges = new int[1];
+        int[] blackChanges = new int[1];
+
+        glicko2.ratePeriod(ratings, deviations, volatilities, new int[]{0}, new int[]{1},
+                new int[]{Game.DRAW}, whiteChanges, blackChanges, 1);
+
+        // Equal deviations give equal and opposite changes
+        assertTrue(whiteChanges[0] < 0);
+        assertEquals(-whiteChanges[0], blackChanges[0]);
+        assertEquals(1700 + whiteChanges[0], ratings[0]);
+        assertEquals(1500 + blackChanges[0], ratings[1]);
+        assertEquals(deviations[0], deviations[1], 1e-9);
+        assertTrue(deviations[0] < 100);
+    }
+
+    @Test
+    public void drawBetweenEqualsChangesNoRating() {
+        int[] ratings = {1500, 1500};
+        double[] deviations = {200, 200};
+        double[] volatilities = {0.06, 0.06};
+        int[] whiteChanges = new int[1];
+        int[] blackChanges = new int[1];
+
+        glicko2.ratePeriod(ratings, deviations, volatilities, new int[]{0}, new int[]{1},
+                new int[]{Game.DRAW}, whiteChanges, blackChanges, 1);
+
+        assertEquals(0, whiteChanges[0]);
+        assertEquals(0, blackChanges[0]);
+        assertEquals(1500, ratings[0]);
+        assertTrue(deviations[0] < 200);
+    }
+}
@@ -0,0 +1,129 @@
+package com.chessclub.app.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks PlayerNames against SQLite itself, through an in-memory database: names must fold
+ * to the same string exactly when the NOCASE collation of the unique name index finds them
+ * equal, and compare in the order that index reads them. Names mix ASCII of both cases with
+ * the punctuation between the cases, and characters outside ASCII, which NOCASE leaves as
+ * they are, including some above U+FFFF.
+ */
+public class PlayerNamesTest {
+    private static final String ALPHABET = "AaBbZz@[_`{ ÉéßİıΩωＡａ";
+    private static final String[] SUPPLEMENTARY = {"𝔸", "😀"};
+    private static final int NAMES = 400;
+
+    private Connection connection;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void foldsTogetherExactlyTheNamesNocaseFindsEqual() throws SQLException {
+        List<String> names = randomNames(new Random(42));
+        PreparedStatement equal = connection.prepareStatement("SELECT ? = ? COLLATE NOCASE");
+        try {
+            for (String a : names) {
+                for (String b : names) {
+                    equal.setString(1, a);
+                    equal.setString(2, b);
+                    ResultSet result = equal.executeQuery();
+                    result.next();
+                    assertEquals(a + " = " + b, result.getInt(1) == 1,
+                            PlayerNames.foldCase(a).equals(PlayerNames.foldCase(b)));
+                    result.close();
+                }
+            }
+        } finally {
+            equal.close();
+        }
+    }
+
+    @Test
+    public void comparesInNameIndexOrder() throws SQLException {
+        List<String> names = distinctNames(randomNames(new Random(7)));
+        Statement statement = connection.createStatement();
+        statement.execute("CREATE TABLE players(name TEXT NOT NULL)");
+        statement.execute("CREATE UNIQUE INDEX idx_players_name ON players(name COLLATE NOCASE)");
+        PreparedStatement insert = connection.prepareStatement("INSERT INTO players(name) VALUES (?)");
+        for (String name : names) {
+            insert.setString(1, name);
+            insert.executeUpdate();
+        }
+        insert.close();
+
+        List<String> indexOrder = new ArrayList<>(names.size());
+        ResultSet rows = statement.executeQuery("SELECT name FROM players ORDER BY name COLLATE NOCASE");
+        while (rows.next()) {
+            indexOrder.add(rows.getString(1));
+        }
+        rows.close();
+        statement.close();
+
+        Collections.sort(names, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return PlayerNames.compare(a, b);
+            }
+        });
+        assertEquals(indexOrder, names);
+    }
+
+    /**
+     * The first of each group of names the unique name index would find equal
+     */
+    static List<String> distinctNames(List<String> names) {
+        List<String> distinct = new ArrayList<>();
+        HashSet<String> folded = new HashSet<>();
+        for (String name : names) {
+            if (folded.add(PlayerNames.foldCase(name))) {
+                distinct.add(name);
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Short names over a small alphabet, so many differ only in case
+     */
+    static List<String> randomNames(Random random) {
+        List<String> names = new ArrayList<>(NAMES);
+        for (int i = 0; i < NAMES; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int length = 1 + random.nextInt(3); length > 0; length--) {
+                if (random.nextInt(10) == 0) {
+                    name.append(SUPPLEMENTARY[random.nextInt(SUPPLEMENTARY.length)]);
+                } else {
+                    name.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                }
+            }
+            names.add(name.toString());
+        }
+        return names;
+    }
+}